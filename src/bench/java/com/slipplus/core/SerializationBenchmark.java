@@ -0,0 +1,148 @@
+package com.slipplus.core;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.slipplus.models.MainSlip;
+import com.slipplus.models.SubSlip;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Writes and parses a year of day shards the way the storage layer used to
+ * (a fresh type lookup per call, reflection, pretty-printed JSON) and the
+ * way it does now (cached readers and writers, Blackbird, compact output),
+ * all in memory so the disk does not blur the numbers.
+ *
+ * Run with {@code gradle benchmark [-Pdays=N]}.
+ */
+public class SerializationBenchmark {
+
+    private static final int PARTIES_PER_DAY = 15;
+    private static final int SLIPS_PER_PARTY = 8;
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int ROUNDS = 10;
+
+    public static void main(String[] args) throws IOException {
+        int days = args.length > 0 ? Integer.parseInt(args[0]) : 365;
+        List<DayShard> shards = generate(days, new Random(42));
+
+        // As configured before: no Blackbird, readers and writers made per call
+        ObjectMapper plain = new ObjectMapper();
+        plain.registerModule(new JavaTimeModule());
+        plain.registerModule(new SlipJsonModule());
+        plain.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+        byte[][] prettyBytes = new byte[days][];
+        for (int i = 0; i < days; i++) prettyBytes[i] = plain.writerWithDefaultPrettyPrinter().writeValueAsBytes(shards.get(i));
+        ObjectWriter shardWriter = StorageFormat.JSON.shardWriter();
+        ObjectReader shardReader = StorageFormat.JSON.shardReader();
+        byte[][] compactBytes = new byte[days][];
+        for (int i = 0; i < days; i++) compactBytes[i] = shardWriter.writeValueAsBytes(shards.get(i));
+        byte[][] smileBytes = new byte[days][];
+        for (int i = 0; i < days; i++) smileBytes[i] = StorageFormat.SMILE.shardWriter().writeValueAsBytes(shards.get(i));
+
+        System.out.printf("%d days, %d sub-slips; JSON pretty %.1f MB, compact %.1f MB, Smile %.1f MB%n",
+                days, days * PARTIES_PER_DAY * SLIPS_PER_PARTY,
+                megabytes(prettyBytes), megabytes(compactBytes), megabytes(smileBytes));
+
+        double writeBefore = measure("write, before", () -> {
+            for (DayShard shard : shards) plain.writerWithDefaultPrettyPrinter().writeValueAsBytes(shard);
+        });
+        double writeAfter = measure("write, cached + Blackbird + compact", () -> {
+            for (DayShard shard : shards) shardWriter.writeValueAsBytes(shard);
+        });
+        measure("write, Smile", () -> {
+            for (DayShard shard : shards) StorageFormat.SMILE.shardWriter().writeValueAsBytes(shard);
+        });
+
+        double parseBefore = measure("parse, before", () -> {
+            for (byte[] bytes : prettyBytes) plain.readValue(bytes, DayShard.class);
+        });
+        double parseAfter = measure("parse, cached + Blackbird + compact", () -> {
+            for (byte[] bytes : compactBytes) shardReader.readValue(bytes);
+        });
+        measure("parse, Smile", () -> {
+            for (byte[] bytes : smileBytes) StorageFormat.SMILE.shardReader().readValue(bytes);
+        });
+
+        System.out.printf("Speedup: write %.2fx, parse %.2fx%n", writeBefore / writeAfter, parseBefore / parseAfter);
+    }
+
+    interface Pass {
+        void run() throws IOException;
+    }
+
+    /** Median milliseconds of one pass over all shards, after warming up. */
+    private static double measure(String name, Pass pass) throws IOException {
+        for (int i = 0; i < WARMUP_ROUNDS; i++) pass.run();
+        double[] millis = new double[ROUNDS];
+        for (int i = 0; i < ROUNDS; i++) {
+            long start = System.nanoTime();
+            pass.run();
+            millis[i] = (System.nanoTime() - start) / 1e6;
+        }
+        Arrays.sort(millis);
+        double median = millis[ROUNDS / 2];
+        System.out.printf("%-40s %8.2f ms%n", name, median);
+        return median;
+    }
+
+    private static double megabytes(byte[][] files) {
+        long total = 0;
+        for (byte[] file : files) total += file.length;
+        return total / (1024.0 * 1024.0);
+    }
+
+    /** Shards shaped like real ones: a handful of parties a day, several trucks each, a main slip per party. */
+    private static List<DayShard> generate(int days, Random random) {
+        List<DayShard> shards = new ArrayList<>();
+        LocalDate first = LocalDate.of(2024, 1, 1);
+        for (int day = 0; day < days; day++) {
+            LocalDate date = first.plusDays(day);
+            DayShard shard = new DayShard();
+            for (int party = 1; party <= PARTIES_PER_DAY; party++) {
+                String partyName = "Party " + party;
+                List<SubSlip> slips = new ArrayList<>();
+                for (int truck = 0; truck < SLIPS_PER_PARTY; truck++) {
+                    int subCount = 2 + random.nextInt(4);
+                    double[] subWeights = new double[subCount];
+                    double[] qualities = new double[subCount];
+                    double[] prices = new double[subCount];
+                    double total = 0;
+                    for (int i = 0; i < subCount; i++) {
+                        subWeights[i] = 500 + random.nextInt(2000) / 10.0;
+                        qualities[i] = 20 + random.nextInt(300) / 10.0;
+                        prices[i] = subWeights[i] * qualities[i] / 10.0;
+                        total += prices[i];
+                    }
+                    double gst = total * 0.05;
+                    SubSlip slip = new SubSlip(partyName, "GJ01AB" + (1000 + random.nextInt(9000)),
+                            Arrays.stream(subWeights).sum(), subWeights, 20 + random.nextInt(10),
+                            30 + random.nextInt(10), qualities, prices, "1%", total, gst, total + gst);
+                    slip.setId(SlipIds.next());
+                    slips.add(slip);
+                }
+                shard.getSubSlips().put(String.valueOf(party), slips);
+
+                List<MainSlip.Operation> operations = new ArrayList<>();
+                operations.add(new MainSlip.Operation(random.nextInt(5000), "TDS", "TDS deduction", "-"));
+                operations.add(new MainSlip.Operation(random.nextInt(2000), "FRT", "Freight", "-"));
+                operations.add(new MainSlip.Operation(random.nextInt(1000), "CSH", "Cash advance", "-"));
+                shard.getMainSlips().put(partyName, new MainSlip(date, partyName, 100000, operations, 92000));
+            }
+            shard.setTotals(DaySummary.of(shard));
+            shards.add(shard);
+        }
+        return shards;
+    }
+}
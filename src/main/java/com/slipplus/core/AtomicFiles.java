@@ -0,0 +1,124 @@
+package com.slipplus.core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Crash-safe file replacement for the storage layer.
+ *
+ * A file is never overwritten in place: the new content goes to a temp file
+ * that is forced to disk and then renamed over the target, and the previous
+ * content is kept as a .bak generation. Readers fall back to that generation
+ * when the current file cannot be parsed, so a damaged file is never mistaken
+ * for an empty one and written back over good data.
+ */
+final class AtomicFiles {
+
+    static final String BACKUP_SUFFIX = ".bak";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    interface Body {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    interface Parser<T> {
+        T parse(File file) throws IOException;
+    }
+
+    private AtomicFiles() {}
+
+    /** Writes the file and forces its content to disk before returning. */
+    static void writeDurably(File file, Body body) throws IOException {
+        // Buffered first: Jackson closes the stream it writes to, and the channel is needed afterwards
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        body.writeTo(content);
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            content.writeTo(out);
+            out.flush();
+            out.getChannel().force(true);
+        }
+    }
+
+    /** Replaces the target atomically, keeping its current content as the .bak generation. */
+    static void replace(File target, Body body) throws IOException {
+        File temp = new File(target.getPath() + TEMP_SUFFIX);
+        writeDurably(temp, body);
+        if (target.exists()) {
+            // On disk before the move, or a crash could leave a new file that is torn and a .bak that is empty
+            copyDurably(target.toPath(), backupOf(target).toPath());
+        }
+        moveAtomically(temp.toPath(), target.toPath());
+        syncDirectory(target.getAbsoluteFile().getParentFile());
+    }
+
+    /** Copies source over target and forces the copy to disk before returning. */
+    static void copyDurably(Path source, Path target) throws IOException {
+        Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+        try (FileChannel channel = FileChannel.open(target, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+    }
+
+    /** Renames source over target, atomically where the file system allows it. */
+    static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /** Makes completed renames in a directory durable; not supported on every platform. */
+    static void syncDirectory(File dir) {
+        if (dir == null) return;
+        try (FileChannel channel = FileChannel.open(dir.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Windows cannot open directories; NTFS journals the rename itself
+        }
+    }
+
+    /**
+     * Parses the file, falling back to its .bak generation. Returns null when
+     * neither exists. When both are unreadable the damaged file is moved aside
+     * so it survives for manual recovery, and the error is rethrown.
+     */
+    static <T> T read(File target, Parser<T> parser) throws IOException {
+        File backup = backupOf(target);
+        if (!target.exists()) {
+            return backup.exists() ? parser.parse(backup) : null;
+        }
+
+        try {
+            return parser.parse(target);
+        } catch (IOException e) {
+            if (backup.exists()) {
+                try {
+                    T recovered = parser.parse(backup);
+                    System.out.println("Recovered " + target.getName() + " from previous generation: " + e.getMessage());
+                    copyDurably(backup.toPath(), target.toPath());
+                    return recovered;
+                } catch (IOException backupError) {
+                    e.addSuppressed(backupError);
+                }
+            }
+            File quarantined = new File(target.getPath() + ".corrupt-" + System.currentTimeMillis());
+            Files.move(target.toPath(), quarantined.toPath());
+            System.err.println("Unreadable " + target.getName() + " moved to " + quarantined.getName());
+            throw e;
+        }
+    }
+
+    static File backupOf(File target) {
+        return new File(target.getPath() + BACKUP_SUFFIX);
+    }
+}
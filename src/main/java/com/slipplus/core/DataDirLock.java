@@ -0,0 +1,159 @@
+package com.slipplus.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Cross-process lock on a data directory, for when two SlipPlus windows
+ * share one (say one for entry and one for the purchase book).
+ *
+ * Two byte ranges of slips.lock are locked independently: the journal range
+ * while a process appends to, rotates or reads up on the journal, and the
+ * checkpoint range from a rotation until its snapshot is committed. File
+ * locks belong to the whole JVM, so threads of this process queue on a
+ * reentrant mutex in front of the journal range.
+ *
+ * The first bytes of the file hold the journal generation, bumped whenever
+ * the journal is rotated or deleted, so another process can tell whether
+ * the journal it has been following is still the live one. The next ones
+ * hold the shard generation, bumped whenever a checkpoint folds journal
+ * records into the shards and drops them, so it can also tell whether the
+ * records it has not read yet are still in the rotated segment.
+ */
+class DataDirLock {
+
+    private static final long JOURNAL_GENERATION = 0;
+    private static final long SHARD_GENERATION = Long.BYTES;
+    // Far past the generation bytes, so the regions never cover the data being read
+    private static final long JOURNAL_REGION = 1L << 40;
+    private static final long CHECKPOINT_REGION = JOURNAL_REGION + 1;
+
+    private static final Map<String, DataDirLock> LOCKS = new HashMap<>();
+
+    private final File lockFile;
+    private final ReentrantLock journalMutex = new ReentrantLock();
+    private FileChannel channel;
+    private FileLock journalLock;
+
+    private DataDirLock(File lockFile) {
+        this.lockFile = lockFile;
+    }
+
+    /** One instance per directory, since a JVM may lock a file region only once. */
+    static synchronized DataDirLock of(String dataDir) {
+        File lockFile = new File(dataDir, "slips.lock").getAbsoluteFile();
+        return LOCKS.computeIfAbsent(lockFile.getPath(), path -> new DataDirLock(lockFile));
+    }
+
+    /** Runs the task holding the journal lock; nested calls on the same thread just run it. */
+    void withJournalLock(StorageExecutor.StorageTask task) throws Exception {
+        withJournalLock(() -> {
+            task.run();
+            return null;
+        });
+    }
+
+    <T> T withJournalLock(StorageExecutor.StorageQuery<T> task) throws Exception {
+        journalMutex.lock();
+        try {
+            if (journalMutex.getHoldCount() == 1) journalLock = channel().lock(JOURNAL_REGION, 1, false);
+            try {
+                return task.run();
+            } finally {
+                if (journalMutex.getHoldCount() == 1) {
+                    journalLock.release();
+                    journalLock = null;
+                }
+            }
+        } finally {
+            journalMutex.unlock();
+        }
+    }
+
+    /** The checkpoint lock, or null while another process (or this one) is checkpointing. */
+    FileLock tryCheckpointLock() throws IOException {
+        try {
+            return channel().tryLock(CHECKPOINT_REGION, 1, false);
+        } catch (OverlappingFileLockException e) {
+            return null;
+        }
+    }
+
+    /** Waits for another process's checkpoint to finish; this process must not be running one. */
+    FileLock checkpointLock() throws IOException {
+        return channel().lock(CHECKPOINT_REGION, 1, false);
+    }
+
+    /** Current journal generation. Must be called with the journal lock held. */
+    long generation() throws IOException {
+        return readLong(JOURNAL_GENERATION);
+    }
+
+    /** Bumps the journal generation and returns the new one. Must be called with the journal lock held. */
+    long nextGeneration() throws IOException {
+        return increment(JOURNAL_GENERATION);
+    }
+
+    /** Current shard generation. Must be called with the journal lock held. */
+    long shardGeneration() throws IOException {
+        return readLong(SHARD_GENERATION);
+    }
+
+    /** Bumps the shard generation and returns the new one. Must be called with the journal lock held. */
+    long nextShardGeneration() throws IOException {
+        return increment(SHARD_GENERATION);
+    }
+
+    /** Zero past the end of the file, which is how lock files from before a value existed read. */
+    private long readLong(long offset) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+        FileChannel file = channel();
+        while (buffer.hasRemaining()) {
+            if (file.read(buffer, offset + buffer.position()) < 0) return 0;
+        }
+        return buffer.flip().getLong();
+    }
+
+    private long increment(long offset) throws IOException {
+        long next = readLong(offset) + 1;
+        ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES).putLong(next).flip();
+        FileChannel file = channel();
+        while (buffer.hasRemaining()) file.write(buffer, offset + buffer.position());
+        file.force(false);
+        return next;
+    }
+
+    /**
+     * Closes slips.lock once this process is done with the directory. Any
+     * lock still held on it goes with it; using the lock again reopens it.
+     */
+    synchronized void close() {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        channel = null;
+    }
+
+    private synchronized FileChannel channel() throws IOException {
+        if (channel == null) {
+            File dir = lockFile.getParentFile();
+            if (!dir.exists() && !dir.mkdirs()) {
+                throw new IOException("Failed to create data directory: " + dir);
+            }
+            channel = FileChannel.open(lockFile.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+        return channel;
+    }
+}
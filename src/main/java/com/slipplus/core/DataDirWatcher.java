@@ -0,0 +1,92 @@
+package com.slipplus.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Set;
+
+/**
+ * Notices when files in the data directory change, for picking up what
+ * another SlipPlus process has committed.
+ *
+ * Runs the callback once per burst of events on the watched files. The
+ * callback works out what actually changed, so events caused by this
+ * process's own writes only cost it a quick check.
+ */
+class DataDirWatcher {
+
+    private final File dir;
+    private final Set<String> fileNames;
+    private final Runnable onChange;
+    private Thread thread;
+    private WatchService watchService;
+
+    DataDirWatcher(File dir, Set<String> fileNames, Runnable onChange) {
+        this.dir = dir;
+        this.fileNames = fileNames;
+        this.onChange = onChange;
+    }
+
+    synchronized void start() {
+        if (thread != null) return;
+        try {
+            Path path = dir.toPath();
+            WatchService watchService = path.getFileSystem().newWatchService();
+            path.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            this.watchService = watchService;
+            thread = new Thread(() -> watch(watchService), "slipplus-watcher");
+            thread.setDaemon(true);
+            thread.start();
+        } catch (IOException e) {
+            // Other processes' changes are still read in before every write, just not as they happen
+            e.printStackTrace();
+        }
+    }
+
+    /** Stops watching and waits for a callback that is running to return. */
+    void stop() {
+        Thread running;
+        synchronized (this) {
+            if (thread == null) return;
+            running = thread;
+            thread = null;
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            watchService = null;
+        }
+        try {
+            running.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void watch(WatchService watchService) {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    // Overflow means events were lost, any of them ours
+                    changed |= event.kind() == StandardWatchEventKinds.OVERFLOW
+                            || fileNames.contains(event.context().toString());
+                }
+                if (changed) onChange.run();
+                if (!key.reset()) {
+                    System.out.println("Stopped watching " + dir + " for changes");
+                    return;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Shutting down
+        }
+    }
+}
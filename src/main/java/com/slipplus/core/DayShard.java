@@ -0,0 +1,74 @@
+package com.slipplus.core;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.slipplus.models.MainSlip;
+import com.slipplus.models.SubSlip;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Everything stored for one date: the sub-slips by party key, the main
+ * slips by party name and their totals. One shard is one file under
+ * data/days.
+ */
+// Totals first, so reading them can stop before the slips
+@JsonPropertyOrder({ "totals", "subSlips", "mainSlips" })
+class DayShard {
+    private Map<String, List<SubSlip>> subSlips = new HashMap<>();
+    private Map<String, MainSlip> mainSlips = new HashMap<>();
+    // Null in shards written before totals were stored
+    private DaySummary totals;
+
+    public DayShard() {}
+
+    public Map<String, List<SubSlip>> getSubSlips() { return subSlips; }
+    public void setSubSlips(Map<String, List<SubSlip>> subSlips) {
+        this.subSlips = subSlips != null ? subSlips : new HashMap<>();
+    }
+
+    public Map<String, MainSlip> getMainSlips() { return mainSlips; }
+    public void setMainSlips(Map<String, MainSlip> mainSlips) {
+        this.mainSlips = mainSlips != null ? mainSlips : new HashMap<>();
+    }
+
+    public DaySummary getTotals() { return totals; }
+    public void setTotals(DaySummary totals) { this.totals = totals; }
+
+    @JsonIgnore
+    int subSlipCount() {
+        int count = 0;
+        for (List<SubSlip> slips : subSlips.values()) count += slips.size();
+        return count;
+    }
+
+    @JsonIgnore
+    boolean isEmpty() {
+        return subSlips.isEmpty() && mainSlips.isEmpty();
+    }
+
+    /** Copy with fresh maps and lists, safe to serialize while writers carry on. */
+    DayShard copy() {
+        DayShard copy = new DayShard();
+        subSlips.forEach((partyKey, slips) -> copy.subSlips.put(partyKey, new ArrayList<>(slips)));
+        copy.mainSlips.putAll(mainSlips);
+        copy.totals = totals != null ? totals.copy() : null;
+        return copy;
+    }
+
+    /**
+     * Copy for a write to change in place of this one, which stays as it is
+     * for whoever still holds it. The party lists are shared, so a list has
+     * to be replaced, not changed.
+     */
+    DayShard copyOnWrite() {
+        DayShard copy = new DayShard();
+        copy.subSlips.putAll(subSlips);
+        copy.mainSlips.putAll(mainSlips);
+        copy.totals = totals != null ? totals.copy() : new DaySummary();
+        return copy;
+    }
+}
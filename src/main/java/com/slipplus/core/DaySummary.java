@@ -0,0 +1,146 @@
+package com.slipplus.core;
+
+import com.slipplus.models.MainSlip;
+import com.slipplus.models.SlipTotals;
+import com.slipplus.models.SubSlip;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Precomputed totals for one date, or summed over a month, year or date
+ * range: sub-slip figures by party key and main-slip operation amounts by
+ * party name, the keys each kind of slip is stored under.
+ *
+ * Writers refresh only the party they touched, from that party's slips for
+ * the day, so the totals never drift from the slips however many edits
+ * they go through. Both backends use the same arithmetic below.
+ */
+class DaySummary {
+    private Map<String, SlipTotals> subSlips = new HashMap<>();
+    private Map<String, Map<String, Double>> operations = new HashMap<>();
+
+    public DaySummary() {}
+
+    public Map<String, SlipTotals> getSubSlips() { return subSlips; }
+    public void setSubSlips(Map<String, SlipTotals> subSlips) {
+        this.subSlips = subSlips != null ? subSlips : new HashMap<>();
+    }
+
+    public Map<String, Map<String, Double>> getOperations() { return operations; }
+    public void setOperations(Map<String, Map<String, Double>> operations) {
+        this.operations = operations != null ? operations : new HashMap<>();
+    }
+
+    /** Summary of a whole shard, for shards written before totals were stored. */
+    static DaySummary of(DayShard shard) {
+        DaySummary summary = new DaySummary();
+        shard.getSubSlips().forEach((partyKey, slips) -> summary.refreshSubSlips(partyKey, slips));
+        shard.getMainSlips().values().forEach(summary::refreshOperations);
+        return summary;
+    }
+
+    void refreshSubSlips(String partyKey, List<SubSlip> slips) {
+        if (slips == null || slips.isEmpty()) {
+            subSlips.remove(partyKey);
+        } else {
+            subSlips.put(partyKey, totalsOf(slips));
+        }
+    }
+
+    void refreshOperations(MainSlip mainSlip) {
+        Map<String, Double> amounts = operationTotalsOf(mainSlip);
+        if (amounts.isEmpty()) {
+            operations.remove(mainSlip.getPartyName());
+        } else {
+            operations.put(mainSlip.getPartyName(), amounts);
+        }
+    }
+
+    /** Adds every figure of another summary into this one. */
+    void addAll(DaySummary other) {
+        other.subSlips.forEach((partyKey, totals) -> addSubSlips(partyKey, totals, 1));
+        other.operations.forEach((partyName, amounts) -> addOperations(partyName, amounts, 1));
+    }
+
+    /**
+     * Adds (sign 1) or takes away (sign -1) one party's sub-slip figures.
+     * The entry goes once its last truck is taken away.
+     */
+    void addSubSlips(String partyKey, SlipTotals totals, int sign) {
+        if (totals == null) return;
+        SlipTotals sum = subSlips.computeIfAbsent(partyKey, k -> new SlipTotals());
+        sum.setTruckCount(sum.getTruckCount() + sign * totals.getTruckCount());
+        if (sum.getTruckCount() <= 0) {
+            subSlips.remove(partyKey);
+            return;
+        }
+        sum.setMainWeight(sum.getMainWeight() + sign * totals.getMainWeight());
+        sum.setSubWeight(sum.getSubWeight() + sign * totals.getSubWeight());
+        sum.setTotalBeforeGst(sum.getTotalBeforeGst() + sign * totals.getTotalBeforeGst());
+        sum.setGst(sum.getGst() + sign * totals.getGst());
+        sum.setFinalAmount(sum.getFinalAmount() + sign * totals.getFinalAmount());
+    }
+
+    /** Adds or takes away one party's operation amounts; amounts that reach zero are dropped. */
+    void addOperations(String partyName, Map<String, Double> amounts, int sign) {
+        if (amounts == null || amounts.isEmpty()) return;
+        Map<String, Double> sum = operations.computeIfAbsent(partyName, k -> new HashMap<>());
+        amounts.forEach((shortcutId, amount) -> {
+            double total = sum.getOrDefault(shortcutId, 0.0) + sign * amount;
+            if (Math.abs(total) < 0.000001) sum.remove(shortcutId);
+            else sum.put(shortcutId, total);
+        });
+        if (sum.isEmpty()) operations.remove(partyName);
+    }
+
+    /** Deep copy; callers are free to modify the result. */
+    DaySummary copy() {
+        DaySummary copy = new DaySummary();
+        subSlips.forEach((partyKey, totals) -> copy.subSlips.put(partyKey, copyOf(totals)));
+        operations.forEach((partyName, amounts) -> copy.operations.put(partyName, new HashMap<>(amounts)));
+        return copy;
+    }
+
+    // ---------- Arithmetic ----------
+
+    /** Sums in list order, the order the screens used to add them up in. */
+    static SlipTotals totalsOf(List<SubSlip> slips) {
+        SlipTotals totals = new SlipTotals();
+        for (SubSlip slip : slips) {
+            totals.setTruckCount(totals.getTruckCount() + 1);
+            totals.setMainWeight(totals.getMainWeight() + slip.getMainWeight());
+            double[] subWeights = slip.subWeightArray();
+            if (subWeights != null) {
+                for (double weight : subWeights) totals.setSubWeight(totals.getSubWeight() + weight);
+            }
+            totals.setTotalBeforeGst(totals.getTotalBeforeGst() + slip.getTotalBeforeGst());
+            totals.setGst(totals.getGst() + slip.getGst());
+            totals.setFinalAmount(totals.getFinalAmount() + slip.getFinalAmount());
+        }
+        return totals;
+    }
+
+    /** Operation amounts of a main slip summed per shortcut ID. */
+    static Map<String, Double> operationTotalsOf(MainSlip mainSlip) {
+        Map<String, Double> amounts = new HashMap<>();
+        if (mainSlip == null || mainSlip.getOperations() == null) return amounts;
+        for (MainSlip.Operation operation : mainSlip.getOperations()) {
+            amounts.merge(operation.getShortcutId(), operation.getAmount(), Double::sum);
+        }
+        return amounts;
+    }
+
+    static SlipTotals copyOf(SlipTotals totals) {
+        SlipTotals copy = new SlipTotals();
+        copy.setTruckCount(totals.getTruckCount());
+        copy.setMainWeight(totals.getMainWeight());
+        copy.setSubWeight(totals.getSubWeight());
+        copy.setTotalBeforeGst(totals.getTotalBeforeGst());
+        copy.setGst(totals.getGst());
+        copy.setFinalAmount(totals.getFinalAmount());
+        copy.setOperationTotals(new HashMap<>(totals.getOperationTotals()));
+        return copy;
+    }
+}
@@ -0,0 +1,90 @@
+package com.slipplus.core;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the keys of a slip file without binding the slips themselves.
+ *
+ * The parser walks field names and calls skipChildren() over every value it
+ * is not interested in, so listing the parties of a day costs a token scan
+ * of the file instead of building every SubSlip and its weight lists.
+ */
+class JsonIndexReader {
+
+    private final JsonFactory factory;
+
+    JsonIndexReader(JsonFactory factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * Field names of the object found by following the path from the root,
+     * in file order. An empty path lists the root object's own keys.
+     */
+    List<String> readFieldNames(File file, String... path) throws IOException {
+        List<String> names = new ArrayList<>();
+        try (JsonParser parser = factory.createParser(file)) {
+            if (!descend(parser, path)) return names;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                names.add(parser.currentName());
+                parser.nextToken();
+                parser.skipChildren();
+            }
+        }
+        return names;
+    }
+
+    /** Element count of every array held by the object at the path, keyed by field name. */
+    Map<String, Integer> countArrayElements(File file, String... path) throws IOException {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        try (JsonParser parser = factory.createParser(file)) {
+            if (!descend(parser, path)) return counts;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                if (parser.nextToken() != JsonToken.START_ARRAY) {
+                    parser.skipChildren();
+                    continue;
+                }
+                int count = 0;
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    parser.skipChildren();
+                    count++;
+                }
+                counts.put(name, count);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Leaves the parser just inside the object at the path. Returns false if
+     * the path is missing or does not lead to an object.
+     */
+    private boolean descend(JsonParser parser, String... path) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) return false;
+        for (String field : path) {
+            boolean found = false;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if (name.equals(field)) {
+                    if (value != JsonToken.START_OBJECT) return false;
+                    found = true;
+                    break;
+                }
+                parser.skipChildren();
+            }
+            if (!found) return false;
+        }
+        return true;
+    }
+}
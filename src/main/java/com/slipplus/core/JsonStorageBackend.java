@@ -0,0 +1,663 @@
+package com.slipplus.core;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.slipplus.models.DatedSubSlip;
+import com.slipplus.models.MainSlip;
+import com.slipplus.models.Party;
+import com.slipplus.models.Shortcut;
+import com.slipplus.models.SubSlip;
+import com.slipplus.models.TruckSighting;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileLock;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+/**
+ * The default backend: JSON files under the data directory.
+ *
+ * Slips live in an in-memory SlipRepository that is loaded lazily from the
+ * per-date shards; every mutation is applied there and appended to the
+ * journal, which is folded back into the shards at checkpoints. Parties and
+ * shortcuts are whole-file writes.
+ *
+ * A checkpoint only rotates the journal on the writer thread; the shards
+ * are written on a separate compaction thread, so saves keep appending to
+ * the fresh journal while it runs.
+ *
+ * Several processes may share the data directory. Appends, rotations and
+ * reads of the journal happen under a lock on the directory, and each
+ * process first applies whatever the others appended since it last looked;
+ * a watcher on the directory makes that happen as soon as they commit, not
+ * just at the next local write. When another process has rotated the
+ * journal the shards on disk have moved on, so the index is loaded afresh
+ * (lazily, as at startup) instead.
+ *
+ * When slipplus.storage.archiveAfterDays is set, the compaction thread moves
+ * the shards of old months into month archives after a checkpoint and once
+ * at startup; see SlipFileStore.
+ */
+class JsonStorageBackend implements StorageBackend {
+
+    // Journal folded into the day shards once this many records or bytes pile up
+    static final int CHECKPOINT_THRESHOLD = 500;
+    private static final long CHECKPOINT_BYTES = 4L * 1024 * 1024;
+    // Months that ended more than this many days ago go into compressed archives; 0, the default, keeps every date loose
+    private static final String ARCHIVE_PROPERTY = "slipplus.storage.archiveAfterDays";
+    private static final int DEFAULT_ARCHIVE_AFTER_DAYS = 0;
+
+    private static final String PARTY_WRITE_KEY = "parties";
+    private static final String SHORTCUT_WRITE_KEY = "shortcuts";
+
+    private final String dataDir;
+    private final File partyFile;
+    private final File shortcutFile;
+    private final ObjectReader partyReader;
+    private final ObjectWriter partyWriter;
+    private final ObjectReader shortcutReader;
+    private final ObjectWriter shortcutWriter;
+
+    // Held while a mutation is applied in memory and queued, so queue order = apply order
+    private final Object writeLock = new Object();
+    private final StorageExecutor storageExecutor = new StorageExecutor();
+    private final StorageExecutor compactionExecutor = new StorageExecutor("slipplus-compaction");
+    private int recordsSinceCheckpoint = 0;
+    // Records waiting for the next group commit; guarded by writeLock
+    private SlipJournal.Batch openBatch = null;
+    // Checkpoint in progress, or null; guarded by writeLock
+    private CompletableFuture<Void> compaction = null;
+    private final SlipJournal journal;
+    private final SlipFileStore fileStore;
+    private final SlipRepository repository;
+    private final DataDirLock dataDirLock;
+    private final DataDirWatcher watcher;
+    private final AtomicBoolean refreshQueued = new AtomicBoolean();
+    // Journal and shard generations the repository reflects; guarded by the journal lock
+    private long journalGeneration = 0;
+    private long shardGeneration = 0;
+    private final int archiveAfterDays = Integer.getInteger(ARCHIVE_PROPERTY, DEFAULT_ARCHIVE_AFTER_DAYS);
+
+    JsonStorageBackend(String dataDir, ObjectMapper mapper, StorageFormat shardFormat) {
+        this.dataDir = dataDir;
+        this.partyFile = new File(dataDir, "parties.json");
+        this.shortcutFile = new File(dataDir, "shortcuts.json");
+        TypeReference<List<Party>> partyType = new TypeReference<>() {};
+        this.partyReader = mapper.readerFor(partyType);
+        this.partyWriter = StorageFormat.writerFor(mapper, partyType);
+        TypeReference<List<Shortcut>> shortcutType = new TypeReference<>() {};
+        this.shortcutReader = mapper.readerFor(shortcutType);
+        this.shortcutWriter = StorageFormat.writerFor(mapper, shortcutType);
+        this.journal = new SlipJournal(new File(dataDir, "slips.journal"), mapper);
+        this.fileStore = new SlipFileStore(dataDir, mapper, shardFormat);
+        this.repository = new SlipRepository(this::loadRepository, fileStore::readShard, fileStore::readShardPartyKeys,
+                fileStore::readShardTotals);
+        this.dataDirLock = DataDirLock.of(dataDir);
+        this.watcher = new DataDirWatcher(new File(dataDir), Set.of("slips.journal", "slips.lock"),
+                this::queueRefresh);
+    }
+
+    // ---------- Parties and shortcuts ----------
+
+    @Override
+    public List<Party> loadParties() {
+        try {
+            storageExecutor.awaitWrite(PARTY_WRITE_KEY);
+            List<Party> parties = AtomicFiles.read(partyFile,
+                    file -> partyReader.<List<Party>>readValue(file));
+            return parties != null ? parties : new ArrayList<>();
+        } catch (Exception e) {
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> saveParties(List<Party> parties) {
+        return storageExecutor.submitWrite(PARTY_WRITE_KEY, () -> {
+            ensureDataDirExists();
+            AtomicFiles.replace(partyFile, out -> partyWriter.writeValue(out, parties));
+        });
+    }
+
+    @Override
+    public List<Shortcut> loadShortcuts() {
+        try {
+            storageExecutor.awaitWrite(SHORTCUT_WRITE_KEY);
+            List<Shortcut> shortcuts = AtomicFiles.read(shortcutFile,
+                    file -> shortcutReader.<List<Shortcut>>readValue(file));
+            return shortcuts != null ? shortcuts : new ArrayList<>();
+        } catch (Exception e) {
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> saveShortcuts(List<Shortcut> shortcuts) {
+        return storageExecutor.submitWrite(SHORTCUT_WRITE_KEY, () -> {
+            ensureDataDirExists();
+            AtomicFiles.replace(shortcutFile, out -> shortcutWriter.writeValue(out, shortcuts));
+        });
+    }
+
+    // ---------- Sub-slips ----------
+
+    @Override
+    public List<LocalDate> getDates() {
+        return repository.getDateKeys().stream().map(LocalDate::parse).toList();
+    }
+
+    @Override
+    public List<String> getPartyKeys(LocalDate date) {
+        return repository.getPartyKeys(date.toString());
+    }
+
+    @Override
+    public List<SubSlip> getSubSlips(LocalDate date, String partyKey) {
+        return repository.getSubSlips(date.toString(), partyKey);
+    }
+
+    @Override
+    public Map<String, List<SubSlip>> getSubSlipsByParty(LocalDate date) {
+        return repository.getSubSlipsByParty(date.toString());
+    }
+
+    @Override
+    public boolean hasSubSlipsForParty(String partyKey) {
+        return repository.hasSubSlipsForParty(partyKey);
+    }
+
+    @Override
+    public SortedMap<LocalDate, List<SubSlip>> getSubSlipHistory(String partyKey) {
+        SortedMap<LocalDate, List<SubSlip>> history = new TreeMap<>();
+        repository.getPartyHistory(partyKey).forEach((dateKey, slips) -> history.put(LocalDate.parse(dateKey), slips));
+        return history;
+    }
+
+    @Override
+    public Stream<DatedSubSlip> streamSubSlips(LocalDate from, LocalDate to, Set<String> partyKeys) {
+        return repository.streamSubSlips(from.toString(), to.toString(), partyKeys);
+    }
+
+    @Override
+    public SlipSnapshot snapshot(LocalDate from, LocalDate to) {
+        return repository.snapshot(from.toString(), to.toString());
+    }
+
+    @Override
+    public List<TruckSighting> findTruck(String truckNumber, LocalDate from) {
+        return repository.findTruck(truckNumber, from.toString()).stream()
+                .map(entry -> TruckIndex.sighting(entry.date(), entry.party(), entry.id()))
+                .toList();
+    }
+
+    @Override
+    public DaySummary getDaySummary(LocalDate date) {
+        return repository.getDaySummary(date.toString());
+    }
+
+    @Override
+    public DaySummary getRangeSummary(LocalDate from, LocalDate to) {
+        return repository.getRangeSummary(from, to);
+    }
+
+    @Override
+    public Map<String, Map<String, List<SubSlip>>> copySubSlips() {
+        return repository.copySubSlips();
+    }
+
+    @Override
+    public CompletableFuture<Void> addSubSlip(LocalDate date, String partyKey, SubSlip slip) {
+        synchronized (writeLock) {
+            repository.addSubSlip(date.toString(), partyKey, slip);
+            return queueJournalRecord(SlipJournal.Entry.addSubSlip(date.toString(), partyKey, slip));
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteSubSlips(LocalDate date, String partyKey, List<SubSlip> slips) {
+        synchronized (writeLock) {
+            // Remove the specific slips by comparing truck numbers and amounts
+            int removed = repository.removeSubSlips(date.toString(), partyKey, SlipRepository.matchingAny(slips));
+
+            if (removed == 0) {
+                System.out.println("No slips found for party " + partyKey + " on " + date);
+                return CompletableFuture.completedFuture(null);
+            }
+            return queueJournalRecord(SlipJournal.Entry.deleteSubSlips(date.toString(), partyKey, slips));
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteSubSlipsById(LocalDate date, List<String> ids) {
+        synchronized (writeLock) {
+            if (repository.removeSubSlipsById(date.toString(), ids) == 0) {
+                System.out.println("No slips found with the given IDs on " + date);
+                return CompletableFuture.completedFuture(null);
+            }
+            return queueJournalRecord(SlipJournal.Entry.deleteSubSlipsById(date.toString(), List.copyOf(ids)));
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteParty(LocalDate date, String partyKey) {
+        synchronized (writeLock) {
+            if (!repository.removeParty(date.toString(), partyKey)) {
+                System.out.println("No slips found for party " + partyKey + " on " + date);
+                return CompletableFuture.completedFuture(null);
+            }
+            return queueJournalRecord(SlipJournal.Entry.deleteParty(date.toString(), partyKey));
+        }
+    }
+
+    // ---------- Main slips ----------
+
+    @Override
+    public MainSlip getMainSlip(LocalDate date, String partyName) {
+        return repository.getMainSlip(date.toString(), partyName);
+    }
+
+    @Override
+    public Map<String, MainSlip> getMainSlips(LocalDate date) {
+        return repository.getMainSlips(date.toString());
+    }
+
+    @Override
+    public Map<String, Map<String, MainSlip>> copyMainSlips() {
+        return repository.copyMainSlips();
+    }
+
+    @Override
+    public CompletableFuture<Void> putMainSlip(MainSlip mainSlip) {
+        synchronized (writeLock) {
+            repository.putMainSlip(mainSlip.getDate().toString(), mainSlip);
+            return queueJournalRecord(SlipJournal.Entry.putMainSlip(mainSlip.getDate().toString(), mainSlip));
+        }
+    }
+
+    // ---------- Reset ----------
+
+    @Override
+    public void deleteAllSlips() {
+        // Behind any writes still queued
+        CompletableFuture<Void> deleted;
+        synchronized (writeLock) {
+            repository.clear();
+            recordsSinceCheckpoint = 0;
+            openBatch = null;
+            CompletableFuture<Void> running = compaction;
+            deleted = storageExecutor.submit(() -> {
+                // Let a running checkpoint finish rather than write into the emptied directory
+                if (running != null) running.exceptionally(error -> null).join();
+                FileLock checkpointLock = dataDirLock.checkpointLock();
+                try {
+                    dataDirLock.withJournalLock(() -> {
+                        journal.deleteAll();
+                        fileStore.deleteAll();
+                        // Tells other processes to drop what they have loaded
+                        journalGeneration = dataDirLock.nextGeneration();
+                        shardGeneration = dataDirLock.nextShardGeneration();
+                    });
+                } finally {
+                    checkpointLock.release();
+                }
+            });
+        }
+        deleted.join();
+        System.out.println("Deleted: slip journal, day shards and manifest");
+    }
+
+    @Override
+    public void close() {
+        watcher.stop();
+        // Storage first: a rotation it still runs hands its checkpoint to the compaction thread
+        storageExecutor.close();
+        compactionExecutor.close();
+        dataDirLock.close();
+    }
+
+    // ---------- Journal and checkpoints ----------
+
+    private void loadRepository(SlipRepository repo) {
+        try {
+            dataDirLock.withJournalLock(() -> loadLocked(repo));
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        // Keeps the next start's replay short even if nothing is saved this session
+        if (checkpointDue()) storageExecutor.submit(this::checkpointIfDue);
+        compactionExecutor.submit(this::archiveIfDue);
+        watcher.start();
+    }
+
+    private void loadLocked(SlipRepository repo) throws Exception {
+        journalGeneration = dataDirLock.generation();
+        recoverCheckpoint();
+        shardGeneration = dataDirLock.shardGeneration();
+        try {
+            if (!fileStore.hasManifest() && fileStore.hasLegacyFiles()) {
+                ensureDataDirExists();
+                new LegacyMigrator(fileStore).migrate();
+            } else {
+                // A crash right after migration can leave the old files behind
+                fileStore.retireLegacyFiles();
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        repo.loadManifest(fileStore.readManifest());
+        repo.loadPartyIndex(fileStore.readPartyIndex());
+        // Before the replay, which applies its changes on top
+        repo.loadRollups(fileStore.readRollups());
+        repo.loadTruckIndex(fileStore.readTruckIndex());
+        journal.replay(repo::apply);
+        recordsSinceCheckpoint = journal.size();
+    }
+
+    /**
+     * Queues the journal append for a mutation the caller has just applied to
+     * the repository. Must be called with writeLock held.
+     *
+     * Records join the open batch until the writer thread gets to it, so
+     * saves that arrive while a flush is in progress share the next fsync.
+     */
+    private CompletableFuture<Void> queueJournalRecord(SlipJournal.Entry entry) {
+        if (openBatch == null) {
+            SlipJournal.Batch batch = new SlipJournal.Batch();
+            openBatch = batch;
+            storageExecutor.submit(() -> flushBatch(batch)).whenComplete((ignored, error) -> {
+                if (error != null) batch.written.completeExceptionally(error);
+                else batch.written.complete(null);
+            });
+        }
+        CompletableFuture<Void> written = openBatch.add(entry);
+
+        recordsSinceCheckpoint++;
+        if (checkpointDue()) startCheckpoint();
+        return written;
+    }
+
+    private boolean checkpointDue() {
+        return recordsSinceCheckpoint >= CHECKPOINT_THRESHOLD || journal.byteSize() >= CHECKPOINT_BYTES;
+    }
+
+    private void checkpointIfDue() {
+        synchronized (writeLock) {
+            if (checkpointDue()) startCheckpoint();
+        }
+    }
+
+    /**
+     * Starts folding the journal into the shards. Must be called with
+     * writeLock held. Only one checkpoint runs at a time, across processes
+     * too; records that pile up meanwhile start the next one.
+     */
+    private void startCheckpoint() {
+        if (compaction != null) return;
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        compaction = done;
+        storageExecutor.submit(() -> rotateForCheckpoint(done));
+    }
+
+    /** Rotates the journal on the writer thread and hands the shards to the compaction thread. */
+    private void rotateForCheckpoint(CompletableFuture<Void> done) throws Exception {
+        FileLock checkpointLock = dataDirLock.tryCheckpointLock();
+        if (checkpointLock == null) {
+            // Another window is compacting this journal; a later record tries again
+            finishCheckpoint(done, null, false);
+            return;
+        }
+
+        Snapshot snapshot;
+        try {
+            ensureDataDirExists();
+            snapshot = dataDirLock.withJournalLock(() -> {
+                catchUp(null);
+                Snapshot captured;
+                synchronized (writeLock) {
+                    // The snapshot must match the journal exactly where it is rotated,
+                    // so records applied here but not yet appended go in first
+                    if (openBatch != null) {
+                        journal.append(openBatch.entries);
+                        openBatch.entries.clear();
+                        openBatch = null;
+                    }
+                    recordsSinceCheckpoint = 0;
+                    captured = new Snapshot(repository);
+                }
+                try {
+                    journal.rotate();
+                } catch (Exception e) {
+                    repository.markDirty(captured.changed.keySet());
+                    throw e;
+                }
+                journalGeneration = dataDirLock.nextGeneration();
+                return captured;
+            });
+        } catch (Exception e) {
+            release(checkpointLock);
+            finishCheckpoint(done, e, false);
+            throw e;
+        }
+
+        // Writing the shards can take a while; appends go on meanwhile
+        compactionExecutor.submit(() -> {
+            writeCheckpoint(snapshot);
+            archiveColdDates();
+        }).whenComplete((ignored, error) -> {
+            release(checkpointLock);
+            finishCheckpoint(done, error, true);
+        });
+    }
+
+    private static void release(FileLock lock) {
+        try {
+            lock.release();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void finishCheckpoint(CompletableFuture<Void> done, Throwable error, boolean rotated) {
+        synchronized (writeLock) {
+            if (compaction == done) compaction = null;
+            if (rotated && error == null && checkpointDue()) startCheckpoint();
+        }
+        if (error != null) done.completeExceptionally(error);
+        else done.complete(null);
+    }
+
+    private void flushBatch(SlipJournal.Batch batch) throws Exception {
+        synchronized (writeLock) {
+            // Closed from here on; new records start the next batch
+            if (openBatch == batch) openBatch = null;
+        }
+        // Already appended ahead of a checkpoint
+        if (batch.entries.isEmpty()) return;
+        ensureDataDirExists();
+        dataDirLock.withJournalLock(() -> {
+            catchUp(batch);
+            journal.append(batch.entries);
+        });
+    }
+
+    /**
+     * Applies what other processes have committed since this one last looked.
+     * Must be called on the writer thread with the journal lock held;
+     * {@code flushing} is the batch about to be appended, if any.
+     *
+     * Records of this process that are applied in memory but not yet on disk
+     * are applied again afterwards, since they will land in the journal after
+     * the other process's records. Applying a record twice is harmless.
+     */
+    private void catchUp(SlipJournal.Batch flushing) throws Exception {
+        long generation = dataDirLock.generation();
+        long shards = dataDirLock.shardGeneration();
+        if (generation == journalGeneration && shards == shardGeneration && !journal.hasUnread()) return;
+        synchronized (writeLock) {
+            if (generation == journalGeneration) {
+                // A checkpoint elsewhere only took in records this process has already read
+                shardGeneration = shards;
+                recordsSinceCheckpoint += journal.readNew(repository::apply);
+            } else if (shards == shardGeneration && journal.readRotated(repository::apply) >= 0) {
+                // Rotated elsewhere: the unread records wait in the segment, the rest go on in the new journal
+                journalGeneration = generation;
+                recordsSinceCheckpoint = journal.readNew(repository::apply);
+            } else {
+                // Checkpointed or reset elsewhere: unread records may only be in the shards now
+                System.out.println("Slip data changed by another process; reloading");
+                repository.reload();
+            }
+            if (flushing != null) flushing.entries.forEach(repository::apply);
+            if (openBatch != null && openBatch != flushing) openBatch.entries.forEach(repository::apply);
+        }
+    }
+
+    private void queueRefresh() {
+        // One refresh for a whole burst of events
+        if (!refreshQueued.compareAndSet(false, true)) return;
+        storageExecutor.submit(() -> {
+            refreshQueued.set(false);
+            dataDirLock.withJournalLock(() -> catchUp(null));
+        });
+    }
+
+    /**
+     * Writes the snapshot for a rotated journal segment, rewriting only the
+     * dates that changed since the last checkpoint, then drops the segment.
+     */
+    private void writeCheckpoint(Snapshot snapshot) throws Exception {
+        try {
+            fileStore.prepareCheckpoint(snapshot.changed, snapshot.manifest, snapshot.partyIndex, snapshot.rollups,
+                    snapshot.truckIndex);
+        } catch (Exception e) {
+            // The rotated segment still holds these records; write the shards next time
+            fileStore.discardCheckpoint();
+            repository.markDirty(snapshot.changed.keySet());
+            if (snapshot.truckIndex != null) repository.markTruckIndexChanged();
+            throw e;
+        }
+        // Quick renames, done so that another process loading meanwhile sees all of it or none
+        dataDirLock.withJournalLock(() -> {
+            fileStore.applyCheckpoint();
+            journal.deleteSegment();
+            fileStore.finishCheckpoint();
+            // Nothing was left unread here: the snapshot was taken after catching up
+            shardGeneration = dataDirLock.nextShardGeneration();
+        });
+        repository.checkpointWritten(snapshot.changed.keySet());
+    }
+
+    private void archiveIfDue() throws IOException {
+        FileLock checkpointLock = dataDirLock.tryCheckpointLock();
+        // Whoever holds it archives after their checkpoint
+        if (checkpointLock == null) return;
+        try {
+            archiveColdDates();
+        } finally {
+            release(checkpointLock);
+        }
+    }
+
+    /**
+     * Moves the shards of months that ended long enough ago into their month
+     * archives. Runs as a checkpoint of its own, so it must be called with
+     * the checkpoint lock held. The repository is untouched: the slips are
+     * the same, only where they are read from changes.
+     */
+    private void archiveColdDates() {
+        if (archiveAfterDays <= 0) return;
+        // Recovering this marker would drop a pending segment that is still needed
+        if (journal.hasSegment()) return;
+        String beforeMonthKey = YearMonth.from(LocalDate.now().minusDays(archiveAfterDays)).toString();
+        try {
+            if (!fileStore.prepareArchive(beforeMonthKey)) return;
+            fileStore.commitCheckpoint();
+        } catch (Exception e) {
+            e.printStackTrace();
+            try {
+                fileStore.discardCheckpoint();
+            } catch (Exception discardError) {
+                discardError.printStackTrace();
+            }
+            return;
+        }
+        try {
+            dataDirLock.withJournalLock(() -> {
+                fileStore.applyCheckpoint();
+                fileStore.finishCheckpoint();
+            });
+        } catch (Exception e) {
+            // Committed; recoverCheckpoint finishes it on the next start
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Finishes a checkpoint that committed, or discards one that did not.
+     * Left alone while another process holds the checkpoint lock, as the
+     * checkpoint is then still being written.
+     */
+    private void recoverCheckpoint() {
+        try {
+            FileLock checkpointLock = dataDirLock.tryCheckpointLock();
+            if (checkpointLock == null) return;
+            try {
+                if (fileStore.hasCommittedCheckpoint()) {
+                    fileStore.applyCheckpoint();
+                    boolean hadSegment = journal.hasSegment();
+                    journal.deleteSegment();
+                    fileStore.finishCheckpoint();
+                    // Others following the journal may not have read all of the segment
+                    if (hadSegment) dataDirLock.nextShardGeneration();
+                } else {
+                    fileStore.discardCheckpoint();
+                }
+            } finally {
+                checkpointLock.release();
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void ensureDataDirExists() {
+        File dir = new File(dataDir);
+        if (!dir.exists()) {
+            if (!dir.mkdirs()) {
+                throw new RuntimeException("Failed to create data directory: " + dataDir);
+            }
+        }
+    }
+
+    /** What a checkpoint writes, captured at the journal position it rotates at. */
+    private static class Snapshot {
+        final Map<String, DayShard> changed;
+        final Map<String, Integer> manifest;
+        final Map<String, List<String>> partyIndex;
+        final Map<String, DaySummary> rollups;
+        // Null when unchanged since the last checkpoint
+        final Map<String, List<TruckIndex.Entry>> truckIndex;
+
+        Snapshot(SlipRepository repository) {
+            changed = repository.takeDirtyShards();
+            manifest = repository.copyManifest();
+            partyIndex = repository.copyPartyIndex();
+            rollups = repository.copyRollups();
+            truckIndex = repository.takeTruckIndex();
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.slipplus.core;
+
+import com.slipplus.models.MainSlip;
+import com.slipplus.models.SubSlip;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileLock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Moves the data out of the old monolithic sub_slips.json / main_slips.json
+ * into per-date shards.
+ *
+ * The files are streamed one date at a time and each date is written out as
+ * its shard before the next one is read, so memory use is set by the
+ * largest day rather than the whole history. The shards, manifest, party
+ * and truck indexes and rollups are written as one checkpoint, which is
+ * only committed once the slip counts and amounts read back from the
+ * shards match the source. The source files are then renamed to *.legacy and kept for
+ * rolling back; a failed migration leaves them where they were.
+ *
+ * Runs by itself on the first start that finds legacy files, or ahead of
+ * time with {@code gradle migrateLegacy [-PdataDir=...]} while SlipPlus is
+ * closed.
+ */
+public final class LegacyMigrator {
+
+    // Sums are compared after a different number of additions, in a different order
+    private static final double TOLERANCE = 0.01;
+
+    private final SlipFileStore fileStore;
+
+    LegacyMigrator(SlipFileStore fileStore) {
+        this.fileStore = fileStore;
+    }
+
+    /**
+     * Writes and commits the shards for everything in the legacy files.
+     * Must be called with the journal lock held and no checkpoint pending.
+     */
+    void migrate() throws IOException {
+        try {
+            migrateByDate();
+        } catch (IOException | RuntimeException e) {
+            // Half-written shards must not ride along with the next checkpoint
+            fileStore.discardCheckpoint();
+            throw e;
+        }
+    }
+
+    private void migrateByDate() throws IOException {
+        long started = System.currentTimeMillis();
+        Tally source = new Tally();
+        Set<String> dateKeys = new TreeSet<>();
+
+        // Pass 1: each date's sub-slips become that date's shard
+        fileStore.streamLegacySubSlips((dateKey, byParty) -> {
+            if (!dateKeys.add(dateKey)) {
+                throw new IOException("Date " + dateKey + " appears twice in sub_slips.json");
+            }
+            DayShard shard = new DayShard();
+            byParty.forEach((partyKey, slips) -> {
+                if (slips == null || slips.isEmpty()) return;
+                List<SubSlip> copy = new ArrayList<>(slips);
+                SlipIds.assignLegacy(dateKey, partyKey, copy);
+                shard.getSubSlips().put(partyKey, copy);
+                source.addSubSlips(copy);
+            });
+            if (shard.isEmpty()) {
+                dateKeys.remove(dateKey);
+                return;
+            }
+            shard.setTotals(DaySummary.of(shard));
+            fileStore.prepareShard(dateKey, shard);
+        });
+
+        // Pass 2: main slips join the shard of their date, which is read back from its .next file
+        fileStore.streamLegacyMainSlips((dateKey, byParty) -> {
+            byParty.values().removeIf(mainSlip -> mainSlip == null);
+            if (byParty.isEmpty()) return;
+            DayShard shard = dateKeys.contains(dateKey) ? fileStore.readPreparedShard(dateKey) : null;
+            if (shard == null) shard = new DayShard();
+            shard.getMainSlips().putAll(byParty);
+            byParty.values().forEach(source::addMainSlip);
+            shard.setTotals(DaySummary.of(shard));
+            fileStore.prepareShard(dateKey, shard);
+            dateKeys.add(dateKey);
+        });
+
+        // Pass 3: build the indexes from what was actually written, and count it
+        Tally written = new Tally();
+        Map<String, Integer> manifest = new TreeMap<>();
+        Map<String, TreeSet<String>> partyDates = new TreeMap<>();
+        SlipRollups rollups = new SlipRollups();
+        TruckIndex trucks = new TruckIndex();
+        for (String dateKey : dateKeys) {
+            DayShard shard = fileStore.readPreparedShard(dateKey);
+            if (shard == null) throw new IOException("Shard for " + dateKey + " was not written");
+            manifest.put(dateKey, shard.subSlipCount());
+            shard.getSubSlips().forEach((partyKey, slips) -> {
+                partyDates.computeIfAbsent(partyKey, k -> new TreeSet<>()).add(dateKey);
+                written.addSubSlips(slips);
+                for (SubSlip slip : slips) trucks.add(slip.getTruckNumber(), dateKey, partyKey, slip.getId());
+            });
+            shard.getMainSlips().values().forEach(written::addMainSlip);
+            rollups.addDay(dateKey, shard.getTotals());
+        }
+
+        String mismatch = source.compare(written);
+        if (mismatch != null) {
+            throw new IOException("Migrated shards do not match the legacy files (" + mismatch
+                    + "); legacy files left in place");
+        }
+
+        Map<String, List<String>> partyIndex = new TreeMap<>();
+        partyDates.forEach((partyKey, dates) -> partyIndex.put(partyKey, new ArrayList<>(dates)));
+        fileStore.prepareIndexes(manifest, partyIndex, rollups.copyMonths(), trucks.copy());
+        fileStore.commitCheckpoint();
+        fileStore.applyCheckpoint();
+        fileStore.finishCheckpoint();
+        fileStore.retireLegacyFiles();
+
+        System.out.println("Migrated legacy slip files: " + dateKeys.size() + " dates, " + written
+                + " in " + (System.currentTimeMillis() - started) + " ms; originals kept as *.legacy");
+    }
+
+    /** Counts and sums that must come out the same before and after. */
+    private static class Tally {
+        int subSlips;
+        int mainSlips;
+        double mainWeight;
+        double finalAmount;
+        double operations;
+
+        void addSubSlips(List<SubSlip> slips) {
+            for (SubSlip slip : slips) {
+                subSlips++;
+                mainWeight += slip.getMainWeight();
+                finalAmount += slip.getFinalAmount();
+            }
+        }
+
+        void addMainSlip(MainSlip mainSlip) {
+            mainSlips++;
+            for (double amount : DaySummary.operationTotalsOf(mainSlip).values()) operations += amount;
+        }
+
+        /** Null when they agree, otherwise what differs. */
+        String compare(Tally other) {
+            if (subSlips != other.subSlips) return "sub-slips " + subSlips + " vs " + other.subSlips;
+            if (mainSlips != other.mainSlips) return "main slips " + mainSlips + " vs " + other.mainSlips;
+            if (Math.abs(mainWeight - other.mainWeight) > TOLERANCE) {
+                return "main weight " + mainWeight + " vs " + other.mainWeight;
+            }
+            if (Math.abs(finalAmount - other.finalAmount) > TOLERANCE) {
+                return "final amount " + finalAmount + " vs " + other.finalAmount;
+            }
+            if (Math.abs(operations - other.operations) > TOLERANCE) {
+                return "operations " + operations + " vs " + other.operations;
+            }
+            return null;
+        }
+
+        @Override
+        public String toString() {
+            return subSlips + " sub-slips (final amount " + String.format("%.2f", finalAmount) + "), "
+                    + mainSlips + " main slips";
+        }
+    }
+
+    // ---------- Command line ----------
+
+    /** Migrates the data directory given as the only argument, by default the app's own. */
+    public static void main(String[] args) throws Exception {
+        String dataDir = args.length > 0 ? args[0] : "src/main/resources/data";
+        if (!new File(dataDir).isDirectory()) {
+            System.out.println("No data directory at " + new File(dataDir).getAbsolutePath());
+            System.exit(1);
+        }
+        SlipFileStore fileStore = new SlipFileStore(dataDir, StorageFormat.JSON.mapper(), StorageFormat.configured());
+
+        DataDirLock dataDirLock = DataDirLock.of(dataDir);
+        FileLock checkpointLock = dataDirLock.tryCheckpointLock();
+        if (checkpointLock == null) {
+            System.out.println("Another SlipPlus process is writing a checkpoint in " + dataDir + "; try again shortly");
+            System.exit(1);
+        }
+        try {
+            dataDirLock.withJournalLock(() -> {
+                if (fileStore.hasManifest()) {
+                    System.out.println(dataDir + " already holds day shards; nothing to migrate");
+                    return;
+                }
+                if (!fileStore.hasLegacyFiles()) {
+                    System.out.println("No sub_slips.json or main_slips.json in " + dataDir);
+                    return;
+                }
+                // Left by an earlier attempt that stopped before committing
+                fileStore.discardCheckpoint();
+                new LegacyMigrator(fileStore).migrate();
+            });
+        } finally {
+            checkpointLock.release();
+        }
+    }
+}
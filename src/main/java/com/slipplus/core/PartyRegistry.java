@@ -0,0 +1,69 @@
+package com.slipplus.core;
+
+import com.slipplus.models.Party;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Immutable lookup tables over one version of the party list.
+ *
+ * StorageManager swaps in a new registry whenever the parties are saved, so
+ * readers never see a half-updated list and never rescan parties.json.
+ * Parties handed out are copies; callers are free to edit them.
+ */
+class PartyRegistry {
+
+    private final List<Party> parties = new ArrayList<>();
+    private final Map<Integer, Party> byId = new HashMap<>();
+    private final Map<String, Party> byName = new HashMap<>();
+    private final Map<String, Party> byNormalizedName = new HashMap<>();
+
+    PartyRegistry(List<Party> source) {
+        for (Party party : source) {
+            Party copy = copy(party);
+            parties.add(copy);
+            // First one wins, matching the old findFirst() scans
+            byId.putIfAbsent(copy.getId(), copy);
+            if (copy.getName() != null) {
+                byName.putIfAbsent(copy.getName(), copy);
+                byNormalizedName.putIfAbsent(normalize(copy.getName()), copy);
+            }
+        }
+    }
+
+    static String normalize(String name) {
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static Party copy(Party party) {
+        return new Party(party.getId(), party.getName());
+    }
+
+    /** The parties in file order, as a list the caller may modify. */
+    List<Party> copyParties() {
+        List<Party> copy = new ArrayList<>(parties.size());
+        for (Party party : parties) copy.add(copy(party));
+        return copy;
+    }
+
+    Party getById(int id) {
+        Party party = byId.get(id);
+        return party != null ? copy(party) : null;
+    }
+
+    /** Exact, case-sensitive name match. */
+    Party getByName(String name) {
+        Party party = name != null ? byName.get(name) : null;
+        return party != null ? copy(party) : null;
+    }
+
+    /** Name match ignoring case and surrounding whitespace. */
+    Party findByName(String name) {
+        Party party = name != null ? byNormalizedName.get(normalize(name)) : null;
+        return party != null ? copy(party) : null;
+    }
+}
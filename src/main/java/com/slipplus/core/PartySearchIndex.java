@@ -0,0 +1,313 @@
+package com.slipplus.core;
+
+import com.slipplus.models.Party;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Type-ahead search over party names.
+ *
+ * Names are normalized (lower case, runs of anything but letters and digits
+ * as one space). Two tries, one over the first word of every name and one
+ * over all words, answer prefix queries; each trie node keeps its parties
+ * in rank order (latest slip first, then by name), so the top results are
+ * read off the front without looking at the rest. An index from each
+ * three-character run to the names containing it finds mid-word matches
+ * and near misses, so a typo still turns up the party.
+ *
+ * Results come in tiers: the name starts with the query, a later word does,
+ * the name contains it, or it only looks similar. Lower tiers are only
+ * searched when the higher ones leave room.
+ *
+ * Parties are added, renamed and removed one at a time as the list is
+ * saved; nothing is rebuilt. Not thread-safe on its own; StorageManager
+ * guards it.
+ */
+class PartySearchIndex {
+
+    // Share of the query's trigrams a name needs to have to count as a near miss
+    private static final double MIN_SIMILARITY = 0.5;
+    // Shorter queries are still being typed; near misses would only be noise
+    private static final int MIN_FUZZY_LENGTH = 3;
+
+    private static final int CONTAINS = 2;
+    private static final int SIMILAR = 3;
+
+    // Latest slip first, parties never used last, then alphabetical
+    private static final Comparator<Entry> BY_RANK = Comparator.<Entry>comparingLong(entry -> -entry.lastUsed)
+            .thenComparing(entry -> entry.normalized)
+            .thenComparingInt(entry -> entry.party.getId());
+
+    private final Map<Integer, Entry> entries = new HashMap<>();
+    private final NavigableSet<Entry> ranked = new TreeSet<>(BY_RANK);
+    private final TrieNode firstWords = new TrieNode();
+    private final TrieNode allWords = new TrieNode();
+    private final Map<String, Set<Integer>> trigrams = new HashMap<>();
+    // Party ID → epoch day of its latest slip, as far as known; kept for parties not added yet too
+    private final Map<Integer, Long> lastUsed = new HashMap<>();
+
+    private static final class Entry {
+        final Party party;
+        final String normalized;
+        final List<String> words;
+        final Set<String> grams;
+        // Part of the sort key; only changed while the entry is out of every ordered set
+        long lastUsed;
+
+        Entry(Party party, long lastUsed) {
+            this.party = party;
+            this.normalized = normalize(party.getName());
+            this.words = normalized.isEmpty() ? List.of() : List.of(normalized.split(" "));
+            this.grams = trigramsOf(normalized);
+            this.lastUsed = lastUsed;
+        }
+    }
+
+    private static final class TrieNode {
+        final Map<Character, TrieNode> children = new HashMap<>();
+        // Parties with a word that has the path to this node as its prefix, best ranked first
+        final NavigableSet<Entry> entries = new TreeSet<>(BY_RANK);
+    }
+
+    private static final class Match {
+        final Entry entry;
+        final int tier;
+        final double similarity;
+
+        Match(Entry entry, int tier, double similarity) {
+            this.entry = entry;
+            this.tier = tier;
+            this.similarity = similarity;
+        }
+    }
+
+    // Best first: tier, then similarity for near misses, then rank
+    private static final Comparator<Match> BY_MATCH = Comparator.<Match>comparingInt(match -> match.tier)
+            .thenComparing(Comparator.<Match>comparingDouble(match -> match.similarity).reversed())
+            .thenComparing(match -> match.entry, BY_RANK);
+
+    static String normalize(String name) {
+        if (name == null) return "";
+        StringBuilder out = new StringBuilder(name.length());
+        boolean space = false;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                if (space && out.length() > 0) out.append(' ');
+                out.append(Character.toLowerCase(c));
+                space = false;
+            } else {
+                space = true;
+            }
+        }
+        return out.toString();
+    }
+
+    /** Three-character runs of the name with a space on either side, so word edges count too. */
+    private static Set<String> trigramsOf(String normalized) {
+        Set<String> grams = new HashSet<>();
+        if (normalized.isEmpty()) return grams;
+        String padded = " " + normalized + " ";
+        for (int i = 0; i + 3 <= padded.length(); i++) grams.add(padded.substring(i, i + 3));
+        return grams;
+    }
+
+    // ---------- Updates ----------
+
+    /** Brings the index in line with a saved party list, touching only parties that changed. */
+    void sync(List<Party> parties) {
+        Set<Integer> present = new HashSet<>();
+        for (Party party : parties) {
+            // First one wins, as in PartyRegistry
+            if (!present.add(party.getId())) continue;
+            Entry current = entries.get(party.getId());
+            if (current == null || !current.party.getName().equals(nameOf(party))) put(party);
+        }
+        for (Integer id : new ArrayList<>(entries.keySet())) {
+            if (!present.contains(id)) remove(id);
+        }
+    }
+
+    private static String nameOf(Party party) {
+        return party.getName() != null ? party.getName() : "";
+    }
+
+    void put(Party party) {
+        remove(party.getId());
+        Entry entry = new Entry(new Party(party.getId(), nameOf(party)),
+                lastUsed.getOrDefault(party.getId(), Long.MIN_VALUE + 1));
+        entries.put(party.getId(), entry);
+        link(entry);
+        for (String gram : entry.grams) trigrams.computeIfAbsent(gram, g -> new HashSet<>()).add(party.getId());
+    }
+
+    void remove(int id) {
+        Entry entry = entries.remove(id);
+        if (entry == null) return;
+        unlink(entry);
+        for (String gram : entry.grams) {
+            Set<Integer> ids = trigrams.get(gram);
+            if (ids != null && ids.remove(id) && ids.isEmpty()) trigrams.remove(gram);
+        }
+    }
+
+    /** Notes that the party had a slip on the given day; later days rank it higher. */
+    void recordUse(int id, long epochDay) {
+        Long known = lastUsed.get(id);
+        if (known != null && known >= epochDay) return;
+        lastUsed.put(id, epochDay);
+        Entry entry = entries.get(id);
+        if (entry == null) return;
+        // Its place in every ordered set moves, so take it out before changing the key
+        unlink(entry);
+        entry.lastUsed = epochDay;
+        link(entry);
+    }
+
+    /** Adds the entry to the ordered sets: overall, and every trie node on its words' paths. */
+    private void link(Entry entry) {
+        ranked.add(entry);
+        for (int i = 0; i < entry.words.size(); i++) {
+            String word = entry.words.get(i);
+            if (i == 0) addToTrie(firstWords, word, entry);
+            addToTrie(allWords, word, entry);
+        }
+    }
+
+    private void unlink(Entry entry) {
+        ranked.remove(entry);
+        for (int i = 0; i < entry.words.size(); i++) {
+            String word = entry.words.get(i);
+            if (i == 0) removeFromTrie(firstWords, word, 0, entry);
+            removeFromTrie(allWords, word, 0, entry);
+        }
+    }
+
+    private static void addToTrie(TrieNode root, String word, Entry entry) {
+        TrieNode node = root;
+        for (int i = 0; i < word.length(); i++) {
+            node = node.children.computeIfAbsent(word.charAt(i), c -> new TrieNode());
+            node.entries.add(entry);
+        }
+    }
+
+    /** Removes the entry along the word's path and drops nodes nobody passes through any more. */
+    private static void removeFromTrie(TrieNode node, String word, int depth, Entry entry) {
+        if (depth == word.length()) return;
+        TrieNode child = node.children.get(word.charAt(depth));
+        if (child == null) return;
+        removeFromTrie(child, word, depth + 1, entry);
+        child.entries.remove(entry);
+        if (child.entries.isEmpty()) node.children.remove(word.charAt(depth));
+    }
+
+    // ---------- Search ----------
+
+    /**
+     * Up to limit parties matching the query, best first. An empty query
+     * lists every party, most recently used first. A non-null allowed set
+     * restricts the results to those party IDs.
+     */
+    List<Party> search(String query, int limit, Set<Integer> allowed) {
+        String q = normalize(query);
+        List<Party> results = new ArrayList<>();
+        if (q.isEmpty()) {
+            take(ranked, limit, allowed, entry -> true, results, null);
+            return results;
+        }
+
+        // Prefix tiers, read off the trie nodes in rank order until there are enough
+        Set<Integer> taken = new HashSet<>();
+        String firstWord = q.contains(" ") ? q.substring(0, q.indexOf(' ')) : q;
+        take(prefixMatches(firstWords, firstWord), limit, allowed,
+                entry -> entry.normalized.startsWith(q), results, taken);
+        take(prefixMatches(allWords, firstWord), limit, allowed,
+                entry -> !taken.contains(entry.party.getId()) && wordStartsWith(entry, q), results, taken);
+        if (results.size() >= limit || q.length() < MIN_FUZZY_LENGTH) return results;
+
+        // Everything sharing a trigram with the query: mid-word matches and near misses
+        Set<String> queryGrams = trigramsOf(q);
+        Map<Integer, Integer> shared = new HashMap<>();
+        for (String gram : queryGrams) {
+            Set<Integer> ids = trigrams.get(gram);
+            if (ids == null) continue;
+            for (Integer id : ids) {
+                if (!taken.contains(id) && (allowed == null || allowed.contains(id))) shared.merge(id, 1, Integer::sum);
+            }
+        }
+        int room = limit - results.size();
+        PriorityQueue<Match> best = new PriorityQueue<>(BY_MATCH.reversed());
+        for (Map.Entry<Integer, Integer> candidate : shared.entrySet()) {
+            Entry entry = entries.get(candidate.getKey());
+            Match match;
+            if (entry.normalized.contains(q)) {
+                match = new Match(entry, CONTAINS, 0);
+            } else {
+                // Measured against the query alone: what was typed is usually part of a longer name
+                double similarity = (double) candidate.getValue() / queryGrams.size();
+                if (similarity < MIN_SIMILARITY) continue;
+                match = new Match(entry, SIMILAR, similarity);
+            }
+            if (best.size() < room) {
+                best.add(match);
+            } else if (BY_MATCH.compare(match, best.peek()) < 0) {
+                best.poll();
+                best.add(match);
+            }
+        }
+        List<Match> rest = new ArrayList<>(best);
+        rest.sort(BY_MATCH);
+        for (Match match : rest) results.add(copy(match.entry));
+        return results;
+    }
+
+    private interface EntryFilter {
+        boolean accept(Entry entry);
+    }
+
+    /** Appends entries that pass, in the set's order, until the results reach the limit. */
+    private static void take(Set<Entry> candidates, int limit, Set<Integer> allowed, EntryFilter filter,
+                             List<Party> results, Set<Integer> taken) {
+        for (Entry entry : candidates) {
+            if (results.size() >= limit) return;
+            if (allowed != null && !allowed.contains(entry.party.getId())) continue;
+            if (!filter.accept(entry)) continue;
+            results.add(copy(entry));
+            if (taken != null) taken.add(entry.party.getId());
+        }
+    }
+
+    private static Set<Entry> prefixMatches(TrieNode root, String prefix) {
+        TrieNode node = root;
+        for (int i = 0; i < prefix.length() && node != null; i++) node = node.children.get(prefix.charAt(i));
+        return node != null ? node.entries : Collections.emptySet();
+    }
+
+    private static boolean wordStartsWith(Entry entry, String q) {
+        // A multi-word query may start at any word, so check the rest of the name from each word on
+        int at = 0;
+        for (String word : entry.words) {
+            if (entry.normalized.startsWith(q, at)) return true;
+            at += word.length() + 1;
+        }
+        return false;
+    }
+
+    private static Party copy(Entry entry) {
+        return new Party(entry.party.getId(), entry.party.getName());
+    }
+
+    int size() {
+        return entries.size();
+    }
+}
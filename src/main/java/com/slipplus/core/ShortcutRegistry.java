@@ -0,0 +1,73 @@
+package com.slipplus.core;
+
+import com.slipplus.models.Shortcut;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable views over one version of the shortcut list.
+ *
+ * StorageManager swaps in a new registry, with the next version number,
+ * whenever the shortcuts are saved, so screens can hold on to one for as
+ * long as they draw from it and never reread shortcuts.json. The lists and
+ * shortcuts handed out are shared and must not be modified; loadShortcuts
+ * gives copies to edit.
+ */
+public final class ShortcutRegistry {
+
+    private final long version;
+    private final List<Shortcut> shortcuts;
+    private final List<Shortcut> purchaseBookShortcuts;
+    private final Map<String, Shortcut> byAlphabet = new HashMap<>();
+
+    ShortcutRegistry(long version, List<Shortcut> source) {
+        this.version = version;
+        List<Shortcut> all = new ArrayList<>(source.size());
+        List<Shortcut> purchaseBook = new ArrayList<>();
+        for (Shortcut shortcut : source) {
+            Shortcut copy = copy(shortcut);
+            all.add(copy);
+            if (copy.isShowInPurchaseBook()) purchaseBook.add(copy);
+            // First one wins, matching the old findFirst() scans
+            if (copy.getAlphabet() != null) byAlphabet.putIfAbsent(copy.getAlphabet(), copy);
+        }
+        this.shortcuts = Collections.unmodifiableList(all);
+        this.purchaseBookShortcuts = Collections.unmodifiableList(purchaseBook);
+    }
+
+    static Shortcut copy(Shortcut shortcut) {
+        return new Shortcut(shortcut.getAlphabet(), shortcut.getDescription(), shortcut.getOperation(),
+                shortcut.isShowInPurchaseBook());
+    }
+
+    /** Bumped by every save. */
+    public long getVersion() {
+        return version;
+    }
+
+    /** All shortcuts in saved order. */
+    public List<Shortcut> getShortcuts() {
+        return shortcuts;
+    }
+
+    /** The shortcuts shown as purchase book columns, in saved order. */
+    public List<Shortcut> getPurchaseBookShortcuts() {
+        return purchaseBookShortcuts;
+    }
+
+    /** Exact, case-sensitive alphabet match, or null. */
+    public Shortcut get(String alphabet) {
+        return alphabet != null ? byAlphabet.get(alphabet) : null;
+    }
+
+    /** The shortcuts as a list of copies the caller may modify. */
+    List<Shortcut> copyShortcuts() {
+        List<Shortcut> copy = new ArrayList<>(shortcuts.size());
+        for (Shortcut shortcut : shortcuts) copy.add(copy(shortcut));
+        return copy;
+    }
+}
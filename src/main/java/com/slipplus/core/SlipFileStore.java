@@ -0,0 +1,631 @@
+package com.slipplus.core;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.slipplus.models.MainSlip;
+import com.slipplus.models.SubSlip;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * On-disk layout of the slip data: one shard file per date under data/days
+ * (its totals stored first), a small manifest listing the dates and their
+ * sub-slip counts, a party index listing the dates each party appears on,
+ * a truck index listing the slips each truck number appears on, and the
+ * month totals.
+ *
+ * Checkpoints are two-phase. All changed files are first written next to
+ * their targets with a .next suffix, then the marker file is created as the
+ * commit point, and only then are the .next files renamed into place.
+ * An empty .next file stands for "delete the target".
+ *
+ * Months that are no longer worked on are moved into one gzip-compressed
+ * archive file each under data/archive, so the days directory only holds
+ * recent dates. A date is looked up in its month's archive only when it has
+ * no shard file; editing an archived date writes a shard file again, which
+ * then takes precedence until the month is next archived. Deleting one
+ * writes an empty shard, so the archived copy stays hidden.
+ */
+class SlipFileStore {
+
+    private static final String NEXT_SUFFIX = ".next";
+    private static final String LEGACY_SUFFIX = ".legacy";
+    static final String ARCHIVE_SUFFIX = ".gz";
+
+    private final File dataDir;
+    private final File daysDir;
+    private final File archiveDir;
+    private final File manifestFile;
+    private final File partyIndexFile;
+    private final File rollupFile;
+    private final File truckIndexFile;
+    private final File markerFile;
+    private final File legacySubSlipFile;
+    private final File legacyMainSlipFile;
+    private final ObjectMapper mapper;
+    private final StorageFormat format;
+    private final ObjectReader manifestReader;
+    private final ObjectWriter manifestWriter;
+    private final ObjectReader partyIndexReader;
+    private final ObjectWriter partyIndexWriter;
+    private final ObjectReader rollupReader;
+    private final ObjectWriter rollupWriter;
+    private final ObjectReader truckIndexReader;
+    private final ObjectWriter truckIndexWriter;
+    // One date's entry of the legacy files
+    private final ObjectReader legacySubSlipReader;
+    private final ObjectReader legacyMainSlipReader;
+
+    // Month archive read last, as dates of one month tend to be opened together; guarded by archiveLock
+    private final Object archiveLock = new Object();
+    private File cachedArchive;
+    private long cachedArchiveStamp;
+    private Map<String, DayShard> cachedMonth;
+
+    SlipFileStore(String dataDir, ObjectMapper mapper, StorageFormat format) {
+        this.dataDir = new File(dataDir);
+        this.daysDir = new File(dataDir, "days");
+        this.archiveDir = new File(dataDir, "archive");
+        this.manifestFile = new File(dataDir, "manifest.json");
+        this.partyIndexFile = new File(dataDir, "party_index.json");
+        this.rollupFile = new File(dataDir, "rollups.json");
+        this.truckIndexFile = new File(dataDir, "truck_index.json");
+        this.markerFile = new File(dataDir, "slips.checkpoint");
+        this.legacySubSlipFile = new File(dataDir, "sub_slips.json");
+        this.legacyMainSlipFile = new File(dataDir, "main_slips.json");
+        this.mapper = mapper;
+        this.format = format;
+        TypeReference<TreeMap<String, Integer>> manifestType = new TypeReference<>() {};
+        this.manifestReader = mapper.readerFor(manifestType);
+        this.manifestWriter = StorageFormat.writerFor(mapper, manifestType);
+        TypeReference<TreeMap<String, List<String>>> partyIndexType = new TypeReference<>() {};
+        this.partyIndexReader = mapper.readerFor(partyIndexType);
+        this.partyIndexWriter = StorageFormat.writerFor(mapper, partyIndexType);
+        TypeReference<TreeMap<String, DaySummary>> rollupType = new TypeReference<>() {};
+        this.rollupReader = mapper.readerFor(rollupType);
+        this.rollupWriter = StorageFormat.writerFor(mapper, rollupType);
+        TypeReference<TreeMap<String, List<TruckIndex.Entry>>> truckIndexType = new TypeReference<>() {};
+        this.truckIndexReader = mapper.readerFor(truckIndexType);
+        this.truckIndexWriter = StorageFormat.writerFor(mapper, truckIndexType);
+        this.legacySubSlipReader = mapper.readerFor(new TypeReference<Map<String, List<SubSlip>>>() {});
+        this.legacyMainSlipReader = mapper.readerFor(new TypeReference<Map<String, MainSlip>>() {});
+    }
+
+    // ---------- Manifest and shards ----------
+
+    boolean hasManifest() {
+        return manifestFile.exists();
+    }
+
+    Map<String, Integer> readManifest() {
+        try {
+            TreeMap<String, Integer> manifest = AtomicFiles.read(manifestFile,
+                    file -> manifestReader.<TreeMap<String, Integer>>readValue(file));
+            // Missing while shards exist means it was lost, not that there is no data
+            return manifest != null ? manifest : rebuildManifest();
+        } catch (Exception e) {
+            e.printStackTrace();
+            // An empty manifest would hide every date from the next checkpoint
+            return rebuildManifest();
+        }
+    }
+
+    /** Recounts the manifest from the shard files themselves. */
+    private Map<String, Integer> rebuildManifest() {
+        Map<String, Integer> manifest = new TreeMap<>();
+        for (String dateKey : shardDateKeys()) {
+            File file = existingShardFile(dateKey);
+            try {
+                JsonIndexReader indexReader = indexReader(file);
+                int count = indexReader.countArrayElements(file, "subSlips").values().stream()
+                        .mapToInt(Integer::intValue).sum();
+                if (count > 0 || !indexReader.readFieldNames(file, "mainSlips").isEmpty()) {
+                    manifest.put(dateKey, count);
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        System.out.println("Rebuilt manifest from " + manifest.size() + " shard files");
+        return manifest;
+    }
+
+    /**
+     * Month key → totals for that month, as of the last checkpoint. Null when
+     * there are none or they cannot be read; the caller then sums them from
+     * the day totals.
+     */
+    Map<String, DaySummary> readRollups() {
+        try {
+            return AtomicFiles.read(rollupFile,
+                    file -> rollupReader.<TreeMap<String, DaySummary>>readValue(file));
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * Truck number → the sub-slips it was entered on, as of the last
+     * checkpoint. Null when there is none or it cannot be read; the caller
+     * then collects it from the shards.
+     */
+    Map<String, List<TruckIndex.Entry>> readTruckIndex() {
+        try {
+            return AtomicFiles.read(truckIndexFile,
+                    file -> truckIndexReader.<TreeMap<String, List<TruckIndex.Entry>>>readValue(file));
+        } catch (Exception e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /** Party key → dates it has sub-slips on, as of the last checkpoint. */
+    Map<String, List<String>> readPartyIndex() {
+        try {
+            TreeMap<String, List<String>> index = AtomicFiles.read(partyIndexFile,
+                    file -> partyIndexReader.<TreeMap<String, List<String>>>readValue(file));
+            // Data written before the index existed has none yet
+            return index != null ? index : rebuildPartyIndex();
+        } catch (Exception e) {
+            e.printStackTrace();
+            return rebuildPartyIndex();
+        }
+    }
+
+    /** Collects the index from the party keys of every shard, without binding slips. */
+    private Map<String, List<String>> rebuildPartyIndex() {
+        Map<String, List<String>> index = new TreeMap<>();
+        for (String dateKey : shardDateKeys()) {
+            try {
+                for (String partyKey : readShardPartyKeys(dateKey)) {
+                    index.computeIfAbsent(partyKey, k -> new ArrayList<>()).add(dateKey);
+                }
+            } catch (UncheckedIOException e) {
+                e.printStackTrace();
+            }
+        }
+        if (!index.isEmpty()) System.out.println("Rebuilt party index for " + index.size() + " parties");
+        return index;
+    }
+
+    /** Dates with a shard file on disk, in either format, or in an archive, in date order. */
+    private Set<String> shardDateKeys() {
+        Set<String> dateKeys = new TreeSet<>();
+        File[] shardFiles = daysDir.listFiles(file -> StorageFormat.of(file) != null);
+        if (shardFiles != null) {
+            for (File shardFile : shardFiles) dateKeys.add(dateKeyOf(shardFile));
+        }
+        for (String monthKey : archivedMonthKeys()) {
+            try {
+                dateKeys.addAll(readArchive(monthKey).keySet());
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        return dateKeys;
+    }
+
+    /**
+     * Reads a day's shard. Throws rather than returning an empty shard when the
+     * file and its previous generation are both unreadable, so the next
+     * checkpoint cannot overwrite that date with nothing.
+     */
+    DayShard readShard(String dateKey) {
+        try {
+            File file = existingShardFile(dateKey);
+            if (!file.exists() && !AtomicFiles.backupOf(file).exists()) {
+                DayShard archived = readArchivedShard(dateKey);
+                if (archived != null) return archived;
+            }
+            ObjectReader shardReader = StorageFormat.of(file).shardReader();
+            DayShard shard = AtomicFiles.read(file, shardReader::readValue);
+            return shard != null ? shard : new DayShard();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unreadable shard for " + dateKey, e);
+        }
+    }
+
+    /**
+     * Party keys of a day's sub-slips, read without binding the slips. Falls
+     * back to a full read when the streaming pass fails so the .bak
+     * generation still gets its chance.
+     */
+    List<String> readShardPartyKeys(String dateKey) {
+        File file = existingShardFile(dateKey);
+        if (file.exists()) {
+            try {
+                return indexReader(file).readFieldNames(file, "subSlips");
+            } catch (IOException e) {
+                System.out.println("Streaming read of " + file.getName() + " failed: " + e.getMessage());
+            }
+        }
+        return new ArrayList<>(readShard(dateKey).getSubSlips().keySet());
+    }
+
+    /**
+     * The stored totals of a day, read from the head of the shard file
+     * without binding the slips. Null if the shard predates stored totals or
+     * cannot be streamed; the caller then loads the whole shard.
+     */
+    DaySummary readShardTotals(String dateKey) {
+        File file = existingShardFile(dateKey);
+        if (!file.exists()) {
+            try {
+                DayShard archived = readArchivedShard(dateKey);
+                return archived != null ? archived.getTotals() : null;
+            } catch (IOException e) {
+                System.out.println("Reading the archive for " + dateKey + " failed: " + e.getMessage());
+                return null;
+            }
+        }
+        StorageFormat shardFormat = StorageFormat.of(file);
+        try (JsonParser parser = shardFormat.mapper().getFactory().createParser(file)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) return null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                parser.nextToken();
+                if (name.equals("totals")) {
+                    return parser.currentToken() == JsonToken.VALUE_NULL
+                            ? null : shardFormat.totalsReader().readValue(parser);
+                }
+                parser.skipChildren();
+            }
+        } catch (IOException e) {
+            System.out.println("Streaming read of " + file.getName() + " failed: " + e.getMessage());
+        }
+        return null;
+    }
+
+    /** Where the shard is written, in the configured format. */
+    private File shardFile(String dateKey) {
+        return new File(daysDir, dateKey + format.suffix());
+    }
+
+    /** The shard as it is on disk: configured format first, then any other. */
+    private File existingShardFile(String dateKey) {
+        File configured = shardFile(dateKey);
+        if (configured.exists() || AtomicFiles.backupOf(configured).exists()) return configured;
+        for (StorageFormat other : StorageFormat.values()) {
+            File file = new File(daysDir, dateKey + other.suffix());
+            if (file.exists() || AtomicFiles.backupOf(file).exists()) return file;
+        }
+        return configured;
+    }
+
+    private static String dateKeyOf(File shardFile) {
+        String name = shardFile.getName();
+        return name.substring(0, name.length() - StorageFormat.of(shardFile).suffix().length());
+    }
+
+    private static JsonIndexReader indexReader(File shardFile) {
+        return new JsonIndexReader(StorageFormat.of(shardFile).mapper().getFactory());
+    }
+
+    // ---------- Checkpoint ----------
+
+    /**
+     * Writes the changed shards, the manifest, the party index, the month
+     * totals and, if given, the truck index as .next files and creates the
+     * marker. Once this returns the checkpoint is committed.
+     */
+    void prepareCheckpoint(Map<String, DayShard> changedShards, Map<String, Integer> manifest,
+                           Map<String, List<String>> partyIndex, Map<String, DaySummary> rollups,
+                           Map<String, List<TruckIndex.Entry>> truckIndex) throws IOException {
+        for (Map.Entry<String, DayShard> entry : changedShards.entrySet()) {
+            prepareShard(entry.getKey(), entry.getValue());
+        }
+        prepareIndexes(manifest, partyIndex, rollups, truckIndex);
+        commitCheckpoint();
+    }
+
+    /** Writes one shard's .next file; null stands for deleting the shard. */
+    void prepareShard(String dateKey, DayShard shard) throws IOException {
+        if (!daysDir.exists() && !daysDir.mkdirs()) {
+            throw new IOException("Failed to create shard directory: " + daysDir);
+        }
+        // An archived copy would show through a deleted shard file
+        DayShard written = shard == null && readArchivedShard(dateKey) != null ? new DayShard() : shard;
+        AtomicFiles.writeDurably(nextFile(shardFile(dateKey)), out -> {
+            if (written != null) format.shardWriter().writeValue(out, written);
+        });
+    }
+
+    /** Reads back a shard written by prepareShard and not yet applied; null if there is none. */
+    DayShard readPreparedShard(String dateKey) throws IOException {
+        File next = nextFile(shardFile(dateKey));
+        if (!next.exists() || next.length() == 0) return null;
+        return format.shardReader().readValue(next);
+    }
+
+    /** A null truck index leaves the stored one as it is. */
+    void prepareIndexes(Map<String, Integer> manifest, Map<String, List<String>> partyIndex,
+                        Map<String, DaySummary> rollups, Map<String, List<TruckIndex.Entry>> truckIndex)
+            throws IOException {
+        AtomicFiles.writeDurably(nextFile(manifestFile),
+                out -> manifestWriter.writeValue(out, manifest));
+        AtomicFiles.writeDurably(nextFile(partyIndexFile),
+                out -> partyIndexWriter.writeValue(out, partyIndex));
+        AtomicFiles.writeDurably(nextFile(rollupFile),
+                out -> rollupWriter.writeValue(out, rollups));
+        if (truckIndex != null) {
+            AtomicFiles.writeDurably(nextFile(truckIndexFile),
+                    out -> truckIndexWriter.writeValue(out, truckIndex));
+        }
+    }
+
+    /** The commit point: every .next file is on disk before the marker is. */
+    void commitCheckpoint() throws IOException {
+        AtomicFiles.syncDirectory(daysDir);
+        AtomicFiles.syncDirectory(archiveDir);
+        if (!markerFile.createNewFile()) {
+            throw new IOException("Checkpoint marker already exists: " + markerFile);
+        }
+        AtomicFiles.syncDirectory(dataDir);
+    }
+
+    boolean hasCommittedCheckpoint() {
+        return markerFile.exists();
+    }
+
+    /**
+     * Moves every .next file over its target, keeping the replaced content as
+     * the .bak generation; safe to repeat after a crash. Archives go before
+     * shards, so a shard file is only removed once its archive holds it.
+     */
+    void applyCheckpoint() throws IOException {
+        for (File dir : new File[] { dataDir, archiveDir, daysDir }) {
+            File[] pending = dir.listFiles((d, name) -> name.endsWith(NEXT_SUFFIX));
+            if (pending == null) continue;
+            for (File next : pending) {
+                String name = next.getName();
+                File target = new File(dir, name.substring(0, name.length() - NEXT_SUFFIX.length()));
+                if (next.length() == 0) {
+                    Files.deleteIfExists(target.toPath());
+                    Files.deleteIfExists(AtomicFiles.backupOf(target).toPath());
+                    Files.delete(next.toPath());
+                } else {
+                    if (target.exists()) {
+                        AtomicFiles.copyDurably(target.toPath(), AtomicFiles.backupOf(target).toPath());
+                    }
+                    AtomicFiles.moveAtomically(next.toPath(), target.toPath());
+                }
+                if (dir.equals(daysDir)) deleteOtherFormats(target);
+            }
+            AtomicFiles.syncDirectory(dir);
+        }
+    }
+
+    /** Drops the copy of a shard left in the format it was stored in before. */
+    private void deleteOtherFormats(File shardFile) throws IOException {
+        StorageFormat written = StorageFormat.of(shardFile);
+        if (written == null) return;
+        String dateKey = dateKeyOf(shardFile);
+        for (StorageFormat other : StorageFormat.values()) {
+            if (other == written) continue;
+            File stale = new File(daysDir, dateKey + other.suffix());
+            Files.deleteIfExists(stale.toPath());
+            Files.deleteIfExists(AtomicFiles.backupOf(stale).toPath());
+        }
+    }
+
+    void finishCheckpoint() throws IOException {
+        Files.deleteIfExists(markerFile.toPath());
+    }
+
+    /** Throws away .next files of a checkpoint that never reached its marker. */
+    void discardCheckpoint() throws IOException {
+        for (File dir : new File[] { dataDir, archiveDir, daysDir }) {
+            File[] pending = dir.listFiles((d, name) -> name.endsWith(NEXT_SUFFIX));
+            if (pending == null) continue;
+            for (File next : pending) Files.delete(next.toPath());
+        }
+    }
+
+    private File nextFile(File target) {
+        return new File(target.getPath() + NEXT_SUFFIX);
+    }
+
+    // ---------- Month archives ----------
+
+    /**
+     * Writes .next files that move the shard files of every month before
+     * {@code beforeMonthKey} ("2024-03") into their month archives, merged
+     * with what those archives already hold. Returns false when no shard file
+     * is that old. Empty shards drop the date from the archive.
+     */
+    boolean prepareArchive(String beforeMonthKey) throws IOException {
+        Map<String, List<File>> coldFiles = new TreeMap<>();
+        File[] shardFiles = daysDir.listFiles(file -> StorageFormat.of(file) != null);
+        if (shardFiles == null) return false;
+        for (File shardFile : shardFiles) {
+            String monthKey = monthKeyOf(dateKeyOf(shardFile));
+            if (monthKey.compareTo(beforeMonthKey) < 0) {
+                coldFiles.computeIfAbsent(monthKey, k -> new ArrayList<>()).add(shardFile);
+            }
+        }
+        if (coldFiles.isEmpty()) return false;
+        if (!archiveDir.exists() && !archiveDir.mkdirs()) {
+            throw new IOException("Failed to create archive directory: " + archiveDir);
+        }
+
+        for (Map.Entry<String, List<File>> entry : coldFiles.entrySet()) {
+            String monthKey = entry.getKey();
+            Map<String, DayShard> month = new TreeMap<>(readArchive(monthKey));
+            for (File shardFile : entry.getValue()) {
+                DayShard shard = AtomicFiles.read(shardFile, StorageFormat.of(shardFile).shardReader()::readValue);
+                if (shard == null || shard.isEmpty()) {
+                    month.remove(dateKeyOf(shardFile));
+                } else {
+                    month.put(dateKeyOf(shardFile), shard);
+                }
+                AtomicFiles.writeDurably(nextFile(shardFile), out -> {});
+            }
+            File existing = existingArchiveFile(monthKey);
+            File target = archiveFile(monthKey);
+            if (!existing.equals(target)) AtomicFiles.writeDurably(nextFile(existing), out -> {});
+            AtomicFiles.writeDurably(nextFile(target), out -> {
+                if (!month.isEmpty()) format.archiveWriter().writeValue(new GZIPOutputStream(out), month);
+            });
+        }
+        System.out.println("Archiving " + coldFiles.values().stream().mapToInt(List::size).sum()
+                + " day shards into " + coldFiles.size() + " month archives");
+        return true;
+    }
+
+    /** The archived shard of a date, or null if its month has no archive or the date is not in it. */
+    private DayShard readArchivedShard(String dateKey) throws IOException {
+        DayShard shard = readArchive(monthKeyOf(dateKey)).get(dateKey);
+        // The cached month is shared; the repository edits the shards it is given
+        return shard != null ? shard.copy() : null;
+    }
+
+    /** Date → shard for one archived month; empty if there is no archive for it. */
+    private Map<String, DayShard> readArchive(String monthKey) throws IOException {
+        File file = existingArchiveFile(monthKey);
+        File readable = file.exists() ? file : AtomicFiles.backupOf(file);
+        if (!readable.exists()) return Map.of();
+        synchronized (archiveLock) {
+            // Also notices an archive rewritten by another process
+            long stamp = readable.lastModified() ^ readable.length();
+            if (file.equals(cachedArchive) && stamp == cachedArchiveStamp) return cachedMonth;
+            ObjectReader archiveReader = archiveFormatOf(file).archiveReader();
+            Map<String, DayShard> month = AtomicFiles.read(file, f -> {
+                try (InputStream in = new GZIPInputStream(new FileInputStream(f), 64 * 1024)) {
+                    return archiveReader.<TreeMap<String, DayShard>>readValue(in);
+                }
+            });
+            cachedArchive = file;
+            cachedArchiveStamp = stamp;
+            cachedMonth = month != null ? month : Map.of();
+            return cachedMonth;
+        }
+    }
+
+    /** Months that have an archive file, in either format. */
+    private Set<String> archivedMonthKeys() {
+        Set<String> monthKeys = new TreeSet<>();
+        File[] archiveFiles = archiveDir.listFiles(file -> archiveFormatOf(file) != null);
+        if (archiveFiles != null) {
+            for (File archiveFile : archiveFiles) {
+                String name = archiveFile.getName();
+                monthKeys.add(name.substring(0, name.length()
+                        - archiveFormatOf(archiveFile).suffix().length() - ARCHIVE_SUFFIX.length()));
+            }
+        }
+        return monthKeys;
+    }
+
+    /** Where a month archive is written, in the configured format. */
+    private File archiveFile(String monthKey) {
+        return new File(archiveDir, monthKey + format.suffix() + ARCHIVE_SUFFIX);
+    }
+
+    private File existingArchiveFile(String monthKey) {
+        File configured = archiveFile(monthKey);
+        if (configured.exists() || AtomicFiles.backupOf(configured).exists()) return configured;
+        for (StorageFormat other : StorageFormat.values()) {
+            File file = new File(archiveDir, monthKey + other.suffix() + ARCHIVE_SUFFIX);
+            if (file.exists() || AtomicFiles.backupOf(file).exists()) return file;
+        }
+        return configured;
+    }
+
+    static StorageFormat archiveFormatOf(File archiveFile) {
+        String name = archiveFile.getName();
+        if (!name.endsWith(ARCHIVE_SUFFIX)) return null;
+        return StorageFormat.of(new File(name.substring(0, name.length() - ARCHIVE_SUFFIX.length())));
+    }
+
+    private static String monthKeyOf(String dateKey) {
+        return dateKey.substring(0, 7);
+    }
+
+    // ---------- Legacy monolithic files ----------
+
+    boolean hasLegacyFiles() {
+        return legacySubSlipFile.exists() || legacyMainSlipFile.exists();
+    }
+
+    interface DateVisitor<T> {
+        void visit(String dateKey, T value) throws IOException;
+    }
+
+    /** Streams sub_slips.json one date at a time: date → party key → slips. */
+    void streamLegacySubSlips(DateVisitor<Map<String, List<SubSlip>>> visitor) throws IOException {
+        streamByDate(legacySubSlipFile, legacySubSlipReader, visitor);
+    }
+
+    /** Streams main_slips.json one date at a time: date → party name → main slip. */
+    void streamLegacyMainSlips(DateVisitor<Map<String, MainSlip>> visitor) throws IOException {
+        streamByDate(legacyMainSlipFile, legacyMainSlipReader, visitor);
+    }
+
+    /** Binds one top-level field at a time, so only a single date is ever in memory. */
+    private <T> void streamByDate(File file, ObjectReader reader, DateVisitor<T> visitor) throws IOException {
+        if (!file.exists()) return;
+        try (JsonParser parser = mapper.getFactory().createParser(file)) {
+            JsonToken token = parser.nextToken();
+            if (token == null) return;
+            if (token != JsonToken.START_OBJECT) {
+                throw new IOException(file.getName() + " does not hold an object keyed by date");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String dateKey = parser.currentName();
+                if (parser.nextToken() == JsonToken.VALUE_NULL) continue;
+                T value = reader.readValue(parser);
+                visitor.visit(dateKey, value);
+            }
+        }
+    }
+
+    /** Renames the migrated monolithic files so they are kept for rollback but never read again. */
+    void retireLegacyFiles() throws IOException {
+        for (File legacy : new File[] { legacySubSlipFile, legacyMainSlipFile }) {
+            if (legacy.exists()) {
+                Files.move(legacy.toPath(), new File(legacy.getPath() + LEGACY_SUFFIX).toPath(),
+                        StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+    }
+
+    // ---------- Reset ----------
+
+    void deleteAll() throws IOException {
+        for (File dir : new File[] { daysDir, archiveDir }) {
+            File[] files = dir.listFiles();
+            if (files == null) continue;
+            for (File file : files) Files.delete(file.toPath());
+        }
+        Files.deleteIfExists(manifestFile.toPath());
+        Files.deleteIfExists(AtomicFiles.backupOf(manifestFile).toPath());
+        Files.deleteIfExists(partyIndexFile.toPath());
+        Files.deleteIfExists(AtomicFiles.backupOf(partyIndexFile).toPath());
+        Files.deleteIfExists(rollupFile.toPath());
+        Files.deleteIfExists(AtomicFiles.backupOf(rollupFile).toPath());
+        Files.deleteIfExists(truckIndexFile.toPath());
+        Files.deleteIfExists(AtomicFiles.backupOf(truckIndexFile).toPath());
+        Files.deleteIfExists(markerFile.toPath());
+        Files.deleteIfExists(legacySubSlipFile.toPath());
+        Files.deleteIfExists(legacyMainSlipFile.toPath());
+        discardCheckpoint();
+    }
+}
@@ -0,0 +1,106 @@
+package com.slipplus.core;
+
+import com.slipplus.models.SubSlip;
+
+import java.security.SecureRandom;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * ULID identifiers for sub-slips.
+ *
+ * 26 Crockford base32 characters: 48 bits of milliseconds followed by 80
+ * random bits, so IDs sort by creation time. Within one millisecond the
+ * random part is incremented instead of redrawn, which keeps IDs handed
+ * out by this process strictly increasing.
+ */
+final class SlipIds {
+
+    private static final char[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final SecureRandom random = new SecureRandom();
+
+    private static long lastMillis = -1;
+    // 80 random bits as 16 high + 64 low
+    private static long randomHigh;
+    private static long randomLow;
+
+    private SlipIds() {}
+
+    static synchronized String next() {
+        long now = System.currentTimeMillis();
+        if (now > lastMillis) {
+            lastMillis = now;
+            randomHigh = random.nextInt(1 << 16);
+            randomLow = random.nextLong();
+        } else if (++randomLow == 0 && ++randomHigh == (1 << 16)) {
+            // 2^80 IDs in one millisecond; borrow the next one
+            lastMillis++;
+            randomHigh = 0;
+        }
+        return encode(lastMillis, randomHigh, randomLow);
+    }
+
+    private static String encode(long millis, long high, long low) {
+        char[] out = new char[26];
+        // Timestamp: 10 characters, 50 bits of which the top 2 are zero
+        for (int i = 9; i >= 0; i--) {
+            out[i] = ALPHABET[(int) (millis & 31)];
+            millis >>>= 5;
+        }
+        // Randomness: 16 characters over high:low, 5 bits at a time from the bottom
+        for (int i = 25; i >= 10; i--) {
+            out[i] = ALPHABET[(int) (low & 31)];
+            low = (low >>> 5) | ((high & 31) << 59);
+            high >>>= 5;
+        }
+        return new String(out);
+    }
+
+    /**
+     * ID for a slip saved before IDs existed. Derived from where the slip sits
+     * in its shard so a restart before the shard is rewritten gives the
+     * same answer; {@code ordinal} is bumped by the caller on collision.
+     */
+    static String legacy(String dateKey, String partyKey, int ordinal) {
+        return "legacy-" + dateKey + "-" + partyKey + "-" + ordinal;
+    }
+
+    /**
+     * Gives slips saved before IDs existed the same IDs the repository would
+     * give them on load, numbered by position within the party's day.
+     */
+    static void assignLegacy(String dateKey, String partyKey, List<SubSlip> slips) {
+        Set<String> taken = new HashSet<>();
+        for (SubSlip slip : slips) {
+            if (slip.getId() != null) taken.add(slip.getId());
+        }
+        int ordinal = 0;
+        for (SubSlip slip : slips) {
+            if (slip.getId() != null) continue;
+            String id = legacy(dateKey, partyKey, ordinal);
+            while (taken.contains(id)) id = legacy(dateKey, partyKey, ++ordinal);
+            slip.setId(id);
+            taken.add(id);
+        }
+    }
+
+    /** Epoch milliseconds an ID was made at, or -1 for legacy and malformed IDs. */
+    static long timestampOf(String id) {
+        if (id == null || id.length() != 26) return -1;
+        long millis = 0;
+        for (int i = 0; i < 10; i++) {
+            int value = decode(id.charAt(i));
+            if (value < 0) return -1;
+            millis = (millis << 5) | value;
+        }
+        return millis;
+    }
+
+    private static int decode(char c) {
+        for (int i = 0; i < ALPHABET.length; i++) {
+            if (ALPHABET[i] == c) return i;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,370 @@
+package com.slipplus.core;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.slipplus.models.MainSlip;
+import com.slipplus.models.SubSlip;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Append-only write-ahead journal for slip mutations.
+ *
+ * Every save, delete and main-slip update is one JSON line, so the cost of a
+ * save does not depend on how much history sits in the snapshot files.
+ * A checkpoint first rotates the live journal into a segment file; the
+ * segment is only deleted once the new snapshots are committed, so startup
+ * can always replay segment + journal on top of whatever snapshot is on disk.
+ *
+ * Other processes may append to the same journal; the position up to which
+ * this one has read it lets it pick up just their new records.
+ */
+class SlipJournal {
+
+    static final String ADD_SUB_SLIP = "ADD_SUB_SLIP";
+    static final String DELETE_SUB_SLIPS = "DELETE_SUB_SLIPS";
+    static final String DELETE_SUB_SLIPS_BY_ID = "DELETE_SUB_SLIPS_BY_ID";
+    static final String DELETE_PARTY = "DELETE_PARTY";
+    static final String PUT_MAIN_SLIP = "PUT_MAIN_SLIP";
+
+    private final File journalFile;
+    private final File segmentFile;
+    private final ObjectReader entryReader;
+    private final ObjectWriter entryWriter;
+    private int recordCount = 0;
+    // Bytes in the journal and any rotated segment; the segment is dropped from the compaction thread
+    private final AtomicLong byteCount = new AtomicLong();
+    // Bytes of the live journal already applied here, whoever wrote them
+    private long position = 0;
+    // Length of the segment while that journal is live; a rotation elsewhere puts the journal right after it
+    private long segmentBase = 0;
+
+    SlipJournal(File journalFile, ObjectMapper mapper) {
+        this.journalFile = journalFile;
+        this.segmentFile = new File(journalFile.getPath() + ".checkpoint");
+        this.entryReader = mapper.readerFor(Entry.class);
+        this.entryWriter = mapper.writerFor(Entry.class);
+    }
+
+    /** Number of records written since the last rotation. */
+    int size() {
+        return recordCount;
+    }
+
+    /** Bytes of records not yet folded into a committed snapshot. */
+    long byteSize() {
+        return byteCount.get();
+    }
+
+    /** True when the live journal holds records this process has not read, i.e. another one wrote them. */
+    boolean hasUnread() {
+        return journalFile.length() != position;
+    }
+
+    /**
+     * Appends a group of records with a single write and a single fsync, so a
+     * burst of saves costs one trip to the disk instead of one per record.
+     * Anything other processes appended must have been read first.
+     */
+    void append(List<Entry> entries) throws IOException {
+        ByteArrayOutputStream lines = new ByteArrayOutputStream();
+        for (Entry entry : entries) {
+            lines.write(entryWriter.writeValueAsBytes(entry));
+            lines.write('\n');
+        }
+        // A process that crashed mid-append leaves a torn line; ours must not be glued onto it
+        boolean torn = !endsWithNewline(journalFile);
+        try (FileOutputStream out = new FileOutputStream(journalFile, true)) {
+            if (torn) out.write('\n');
+            lines.writeTo(out);
+            out.flush();
+            // Data-only sync is enough: the grown file length is flushed with it
+            out.getChannel().force(false);
+            position = out.getChannel().size();
+            byteCount.addAndGet(torn ? 1 : 0);
+        }
+        recordCount += entries.size();
+        byteCount.addAndGet(lines.size());
+    }
+
+    /** True for a missing or empty file too, which needs no separator either. */
+    private static boolean endsWithNewline(File file) throws IOException {
+        if (!file.exists()) return true;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size == 0) return true;
+            ByteBuffer last = ByteBuffer.allocate(1);
+            channel.read(last, size - 1);
+            return last.get(0) == '\n';
+        }
+    }
+
+    /** Replays the pending checkpoint segment (if any) and then the live journal. */
+    void replay(Consumer<Entry> consumer) {
+        replayFile(segmentFile, consumer);
+        recordCount = replayFile(journalFile, consumer);
+        position = journalFile.length();
+        segmentBase = segmentFile.length();
+        byteCount.set(segmentBase + position);
+    }
+
+    /**
+     * Applies the whole records appended to the live journal since this
+     * process last read or wrote it, and returns how many there were.
+     */
+    int readNew(Consumer<Entry> consumer) throws IOException {
+        // Nothing but a rotation changes the segment, and that moves the journal on as well
+        segmentBase = segmentFile.length();
+        if (!journalFile.exists()) return 0;
+        byte[] bytes = readFrom(journalFile, position);
+        if (bytes == null) {
+            System.out.println("Journal shrank underneath us; reading on from its end");
+            position = journalFile.length();
+            return 0;
+        }
+
+        // A trailing partial line is left for the next read
+        int end = 0;
+        for (int i = bytes.length - 1; i >= 0; i--) {
+            if (bytes[i] == '\n') {
+                end = i + 1;
+                break;
+            }
+        }
+        int count = applyLines(bytes, end, journalFile, consumer);
+        position += end;
+        byteCount.addAndGet(end);
+        recordCount += count;
+        return count;
+    }
+
+    /**
+     * Follows the live journal into the segment after another process rotated
+     * it: applies the records this process had not read yet, and any rotated
+     * in after them, then starts over at the beginning of the new live
+     * journal. Returns how many records there were, or -1 when the segment no
+     * longer holds them because a checkpoint has taken them in meanwhile.
+     */
+    int readRotated(Consumer<Entry> consumer) throws IOException {
+        byte[] bytes = segmentFile.exists() ? readFrom(segmentFile, segmentBase + position) : null;
+        if (bytes == null) return -1;
+        // The rotated journal may end in a torn line; replaying the segment would try it too
+        int count = applyLines(bytes, bytes.length, segmentFile, consumer);
+        segmentBase += position + bytes.length;
+        position = 0;
+        recordCount = 0;
+        byteCount.set(segmentBase);
+        return count;
+    }
+
+    /** The bytes from the offset to the end, or null if the file is shorter than that. */
+    private static byte[] readFrom(File file, long offset) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long length = channel.size();
+            if (length < offset) return null;
+            ByteBuffer buffer = ByteBuffer.allocate((int) (length - offset));
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, offset + buffer.position()) < 0) break;
+            }
+            return buffer.array();
+        }
+    }
+
+    /** Applies the lines in the first length bytes, the last one with or without its newline. */
+    private int applyLines(byte[] bytes, int length, File file, Consumer<Entry> consumer) {
+        int count = 0;
+        int start = 0;
+        for (int i = 0; i <= length; i++) {
+            if (i < length && bytes[i] != '\n') continue;
+            String line = new String(bytes, start, i - start, StandardCharsets.UTF_8);
+            if (!line.isBlank() && applyLine(line, file, consumer)) count++;
+            start = i + 1;
+        }
+        return count;
+    }
+
+    private int replayFile(File file, Consumer<Entry> consumer) {
+        if (!file.exists()) return 0;
+        int count = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) continue;
+                if (applyLine(line, file, consumer)) count++;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return count;
+    }
+
+    private boolean applyLine(String line, File file, Consumer<Entry> consumer) {
+        try {
+            consumer.accept(entryReader.readValue(line));
+            return true;
+        } catch (IOException e) {
+            // A torn last line from a crash mid-append; everything before it is intact
+            System.out.println("Skipping unreadable journal record in " + file.getName() + ": " + e.getMessage());
+        } catch (RuntimeException e) {
+            System.out.println("Could not apply journal record from " + file.getName() + ": " + e.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * Moves the live journal aside so new records start a fresh file while the
+     * snapshot for everything before this point is being written. Must not be
+     * called while an earlier segment is still being compacted.
+     */
+    void rotate() throws IOException {
+        if (journalFile.exists()) {
+            if (segmentFile.exists()) {
+                // An earlier checkpoint never committed; keep its records in front of ours.
+                // They must be on disk in the segment before the journal holding them goes.
+                try (FileChannel journal = FileChannel.open(journalFile.toPath(), StandardOpenOption.READ);
+                     FileChannel segment = FileChannel.open(segmentFile.toPath(), StandardOpenOption.APPEND)) {
+                    // Shifts the journal by a byte, which only puts a blank line in front of what others read
+                    if (!endsWithNewline(segmentFile)) segment.write(ByteBuffer.wrap(new byte[] { '\n' }));
+                    long size = journal.size();
+                    long copied = 0;
+                    while (copied < size) copied += journal.transferTo(copied, size - copied, segment);
+                    segment.force(true);
+                }
+                Files.delete(journalFile.toPath());
+            } else {
+                Files.move(journalFile.toPath(), segmentFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            AtomicFiles.syncDirectory(journalFile.getAbsoluteFile().getParentFile());
+        }
+        recordCount = 0;
+        position = 0;
+        segmentBase = segmentFile.length();
+        byteCount.set(segmentBase);
+    }
+
+    /** True while a rotated segment waits for its checkpoint to commit. */
+    boolean hasSegment() {
+        return segmentFile.exists();
+    }
+
+    /** Drops the rotated segment once its records are part of a committed snapshot. */
+    void deleteSegment() throws IOException {
+        long segmentBytes = segmentFile.length();
+        Files.deleteIfExists(segmentFile.toPath());
+        segmentBase = 0;
+        byteCount.addAndGet(-segmentBytes);
+    }
+
+    void deleteAll() throws IOException {
+        Files.deleteIfExists(journalFile.toPath());
+        Files.deleteIfExists(segmentFile.toPath());
+        recordCount = 0;
+        position = 0;
+        segmentBase = 0;
+        byteCount.set(0);
+    }
+
+    /** Records appended together by one group commit; they share one future. */
+    static class Batch {
+        final List<Entry> entries = new ArrayList<>();
+        final CompletableFuture<Void> written = new CompletableFuture<>();
+
+        CompletableFuture<Void> add(Entry entry) {
+            entries.add(entry);
+            return written;
+        }
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    static class Entry {
+        private String op;
+        private String date;
+        private String party;
+        private SubSlip slip;
+        private List<SubSlip> slips;
+        private List<String> ids;
+        private MainSlip mainSlip;
+
+        public Entry() {}
+
+        static Entry addSubSlip(String date, String party, SubSlip slip) {
+            Entry e = new Entry();
+            e.op = ADD_SUB_SLIP;
+            e.date = date;
+            e.party = party;
+            e.slip = slip;
+            return e;
+        }
+
+        static Entry deleteSubSlips(String date, String party, List<SubSlip> slips) {
+            Entry e = new Entry();
+            e.op = DELETE_SUB_SLIPS;
+            e.date = date;
+            e.party = party;
+            e.slips = slips;
+            return e;
+        }
+
+        static Entry deleteSubSlipsById(String date, List<String> ids) {
+            Entry e = new Entry();
+            e.op = DELETE_SUB_SLIPS_BY_ID;
+            e.date = date;
+            e.ids = ids;
+            return e;
+        }
+
+        static Entry deleteParty(String date, String party) {
+            Entry e = new Entry();
+            e.op = DELETE_PARTY;
+            e.date = date;
+            e.party = party;
+            return e;
+        }
+
+        static Entry putMainSlip(String date, MainSlip mainSlip) {
+            Entry e = new Entry();
+            e.op = PUT_MAIN_SLIP;
+            e.date = date;
+            e.mainSlip = mainSlip;
+            return e;
+        }
+
+        public String getOp() { return op; }
+        public void setOp(String op) { this.op = op; }
+
+        public String getDate() { return date; }
+        public void setDate(String date) { this.date = date; }
+
+        public String getParty() { return party; }
+        public void setParty(String party) { this.party = party; }
+
+        public SubSlip getSlip() { return slip; }
+        public void setSlip(SubSlip slip) { this.slip = slip; }
+
+        public List<SubSlip> getSlips() { return slips; }
+        public void setSlips(List<SubSlip> slips) { this.slips = slips; }
+
+        public List<String> getIds() { return ids; }
+        public void setIds(List<String> ids) { this.ids = ids; }
+
+        public MainSlip getMainSlip() { return mainSlip; }
+        public void setMainSlip(MainSlip mainSlip) { this.mainSlip = mainSlip; }
+    }
+}
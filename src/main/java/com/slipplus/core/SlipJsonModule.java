@@ -0,0 +1,110 @@
+package com.slipplus.core;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.slipplus.models.SubSlip;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Jackson setup for the slip models, registered on every mapper that reads
+ * or writes them.
+ *
+ * SubSlip keeps its per-sub-weight values in double arrays. The mix-in binds
+ * those arrays straight to the JSON arrays under the names the list
+ * properties always had, so files look the same as before and no boxed
+ * Double is created while reading or writing them.
+ */
+class SlipJsonModule extends SimpleModule {
+
+    private static final long serialVersionUID = 1L;
+
+    SlipJsonModule() {
+        super("SlipJsonModule");
+        setMixInAnnotation(SubSlip.class, SubSlipMixIn.class);
+    }
+
+    // Fields listed in the order the list properties used to be written in
+    @JsonPropertyOrder({"id", "partyName", "truckNumber", "mainWeight", "subWeights", "price1", "price2",
+            "qualityValues", "calculatedPrices", "dustDiscount", "totalBeforeGst", "gst", "finalAmount"})
+    abstract static class SubSlipMixIn {
+        @JsonProperty("subWeights")
+        @JsonSerialize(using = DoubleArraySerializer.class)
+        @JsonDeserialize(using = DoubleArrayDeserializer.class)
+        private double[] subWeights;
+
+        @JsonProperty("qualityValues")
+        @JsonSerialize(using = DoubleArraySerializer.class)
+        @JsonDeserialize(using = DoubleArrayDeserializer.class)
+        private double[] qualityValues;
+
+        @JsonProperty("calculatedPrices")
+        @JsonSerialize(using = DoubleArraySerializer.class)
+        @JsonDeserialize(using = DoubleArrayDeserializer.class)
+        private double[] calculatedPrices;
+
+        // The list views are for callers; the fields above are what gets stored
+
+        @JsonIgnore public abstract List<Double> getSubWeights();
+        @JsonIgnore public abstract void setSubWeights(List<Double> subWeights);
+
+        @JsonIgnore public abstract List<Double> getQualityValues();
+        @JsonIgnore public abstract void setQualityValues(List<Double> qualityValues);
+
+        @JsonIgnore public abstract List<Double> getCalculatedPrices();
+        @JsonIgnore public abstract void setCalculatedPrices(List<Double> calculatedPrices);
+    }
+
+    static class DoubleArraySerializer extends StdSerializer<double[]> {
+        private static final long serialVersionUID = 1L;
+
+        DoubleArraySerializer() {
+            super(double[].class);
+        }
+
+        @Override
+        public void serialize(double[] values, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeArray(values, 0, values.length);
+        }
+    }
+
+    /** Reads a JSON array of numbers; nulls (and anything else unreadable as a number) become 0. */
+    static class DoubleArrayDeserializer extends StdDeserializer<double[]> {
+        private static final long serialVersionUID = 1L;
+
+        DoubleArrayDeserializer() {
+            super(double[].class);
+        }
+
+        @Override
+        public double[] deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            if (!p.isExpectedStartArrayToken()) {
+                return (double[]) ctxt.handleUnexpectedToken(double[].class, p);
+            }
+            double[] values = new double[8];
+            int count = 0;
+            JsonToken token;
+            while ((token = p.nextToken()) != JsonToken.END_ARRAY) {
+                if (token == null) {
+                    return (double[]) ctxt.handleUnexpectedToken(double[].class, p);
+                }
+                if (count == values.length) values = Arrays.copyOf(values, count * 2);
+                values[count++] = p.getValueAsDouble();
+            }
+            return count == values.length ? values : Arrays.copyOf(values, count);
+        }
+    }
+}
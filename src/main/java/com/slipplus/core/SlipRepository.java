@@ -0,0 +1,685 @@
+package com.slipplus.core;
+
+import com.slipplus.models.DatedSubSlip;
+import com.slipplus.models.MainSlip;
+import com.slipplus.models.SlipTotals;
+import com.slipplus.models.SubSlip;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Process-wide in-memory index of the slip data.
+ *
+ * Only the manifest (date → sub-slip count) is read up front; a day's shard
+ * is loaded the first time something asks for that date and is then kept
+ * current by every write that goes through StorageManager. Dates touched
+ * since the last checkpoint are tracked as dirty so only their shards get
+ * rewritten.
+ *
+ * Loaded shards are a bounded cache. Dirty shards, and shards a checkpoint
+ * is still writing, are kept; of the rest, which match their files, only
+ * the most recently used stay loaded, so walking a long range or a party's
+ * history does not pull the whole data set back into memory.
+ *
+ * Shards are copy-on-write: once a shard is in the cache it is never
+ * changed again. A write works on a copy and puts it in place of the old
+ * one, and every such swap bumps the version. A shard reference taken under
+ * the lock therefore stays one consistent picture of its date after the
+ * lock is let go, so readers copy outside the lock and snapshots keep
+ * shards without copying them at all.
+ */
+class SlipRepository {
+
+    private final Consumer<SlipRepository> loader;
+    private final Function<String, DayShard> shardLoader;
+    private final Function<String, List<String>> partyKeyLoader;
+    private final Function<String, DaySummary> totalsLoader;
+
+    // Shards that match their files kept loaded; beyond this the least recently used go
+    static final int MAX_CLEAN_SHARDS = 120;
+
+    // Date keys are ISO dates, so natural ordering is chronological
+    private final TreeMap<String, Integer> subSlipCounts = new TreeMap<>();
+    // Access order, least recently used first, for eviction
+    private final LinkedHashMap<String, DayShard> shards = new LinkedHashMap<>(16, 0.75f, true);
+    private final Set<String> dirtyDates = new TreeSet<>();
+    // Taken by a checkpoint that has not reached the disk yet; their files are stale until it has
+    private final Set<String> checkpointing = new HashSet<>();
+    // Slip ID → {date key, party key}, for every loaded shard
+    private final Map<String, String[]> locations = new HashMap<>();
+    // Party key → dates it has sub-slips on, for all dates whether loaded or not
+    private final Map<String, TreeSet<String>> partyDates = new HashMap<>();
+    // Month and year totals over all dates, loaded or not
+    private final SlipRollups rollups = new SlipRollups();
+    // Truck number → its sub-slips, for all dates loaded or not; changed since the last checkpoint copy
+    private final TruckIndex trucks = new TruckIndex();
+    private boolean trucksChanged = false;
+    private boolean loaded = false;
+    // Bumped by every write; tells snapshots apart
+    private long version = 0;
+
+    SlipRepository(Consumer<SlipRepository> loader, Function<String, DayShard> shardLoader,
+                   Function<String, List<String>> partyKeyLoader, Function<String, DaySummary> totalsLoader) {
+        this.loader = loader;
+        this.shardLoader = shardLoader;
+        this.partyKeyLoader = partyKeyLoader;
+        this.totalsLoader = totalsLoader;
+    }
+
+    private void ensureLoaded() {
+        if (loaded) return;
+        // Set first so the loader can call back into apply()
+        loaded = true;
+        loader.accept(this);
+    }
+
+    /** Seeds the date list from the manifest; called by the loader. */
+    synchronized void loadManifest(Map<String, Integer> manifest) {
+        subSlipCounts.putAll(manifest);
+    }
+
+    /** Seeds the party → dates index as of the last checkpoint; called by the loader. */
+    synchronized void loadPartyIndex(Map<String, List<String>> index) {
+        index.forEach((partyKey, dateKeys) -> {
+            if (!dateKeys.isEmpty()) partyDates.put(partyKey, new TreeSet<>(dateKeys));
+        });
+    }
+
+    /**
+     * Seeds the month and year totals as of the last checkpoint; called by
+     * the loader after the manifest. Null means none are stored, and they are
+     * summed from the day totals instead.
+     */
+    synchronized void loadRollups(Map<String, DaySummary> months) {
+        if (months != null) {
+            rollups.load(months);
+            return;
+        }
+        for (String dateKey : new ArrayList<>(subSlipCounts.keySet())) {
+            rollups.addDay(dateKey, getDaySummary(dateKey));
+        }
+        if (!subSlipCounts.isEmpty()) System.out.println("Rebuilt month totals for " + subSlipCounts.size() + " dates");
+    }
+
+    /**
+     * Seeds the truck index as of the last checkpoint; called by the loader
+     * after the manifest. Null means none is stored, and it is collected from
+     * the shards, read one at a time without keeping them.
+     */
+    synchronized void loadTruckIndex(Map<String, List<TruckIndex.Entry>> stored) {
+        if (stored != null) {
+            trucks.load(stored);
+            return;
+        }
+        for (String dateKey : subSlipCounts.keySet()) {
+            try {
+                DayShard shard = shardLoader.apply(dateKey);
+                shard.getSubSlips().forEach((partyKey, slips) -> {
+                    // The IDs indexShard gives these slips when the shard is loaded for real
+                    SlipIds.assignLegacy(dateKey, partyKey, slips);
+                    for (SubSlip slip : slips) trucks.add(slip.getTruckNumber(), dateKey, partyKey, slip.getId());
+                });
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+        trucksChanged = true;
+        if (trucks.size() > 0) System.out.println("Rebuilt truck index for " + trucks.size() + " trucks");
+    }
+
+    /** Shard for a date known to the manifest, loading it on first use. */
+    private DayShard shard(String dateKey) {
+        ensureLoaded();
+        DayShard shard = shards.get(dateKey);
+        if (shard == null && subSlipCounts.containsKey(dateKey)) {
+            shard = shardLoader.apply(dateKey);
+            shards.put(dateKey, shard);
+            indexShard(dateKey, shard);
+            if (shard.getTotals() == null) {
+                // Written before totals were stored; the next checkpoint adds them
+                shard.setTotals(DaySummary.of(shard));
+                dirtyDates.add(dateKey);
+            }
+            evictCleanShards();
+        }
+        return shard;
+    }
+
+    /**
+     * Drops the least recently used shards that match their files until at
+     * most MAX_CLEAN_SHARDS of them are left. Their slips leave the location
+     * index too; loading the shard again puts them back.
+     */
+    private void evictCleanShards() {
+        List<String> clean = new ArrayList<>();
+        for (String dateKey : shards.keySet()) {
+            if (!dirtyDates.contains(dateKey) && !checkpointing.contains(dateKey)) clean.add(dateKey);
+        }
+        for (String dateKey : clean.subList(0, Math.max(0, clean.size() - MAX_CLEAN_SHARDS))) {
+            for (List<SubSlip> slips : shards.remove(dateKey).getSubSlips().values()) unindex(slips);
+        }
+    }
+
+    /**
+     * Records where each slip of a freshly loaded shard lives. Slips saved
+     * before IDs existed get one now, and the shard is marked dirty so the
+     * next checkpoint writes the IDs out.
+     */
+    private void indexShard(String dateKey, DayShard shard) {
+        boolean assigned = false;
+        for (Map.Entry<String, List<SubSlip>> entry : shard.getSubSlips().entrySet()) {
+            for (SubSlip slip : entry.getValue()) {
+                assigned |= indexSlip(dateKey, entry.getKey(), slip);
+            }
+        }
+        if (assigned) dirtyDates.add(dateKey);
+    }
+
+    /** Adds the slip to the location index; returns true if it had to be given an ID. */
+    private boolean indexSlip(String dateKey, String partyKey, SubSlip slip) {
+        boolean assigned = false;
+        if (slip.getId() == null) {
+            int ordinal = 0;
+            String id = SlipIds.legacy(dateKey, partyKey, ordinal);
+            while (locations.containsKey(id)) id = SlipIds.legacy(dateKey, partyKey, ++ordinal);
+            slip.setId(id);
+            assigned = true;
+        }
+        locations.put(slip.getId(), new String[] { dateKey, partyKey });
+        return assigned;
+    }
+
+    private void unindex(List<SubSlip> slips) {
+        for (SubSlip slip : slips) locations.remove(slip.getId());
+    }
+
+    private void trackParty(String partyKey, String dateKey) {
+        partyDates.computeIfAbsent(partyKey, k -> new TreeSet<>()).add(dateKey);
+    }
+
+    private void untrackParty(String partyKey, String dateKey) {
+        TreeSet<String> dateKeys = partyDates.get(partyKey);
+        if (dateKeys != null && dateKeys.remove(dateKey) && dateKeys.isEmpty()) partyDates.remove(partyKey);
+    }
+
+    /** Recomputes a party's day totals and carries the change into its month and year. */
+    private void refreshTotals(String dateKey, DayShard shard, String partyKey, List<SubSlip> slips) {
+        DaySummary totals = shard.getTotals();
+        SlipTotals before = totals.getSubSlips().get(partyKey);
+        totals.refreshSubSlips(partyKey, slips);
+        rollups.subSlipsChanged(dateKey, partyKey, before, totals.getSubSlips().get(partyKey));
+    }
+
+    private void refreshOperations(String dateKey, DayShard shard, MainSlip mainSlip) {
+        DaySummary totals = shard.getTotals();
+        Map<String, Double> before = totals.getOperations().get(mainSlip.getPartyName());
+        totals.refreshOperations(mainSlip);
+        rollups.operationsChanged(dateKey, mainSlip.getPartyName(), before,
+                totals.getOperations().get(mainSlip.getPartyName()));
+    }
+
+    /** A private copy of the date's shard for a write to change, then publish. */
+    private static DayShard writableCopy(DayShard shard) {
+        if (shard != null) return shard.copyOnWrite();
+        DayShard fresh = new DayShard();
+        fresh.setTotals(new DaySummary());
+        return fresh;
+    }
+
+    /** Puts a changed shard in place of the date's old one. */
+    private void publish(String dateKey, DayShard shard) {
+        shards.put(dateKey, shard);
+        dirtyDates.add(dateKey);
+        if (shard.isEmpty()) {
+            subSlipCounts.remove(dateKey);
+        } else {
+            subSlipCounts.put(dateKey, shard.subSlipCount());
+        }
+        version++;
+    }
+
+    /** Applies one journal record to the index. */
+    synchronized void apply(SlipJournal.Entry entry) {
+        switch (entry.getOp()) {
+            case SlipJournal.ADD_SUB_SLIP -> addSubSlip(entry.getDate(), entry.getParty(), entry.getSlip());
+            case SlipJournal.DELETE_SUB_SLIPS ->
+                    removeSubSlips(entry.getDate(), entry.getParty(), matchingAny(entry.getSlips()));
+            case SlipJournal.DELETE_SUB_SLIPS_BY_ID -> removeSubSlipsById(entry.getDate(), entry.getIds());
+            case SlipJournal.DELETE_PARTY -> removeParty(entry.getDate(), entry.getParty());
+            case SlipJournal.PUT_MAIN_SLIP -> putMainSlip(entry.getDate(), entry.getMainSlip());
+            default -> System.out.println("Unknown journal operation: " + entry.getOp());
+        }
+    }
+
+    /** Slips are matched by truck number and final amount. */
+    static Predicate<SubSlip> matchingAny(List<SubSlip> slipsToDelete) {
+        return slip -> slipsToDelete.stream().anyMatch(toDelete ->
+                slip.getTruckNumber().equals(toDelete.getTruckNumber()) &&
+                Math.abs(slip.getFinalAmount() - toDelete.getFinalAmount()) < 0.01);
+    }
+
+    // ---------- Reads ----------
+
+    /** Dates that have at least one sub-slip; answered from the manifest alone. */
+    synchronized List<String> getDateKeys() {
+        ensureLoaded();
+        List<String> dates = new ArrayList<>();
+        subSlipCounts.forEach((dateKey, count) -> {
+            if (count > 0) dates.add(dateKey);
+        });
+        return dates;
+    }
+
+    /**
+     * Party keys for a date. A shard that is not loaded yet has had no writes
+     * since its last checkpoint, so its file's keys are current and are read
+     * without loading the slips.
+     */
+    synchronized List<String> getPartyKeys(String dateKey) {
+        ensureLoaded();
+        DayShard shard = shards.get(dateKey);
+        if (shard == null) {
+            return subSlipCounts.containsKey(dateKey) ? partyKeyLoader.apply(dateKey) : new ArrayList<>();
+        }
+        return new ArrayList<>(shard.getSubSlips().keySet());
+    }
+
+    /** The date's shard as it is now, loading it if need be; never to be changed. */
+    private synchronized DayShard published(String dateKey) {
+        return shard(dateKey);
+    }
+
+    // Published shards do not change, so the copies below are made outside the lock
+
+    List<SubSlip> getSubSlips(String dateKey, String partyKey) {
+        DayShard shard = published(dateKey);
+        if (shard == null) return new ArrayList<>();
+        List<SubSlip> slips = shard.getSubSlips().get(partyKey);
+        return slips != null ? new ArrayList<>(slips) : new ArrayList<>();
+    }
+
+    Map<String, List<SubSlip>> getSubSlipsByParty(String dateKey) {
+        DayShard shard = published(dateKey);
+        return shard != null ? shard.copy().getSubSlips() : new HashMap<>();
+    }
+
+    synchronized boolean hasSubSlipsForParty(String partyKey) {
+        ensureLoaded();
+        return partyDates.containsKey(partyKey);
+    }
+
+    /** Dates the party has sub-slips on, oldest first. */
+    synchronized List<String> getDateKeysForParty(String partyKey) {
+        ensureLoaded();
+        TreeSet<String> dateKeys = partyDates.get(partyKey);
+        return dateKeys != null ? new ArrayList<>(dateKeys) : new ArrayList<>();
+    }
+
+    /** Where the truck was entered on or after a date, oldest first, without loading any shard. */
+    synchronized List<TruckIndex.Entry> findTruck(String truckNumber, String fromDateKey) {
+        ensureLoaded();
+        return trucks.since(truckNumber, fromDateKey);
+    }
+
+    /** All of a party's sub-slips by date, loading only the shards of dates it appears on. */
+    synchronized TreeMap<String, List<SubSlip>> getPartyHistory(String partyKey) {
+        TreeMap<String, List<SubSlip>> history = new TreeMap<>();
+        for (String dateKey : getDateKeysForParty(partyKey)) {
+            List<SubSlip> slips = getSubSlips(dateKey, partyKey);
+            if (!slips.isEmpty()) history.put(dateKey, slips);
+        }
+        return history;
+    }
+
+    /**
+     * Sub-slips of the dates from..to, both ends included, in date order and
+     * by party key within a date; null partyKeys means every party. The
+     * dates come from the sorted manifest, or from the party index when
+     * parties are given. A date's slips are only fetched when the stream
+     * reaches it. Shards that are not loaded are read from disk without
+     * being kept, so a long range holds one day at a time. Each date reflects
+     * one moment; a date written to while the stream runs may come out
+     * before or after the write.
+     */
+    Stream<DatedSubSlip> streamSubSlips(String fromKey, String toKey, Set<String> partyKeys) {
+        List<String> dateKeys;
+        synchronized (this) {
+            ensureLoaded();
+            if (partyKeys == null) {
+                dateKeys = new ArrayList<>(subSlipCounts.subMap(fromKey, true, toKey, true).keySet());
+            } else {
+                TreeSet<String> union = new TreeSet<>();
+                for (String partyKey : partyKeys) {
+                    TreeSet<String> partyDateKeys = partyDates.get(partyKey);
+                    if (partyDateKeys != null) union.addAll(partyDateKeys.subSet(fromKey, true, toKey, true));
+                }
+                dateKeys = new ArrayList<>(union);
+            }
+        }
+        return dateKeys.stream().flatMap(dateKey -> daySubSlips(dateKey, partyKeys).stream());
+    }
+
+    private List<DatedSubSlip> daySubSlips(String dateKey, Set<String> partyKeys) {
+        synchronized (this) {
+            DayShard shard = shards.get(dateKey);
+            if (shard == null && !subSlipCounts.containsKey(dateKey)) return List.of();
+            if (shard != null) return datedSubSlips(dateKey, shard, partyKeys);
+        }
+        DayShard onDisk = shardLoader.apply(dateKey);
+        for (List<SubSlip> slips : onDisk.getSubSlips().values()) {
+            for (SubSlip slip : slips) {
+                // Needs an ID first, which only loading it properly hands out
+                if (slip.getId() == null) return datedSubSlips(dateKey, published(dateKey), partyKeys);
+            }
+        }
+        return datedSubSlips(dateKey, onDisk, partyKeys);
+    }
+
+    private static List<DatedSubSlip> datedSubSlips(String dateKey, DayShard shard, Set<String> partyKeys) {
+        List<DatedSubSlip> dated = new ArrayList<>();
+        if (shard == null) return dated;
+        LocalDate date = LocalDate.parse(dateKey);
+        new TreeMap<>(shard.getSubSlips()).forEach((partyKey, slips) -> {
+            if (partyKeys != null && !partyKeys.contains(partyKey)) return;
+            for (SubSlip slip : slips) dated.add(new DatedSubSlip(date, partyKey, slip));
+        });
+        return dated;
+    }
+
+    /**
+     * Totals of a date. A shard that is not loaded yet has had no writes since
+     * its last checkpoint, so the totals stored in its file are current.
+     */
+    DaySummary getDaySummary(String dateKey) {
+        DayShard shard;
+        synchronized (this) {
+            ensureLoaded();
+            shard = shards.get(dateKey);
+            if (shard == null && subSlipCounts.containsKey(dateKey)) {
+                DaySummary stored = totalsLoader.apply(dateKey);
+                if (stored != null) return stored;
+                shard = shard(dateKey);
+            }
+        }
+        return shard != null ? shard.getTotals().copy() : new DaySummary();
+    }
+
+    /**
+     * Totals over a date range, both ends included. Whole years and months
+     * come from the rollups and only the odd days at either end are read
+     * one date at a time.
+     */
+    synchronized DaySummary getRangeSummary(LocalDate from, LocalDate to) {
+        ensureLoaded();
+        DaySummary range = new DaySummary();
+        LocalDate cursor = from;
+        while (!cursor.isAfter(to)) {
+            LocalDate yearEnd = cursor.withDayOfYear(cursor.lengthOfYear());
+            LocalDate monthEnd = cursor.withDayOfMonth(cursor.lengthOfMonth());
+            if (cursor.getDayOfYear() == 1 && !yearEnd.isAfter(to)) {
+                rollups.addYear(range, cursor.getYear());
+                cursor = yearEnd.plusDays(1);
+            } else if (cursor.getDayOfMonth() == 1 && !monthEnd.isAfter(to)) {
+                rollups.addMonth(range, cursor);
+                cursor = monthEnd.plusDays(1);
+            } else {
+                LocalDate end = monthEnd.isAfter(to) ? to : monthEnd;
+                for (String dateKey : subSlipCounts.subMap(cursor.toString(), true, end.toString(), true).keySet()) {
+                    range.addAll(getDaySummary(dateKey));
+                }
+                cursor = end.plusDays(1);
+            }
+        }
+        return range;
+    }
+
+    MainSlip getMainSlip(String dateKey, String partyName) {
+        DayShard shard = published(dateKey);
+        return shard != null ? shard.getMainSlips().get(partyName) : null;
+    }
+
+    Map<String, MainSlip> getMainSlips(String dateKey) {
+        DayShard shard = published(dateKey);
+        return shard != null ? new HashMap<>(shard.getMainSlips()) : new HashMap<>();
+    }
+
+    /**
+     * The dates from..to, both ends included, as they are at this moment.
+     * Their shards are loaded if need be and shared with the cache rather
+     * than copied; writes after this replace shards instead of changing
+     * them, so the snapshot keeps showing this version.
+     */
+    synchronized SlipSnapshot snapshot(String fromKey, String toKey) {
+        ensureLoaded();
+        TreeMap<String, DayShard> days = new TreeMap<>();
+        for (String dateKey : new ArrayList<>(subSlipCounts.subMap(fromKey, true, toKey, true).keySet())) {
+            DayShard shard = shard(dateKey);
+            if (shard != null) days.put(dateKey, shard);
+        }
+        return new SlipSnapshot(version, days);
+    }
+
+    /** Copy of the whole sub-slip index in the legacy sub_slips.json shape. */
+    synchronized Map<String, Map<String, List<SubSlip>>> copySubSlips() {
+        ensureLoaded();
+        Map<String, Map<String, List<SubSlip>>> copy = new TreeMap<>();
+        // One date at a time, so the cache stays bounded while the copy grows
+        for (String dateKey : new ArrayList<>(subSlipCounts.keySet())) {
+            DayShard shard = shard(dateKey);
+            if (shard != null && !shard.getSubSlips().isEmpty()) copy.put(dateKey, shard.copy().getSubSlips());
+        }
+        return copy;
+    }
+
+    /** Copy of the whole main-slip index in the legacy main_slips.json shape. */
+    synchronized Map<String, Map<String, MainSlip>> copyMainSlips() {
+        ensureLoaded();
+        Map<String, Map<String, MainSlip>> copy = new TreeMap<>();
+        for (String dateKey : new ArrayList<>(subSlipCounts.keySet())) {
+            DayShard shard = shard(dateKey);
+            if (shard != null && !shard.getMainSlips().isEmpty()) copy.put(dateKey, new HashMap<>(shard.getMainSlips()));
+        }
+        return copy;
+    }
+
+    // ---------- Writes ----------
+
+    /** Adding a slip whose ID is already there does nothing, so a record may safely be applied twice. */
+    synchronized void addSubSlip(String dateKey, String partyKey, SubSlip slip) {
+        // Loading the shard indexes it, so the duplicate check sees its slips
+        DayShard current = shard(dateKey);
+        if (slip.getId() != null && locations.containsKey(slip.getId())) return;
+        DayShard shard = writableCopy(current);
+        // Records journaled before IDs existed come back without one
+        indexSlip(dateKey, partyKey, slip);
+        List<SubSlip> slips = new ArrayList<>(shard.getSubSlips().getOrDefault(partyKey, List.of()));
+        slips.add(slip);
+        shard.getSubSlips().put(partyKey, slips);
+        refreshTotals(dateKey, shard, partyKey, slips);
+        trackParty(partyKey, dateKey);
+        trucks.add(slip.getTruckNumber(), dateKey, partyKey, slip.getId());
+        trucksChanged = true;
+        publish(dateKey, shard);
+    }
+
+    /** Removes matching slips and returns how many were removed. */
+    synchronized int removeSubSlips(String dateKey, String partyKey, Predicate<SubSlip> matcher) {
+        DayShard current = shard(dateKey);
+        if (current == null) return 0;
+        List<SubSlip> slips = current.getSubSlips().get(partyKey);
+        if (slips == null) return 0;
+
+        List<SubSlip> kept = new ArrayList<>(slips.size());
+        int removed = 0;
+        for (SubSlip slip : slips) {
+            if (!matcher.test(slip)) {
+                kept.add(slip);
+                continue;
+            }
+            locations.remove(slip.getId());
+            trucks.remove(slip.getTruckNumber(), slip.getId());
+            removed++;
+        }
+        // An empty party entry is still dropped below so it stops showing up in selectors
+        if (removed == 0 && !kept.isEmpty()) return 0;
+        if (removed > 0) trucksChanged = true;
+
+        DayShard shard = current.copyOnWrite();
+        if (kept.isEmpty()) {
+            shard.getSubSlips().remove(partyKey);
+            untrackParty(partyKey, dateKey);
+        } else {
+            shard.getSubSlips().put(partyKey, kept);
+        }
+        refreshTotals(dateKey, shard, partyKey, kept);
+        publish(dateKey, shard);
+        return removed;
+    }
+
+    synchronized boolean removeParty(String dateKey, String partyKey) {
+        DayShard current = shard(dateKey);
+        if (current == null || !current.getSubSlips().containsKey(partyKey)) return false;
+        DayShard shard = current.copyOnWrite();
+        List<SubSlip> slips = shard.getSubSlips().remove(partyKey);
+        unindex(slips);
+        for (SubSlip slip : slips) trucks.remove(slip.getTruckNumber(), slip.getId());
+        trucksChanged = true;
+        untrackParty(partyKey, dateKey);
+        refreshTotals(dateKey, shard, partyKey, null);
+        publish(dateKey, shard);
+        return true;
+    }
+
+    /**
+     * Removes slips of a date by ID, finding their party lists through the
+     * location index. IDs that are not (or no longer) there are ignored.
+     * Returns how many were removed.
+     */
+    synchronized int removeSubSlipsById(String dateKey, Collection<String> ids) {
+        // Loading the shard indexes it, so replayed deletes find their slips too
+        if (shard(dateKey) == null) return 0;
+        Map<String, Set<String>> idsByParty = new HashMap<>();
+        for (String id : ids) {
+            String[] location = locations.get(id);
+            if (location != null && location[0].equals(dateKey)) {
+                idsByParty.computeIfAbsent(location[1], k -> new HashSet<>()).add(id);
+            }
+        }
+
+        int removed = 0;
+        for (Map.Entry<String, Set<String>> entry : idsByParty.entrySet()) {
+            Set<String> partyIds = entry.getValue();
+            removed += removeSubSlips(dateKey, entry.getKey(), slip -> partyIds.contains(slip.getId()));
+        }
+        return removed;
+    }
+
+    synchronized void putMainSlip(String dateKey, MainSlip mainSlip) {
+        DayShard shard = writableCopy(shard(dateKey));
+        shard.getMainSlips().put(mainSlip.getPartyName(), mainSlip);
+        refreshOperations(dateKey, shard, mainSlip);
+        publish(dateKey, shard);
+    }
+
+    // ---------- Checkpoint support ----------
+
+    /**
+     * The shards changed since the last checkpoint, keyed by date; published
+     * ones, so they are handed out as they are. A null value means the date
+     * no longer has any data and its file can go.
+     */
+    synchronized Map<String, DayShard> takeDirtyShards() {
+        Map<String, DayShard> dirty = new TreeMap<>();
+        for (String dateKey : dirtyDates) {
+            DayShard shard = shards.get(dateKey);
+            dirty.put(dateKey, shard == null || shard.isEmpty() ? null : shard);
+        }
+        // Kept loaded until checkpointWritten: the journal records for them move to the rotated segment
+        checkpointing.addAll(dirtyDates);
+        dirtyDates.clear();
+        return dirty;
+    }
+
+    /** The checkpoint that took these dates is on disk, so their shards may be evicted. */
+    synchronized void checkpointWritten(Set<String> dateKeys) {
+        checkpointing.removeAll(dateKeys);
+    }
+
+    /** Puts dates back on the dirty list after a checkpoint failed to write them. */
+    synchronized void markDirty(Set<String> dateKeys) {
+        dirtyDates.addAll(dateKeys);
+        checkpointing.removeAll(dateKeys);
+    }
+
+    /**
+     * Copy of the truck index if it changed since the last call, else null so
+     * a checkpoint that only touched main slips does not rewrite it.
+     */
+    synchronized Map<String, List<TruckIndex.Entry>> takeTruckIndex() {
+        ensureLoaded();
+        if (!trucksChanged) return null;
+        trucksChanged = false;
+        return trucks.copy();
+    }
+
+    /** After a checkpoint failed to write the truck index. */
+    synchronized void markTruckIndexChanged() {
+        trucksChanged = true;
+    }
+
+    synchronized Map<String, Integer> copyManifest() {
+        ensureLoaded();
+        return new TreeMap<>(subSlipCounts);
+    }
+
+    synchronized Map<String, DaySummary> copyRollups() {
+        ensureLoaded();
+        return rollups.copyMonths();
+    }
+
+    synchronized Map<String, List<String>> copyPartyIndex() {
+        ensureLoaded();
+        Map<String, List<String>> copy = new TreeMap<>();
+        partyDates.forEach((partyKey, dateKeys) -> copy.put(partyKey, new ArrayList<>(dateKeys)));
+        return copy;
+    }
+
+    /**
+     * Drops everything and loads again from disk, for when another process
+     * has checkpointed or reset the data underneath this one.
+     */
+    synchronized void reload() {
+        clear();
+        loaded = false;
+        ensureLoaded();
+    }
+
+    synchronized void clear() {
+        subSlipCounts.clear();
+        shards.clear();
+        dirtyDates.clear();
+        checkpointing.clear();
+        locations.clear();
+        partyDates.clear();
+        rollups.clear();
+        trucks.clear();
+        trucksChanged = false;
+        version++;
+        // Files are gone too, so an empty index is the loaded state
+        loaded = true;
+    }
+}
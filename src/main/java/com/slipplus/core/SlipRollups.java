@@ -0,0 +1,102 @@
+package com.slipplus.core;
+
+import com.slipplus.models.SlipTotals;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Month and year totals built from the day totals.
+ *
+ * Every change to a day's entry for a party is applied to its month and
+ * year as the difference between the old and new entry, so keeping them
+ * current costs the same whatever the size of the history. Only the
+ * months are stored; years are summed from them on load.
+ */
+class SlipRollups {
+
+    // "2024-03" → totals for March 2024; keys sort chronologically
+    private final Map<String, DaySummary> months = new TreeMap<>();
+    // "2024" → totals for 2024
+    private final Map<String, DaySummary> years = new TreeMap<>();
+
+    /** Replaces everything with stored month totals. */
+    void load(Map<String, DaySummary> storedMonths) {
+        clear();
+        storedMonths.forEach((monthKey, summary) -> {
+            months.put(monthKey, summary);
+            year(monthKey.substring(0, 4)).addAll(summary);
+        });
+    }
+
+    /** Adds a whole day, for building the rollups from scratch. */
+    void addDay(String dateKey, DaySummary day) {
+        month(monthKeyOf(dateKey)).addAll(day);
+        year(yearKeyOf(dateKey)).addAll(day);
+    }
+
+    void subSlipsChanged(String dateKey, String partyKey, SlipTotals before, SlipTotals after) {
+        for (DaySummary rollup : rollupsOf(dateKey)) {
+            rollup.addSubSlips(partyKey, before, -1);
+            rollup.addSubSlips(partyKey, after, 1);
+        }
+    }
+
+    void operationsChanged(String dateKey, String partyName, Map<String, Double> before,
+                           Map<String, Double> after) {
+        for (DaySummary rollup : rollupsOf(dateKey)) {
+            rollup.addOperations(partyName, before, -1);
+            rollup.addOperations(partyName, after, 1);
+        }
+    }
+
+    /** Adds a calendar month's totals into the target. */
+    void addMonth(DaySummary target, LocalDate anyDayOfMonth) {
+        DaySummary summary = months.get(monthKeyOf(anyDayOfMonth.toString()));
+        if (summary != null) target.addAll(summary);
+    }
+
+    /** Adds a calendar year's totals into the target. */
+    void addYear(DaySummary target, int year) {
+        DaySummary summary = years.get(String.valueOf(year));
+        if (summary != null) target.addAll(summary);
+    }
+
+    /** Copy of the month totals, for the checkpoint to write. */
+    Map<String, DaySummary> copyMonths() {
+        Map<String, DaySummary> copy = new TreeMap<>();
+        months.forEach((monthKey, summary) -> {
+            if (!summary.getSubSlips().isEmpty() || !summary.getOperations().isEmpty()) {
+                copy.put(monthKey, summary.copy());
+            }
+        });
+        return copy;
+    }
+
+    void clear() {
+        months.clear();
+        years.clear();
+    }
+
+    private DaySummary[] rollupsOf(String dateKey) {
+        return new DaySummary[] { month(monthKeyOf(dateKey)), year(yearKeyOf(dateKey)) };
+    }
+
+    private DaySummary month(String monthKey) {
+        return months.computeIfAbsent(monthKey, k -> new DaySummary());
+    }
+
+    private DaySummary year(String yearKey) {
+        return years.computeIfAbsent(yearKey, k -> new DaySummary());
+    }
+
+    // Date keys are ISO dates: yyyy-MM-dd
+    private static String monthKeyOf(String dateKey) {
+        return dateKey.substring(0, 7);
+    }
+
+    private static String yearKeyOf(String dateKey) {
+        return dateKey.substring(0, 4);
+    }
+}
@@ -0,0 +1,69 @@
+package com.slipplus.core;
+
+import com.slipplus.models.MainSlip;
+import com.slipplus.models.SlipTotals;
+import com.slipplus.models.SubSlip;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * The slips of a date range as they were at one moment, for reports and
+ * PDFs that read the same dates several times while slips keep being saved.
+ *
+ * Every read answers from the same version, so a table and its totals, or a
+ * screen and the PDF printed from it, cannot disagree. Writes made after
+ * the snapshot was taken do not show up in it and do not wait for it. Dates
+ * outside the range read as empty.
+ */
+public final class SlipSnapshot {
+
+    private final long version;
+    // Date key → shard; shards are never changed once published, so nothing here changes either
+    private final SortedMap<String, DayShard> days;
+
+    SlipSnapshot(long version, SortedMap<String, DayShard> days) {
+        this.version = version;
+        this.days = days;
+    }
+
+    /** Grows with every write; two snapshots with the same version hold the same data. */
+    public long getVersion() {
+        return version;
+    }
+
+    /** Dates in the snapshot that have slips, oldest first. */
+    public List<LocalDate> getDates() {
+        List<LocalDate> dates = new ArrayList<>();
+        days.forEach((dateKey, shard) -> {
+            if (!shard.getSubSlips().isEmpty()) dates.add(LocalDate.parse(dateKey));
+        });
+        return dates;
+    }
+
+    public Map<String, List<SubSlip>> getSubSlipsGroupedByParty(LocalDate date) {
+        DayShard shard = days.get(date.toString());
+        return shard != null ? shard.copy().getSubSlips() : new HashMap<>();
+    }
+
+    public List<SubSlip> getSubSlips(LocalDate date, String partyKey) {
+        DayShard shard = days.get(date.toString());
+        List<SubSlip> slips = shard != null ? shard.getSubSlips().get(partyKey) : null;
+        return slips != null ? new ArrayList<>(slips) : new ArrayList<>();
+    }
+
+    /** Totals of a date by party ID, as StorageManager.getDayTotals gives them. */
+    public Map<String, SlipTotals> getDayTotals(LocalDate date) {
+        DayShard shard = days.get(date.toString());
+        return StorageManager.totalsByPartyId(shard != null ? shard.getTotals().copy() : new DaySummary());
+    }
+
+    public Map<String, MainSlip> getMainSlipsForDate(LocalDate date) {
+        DayShard shard = days.get(date.toString());
+        return shard != null ? new HashMap<>(shard.getMainSlips()) : new HashMap<>();
+    }
+}
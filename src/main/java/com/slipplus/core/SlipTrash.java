@@ -0,0 +1,180 @@
+package com.slipplus.core;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.slipplus.models.SubSlip;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tombstones of deleted sub-slips, kept for an undo window.
+ *
+ * A delete leaves one tombstone holding the slips it took out, keyed by an
+ * ID the caller gets back; undoing hands them over again by that key. A
+ * sweep once a minute drops tombstones older than the window, oldest first,
+ * and stops at the first one still inside it.
+ *
+ * The tombstones are also written to deleted_slips.json on a writer thread
+ * of their own, so an undo survives a restart. A delete is only issued once
+ * its tombstone is on disk; the caller waits on the future add returns,
+ * never the UI thread. Each SlipPlus window keeps its own; they do not see
+ * each other's.
+ */
+class SlipTrash {
+
+    private static final String WRITE_KEY = "deleted_slips";
+    private static final long SWEEP_MINUTES = 1;
+
+    private final File file;
+    private final ObjectReader reader;
+    private final ObjectWriter writer;
+    private final long windowMillis;
+    private final StorageExecutor storageExecutor = new StorageExecutor("slipplus-trash");
+    // Tombstone ID → tombstone, oldest first; guarded by this
+    private final LinkedHashMap<String, Tombstone> tombstones = new LinkedHashMap<>();
+    private ScheduledExecutorService sweeper;
+    private boolean loaded = false;
+
+    SlipTrash(File file, ObjectMapper mapper, long windowMillis) {
+        this.file = file;
+        this.reader = mapper.readerFor(new TypeReference<List<Tombstone>>() {});
+        this.writer = mapper.writerFor(new TypeReference<List<Tombstone>>() {});
+        this.windowMillis = windowMillis;
+    }
+
+    /** Reads the file and starts the sweep on first use, so the app starts no thread it does not need. */
+    private void ensureLoaded() {
+        if (loaded) return;
+        loaded = true;
+        try {
+            List<Tombstone> stored = AtomicFiles.read(file, reader::readValue);
+            if (stored != null) {
+                for (Tombstone tombstone : stored) tombstones.put(tombstone.id(), tombstone);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "slipplus-trash-sweep");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(() -> purge(System.currentTimeMillis()),
+                0, SWEEP_MINUTES, TimeUnit.MINUTES);
+    }
+
+    /** Completes once the file holding the tombstone is on disk. */
+    synchronized CompletableFuture<Void> add(Tombstone tombstone) {
+        ensureLoaded();
+        tombstones.put(tombstone.id(), tombstone);
+        return queueWrite();
+    }
+
+    /** The tombstone, left in place, or null if it is gone or past the window. */
+    synchronized Tombstone get(String id) {
+        ensureLoaded();
+        Tombstone tombstone = tombstones.get(id);
+        return tombstone != null && !expired(tombstone, System.currentTimeMillis()) ? tombstone : null;
+    }
+
+    /** Removes and returns the tombstone, or null if it is gone or past the window. */
+    synchronized Tombstone take(String id) {
+        ensureLoaded();
+        Tombstone tombstone = tombstones.remove(id);
+        if (tombstone == null) return null;
+        queueWrite();
+        return expired(tombstone, System.currentTimeMillis()) ? null : tombstone;
+    }
+
+    /** Drops the tombstones that are past the window; returns how many. */
+    synchronized int purge(long now) {
+        ensureLoaded();
+        int purged = 0;
+        Iterator<Tombstone> oldestFirst = tombstones.values().iterator();
+        while (oldestFirst.hasNext()) {
+            if (!expired(oldestFirst.next(), now)) break;
+            oldestFirst.remove();
+            purged++;
+        }
+        if (purged > 0) queueWrite();
+        return purged;
+    }
+
+    synchronized void clear() {
+        ensureLoaded();
+        tombstones.clear();
+        queueWrite();
+    }
+
+    /** Stops the sweep and finishes the writes queued so far; for a trash opened for a while only. */
+    void close() {
+        synchronized (this) {
+            if (sweeper != null) sweeper.shutdownNow();
+        }
+        storageExecutor.close();
+    }
+
+    private boolean expired(Tombstone tombstone, long now) {
+        return now - tombstone.deletedAt() >= windowMillis;
+    }
+
+    /** Must be called holding the lock; only the latest list is written when writes pile up. */
+    private CompletableFuture<Void> queueWrite() {
+        List<Tombstone> copy = new ArrayList<>(tombstones.values());
+        // Written even when empty: with the file gone, reading would fall back to its .bak
+        return storageExecutor.submitWrite(WRITE_KEY,
+                () -> AtomicFiles.replace(file, out -> writer.writeValue(out, copy)));
+    }
+
+    /** The slips one delete took out of a date, by party key; never changed once made. */
+    static final class Tombstone {
+        private final String id;
+        private final String date;
+        private final long deletedAt;
+        private final Map<String, List<SubSlip>> slips;
+
+        @JsonCreator
+        Tombstone(@JsonProperty("id") String id, @JsonProperty("date") String date,
+                  @JsonProperty("deletedAt") long deletedAt,
+                  @JsonProperty("slips") Map<String, List<SubSlip>> slips) {
+            this.id = id;
+            this.date = date;
+            this.deletedAt = deletedAt;
+            this.slips = slips != null ? slips : Map.of();
+        }
+
+        @JsonProperty("id")
+        String id() {
+            return id;
+        }
+
+        @JsonProperty("date")
+        String date() {
+            return date;
+        }
+
+        @JsonProperty("deletedAt")
+        long deletedAt() {
+            return deletedAt;
+        }
+
+        @JsonProperty("slips")
+        Map<String, List<SubSlip>> slips() {
+            return slips;
+        }
+    }
+}
@@ -0,0 +1,995 @@
+package com.slipplus.core;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.slipplus.models.DatedSubSlip;
+import com.slipplus.models.MainSlip;
+import com.slipplus.models.Party;
+import com.slipplus.models.Shortcut;
+import com.slipplus.models.SlipTotals;
+import com.slipplus.models.SubSlip;
+import com.slipplus.models.TruckSighting;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Backend on an embedded SQLite database in data/slipplus.db.
+ *
+ * Slips are stored as their JSON body next to the columns that get queried
+ * (date, party key, truck number, final amount), with indexes on those, so
+ * per-date, per-party and truck lookups do not depend on how many years of
+ * data are stored. Per-date, per-party totals live in their own tables and
+ * are refreshed in the same transaction as the slips they summarize.
+ *
+ * Writes go through one connection on the storage thread. Reads have their
+ * own read-only connection, so a lookup from the FX thread never waits behind
+ * queued writes. A read sees every write whose future has completed; one still
+ * in the queue shows up once it commits.
+ *
+ * A new database is filled from the JSON files on first open.
+ */
+class SqliteStorageBackend implements StorageBackend {
+
+    private static final String PARTY_WRITE_KEY = "parties";
+    private static final String SHORTCUT_WRITE_KEY = "shortcuts";
+
+    private static final String[] TABLES = {
+            "CREATE TABLE IF NOT EXISTS parties (position INTEGER PRIMARY KEY, id INTEGER NOT NULL, name TEXT)",
+            "CREATE TABLE IF NOT EXISTS shortcuts (position INTEGER PRIMARY KEY, alphabet TEXT, description TEXT, "
+                    + "operation TEXT, show_in_purchase_book INTEGER NOT NULL)",
+            "CREATE TABLE IF NOT EXISTS sub_slips (seq INTEGER PRIMARY KEY AUTOINCREMENT, slip_date TEXT NOT NULL, "
+                    + "party_key TEXT NOT NULL, truck_number TEXT, final_amount REAL NOT NULL, body TEXT NOT NULL, "
+                    + "slip_id TEXT, truck_key TEXT)",
+            "CREATE TABLE IF NOT EXISTS main_slips (slip_date TEXT NOT NULL, party_name TEXT NOT NULL, "
+                    + "body TEXT NOT NULL, PRIMARY KEY (slip_date, party_name))",
+            "CREATE TABLE IF NOT EXISTS day_totals (slip_date TEXT NOT NULL, party_key TEXT NOT NULL, "
+                    + "truck_count INTEGER NOT NULL, main_weight REAL NOT NULL, sub_weight REAL NOT NULL, "
+                    + "total_before_gst REAL NOT NULL, gst REAL NOT NULL, final_amount REAL NOT NULL, "
+                    + "PRIMARY KEY (slip_date, party_key))",
+            "CREATE TABLE IF NOT EXISTS day_operation_totals (slip_date TEXT NOT NULL, party_name TEXT NOT NULL, "
+                    + "shortcut_id TEXT, amount REAL NOT NULL)"
+    };
+
+    private static final String[] INDEXES = {
+            "CREATE INDEX IF NOT EXISTS idx_sub_slips_date_party ON sub_slips (slip_date, party_key)",
+            "CREATE INDEX IF NOT EXISTS idx_sub_slips_party_date ON sub_slips (party_key, slip_date)",
+            "CREATE INDEX IF NOT EXISTS idx_sub_slips_truck ON sub_slips (truck_number)",
+            "CREATE INDEX IF NOT EXISTS idx_sub_slips_truck_key ON sub_slips (truck_key, slip_date)",
+            "CREATE UNIQUE INDEX IF NOT EXISTS idx_sub_slips_id ON sub_slips (slip_id)",
+            "CREATE INDEX IF NOT EXISTS idx_day_operation_totals ON day_operation_totals (slip_date, party_name)"
+    };
+
+    private final Connection connection;
+    private final Connection reader;
+    private final StorageExecutor storageExecutor = new StorageExecutor();
+    private final ObjectReader subSlipReader;
+    private final ObjectReader mainSlipReader;
+    private final ObjectWriter writer;
+    // Committed writes so far; only bumped on the storage thread, after the commit
+    private volatile long version = 0;
+
+    SqliteStorageBackend(String dataDir, ObjectMapper mapper, Supplier<StorageBackend> importSource)
+            throws SQLException {
+        this.subSlipReader = mapper.readerFor(SubSlip.class);
+        this.mainSlipReader = mapper.readerFor(MainSlip.class);
+        this.writer = mapper.writer();
+
+        File dir = new File(dataDir);
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new SQLException("Failed to create data directory: " + dataDir);
+        }
+        File dbFile = new File(dir, "slipplus.db");
+        boolean created = !dbFile.exists();
+
+        this.connection = DriverManager.getConnection("jdbc:sqlite:" + dbFile.getPath());
+        boolean hasTotals;
+        try (Statement statement = connection.createStatement()) {
+            // WAL with NORMAL sync: commits are ordered and atomic, fsync happens at WAL checkpoints
+            statement.execute("PRAGMA journal_mode=WAL");
+            statement.execute("PRAGMA synchronous=NORMAL");
+            // Another SlipPlus window may be mid-write; wait for it instead of failing
+            statement.execute("PRAGMA busy_timeout=5000");
+            hasTotals = hasTable(statement, "day_totals");
+            for (String ddl : TABLES) statement.execute(ddl);
+            addSlipIdColumn(statement);
+            addTruckKeyColumn(statement);
+            for (String ddl : INDEXES) statement.execute(ddl);
+        }
+
+        if (!created && !hasTotals) {
+            // Database from before totals were stored
+            try {
+                inTransaction(this::rebuildTotals);
+            } catch (Exception e) {
+                connection.close();
+                throw new SQLException("Building day totals failed", e);
+            }
+        }
+
+        if (created) {
+            try {
+                importFrom(importSource.get());
+            } catch (Exception e) {
+                connection.close();
+                // Next start retries the import instead of opening a half-filled database
+                for (String suffix : new String[] { "", "-wal", "-shm" }) {
+                    new File(dbFile.getPath() + suffix).delete();
+                }
+                throw new SQLException("Import from JSON files failed", e);
+            }
+        }
+
+        try {
+            this.reader = openReader(dbFile);
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+    }
+
+    private static Connection openReader(File dbFile) throws SQLException {
+        Connection reader = DriverManager.getConnection("jdbc:sqlite:" + dbFile.getPath());
+        try (Statement statement = reader.createStatement()) {
+            statement.execute("PRAGMA query_only=ON");
+            statement.execute("PRAGMA busy_timeout=5000");
+        } catch (SQLException e) {
+            reader.close();
+            throw e;
+        }
+        return reader;
+    }
+
+    private static boolean hasTable(Statement statement, String name) throws SQLException {
+        try (ResultSet tables = statement.executeQuery(
+                "SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = '" + name + "'")) {
+            return tables.next();
+        }
+    }
+
+    /** Databases created before slips had IDs: add the column and give old rows one. */
+    private static void addSlipIdColumn(Statement statement) throws SQLException {
+        try (ResultSet columns = statement.executeQuery("SELECT 1 FROM pragma_table_info('sub_slips') "
+                + "WHERE name = 'slip_id'")) {
+            if (columns.next()) return;
+        }
+        statement.execute("ALTER TABLE sub_slips ADD COLUMN slip_id TEXT");
+        statement.execute("UPDATE sub_slips SET slip_id = 'legacy-' || seq");
+    }
+
+    /**
+     * Databases created before truck lookups: add the normalized truck number
+     * column and fill it in. Normalizing is done in Java so both backends
+     * agree on which truck numbers are the same.
+     */
+    private static void addTruckKeyColumn(Statement statement) throws SQLException {
+        try (ResultSet columns = statement.executeQuery("SELECT 1 FROM pragma_table_info('sub_slips') "
+                + "WHERE name = 'truck_key'")) {
+            if (columns.next()) return;
+        }
+        statement.execute("ALTER TABLE sub_slips ADD COLUMN truck_key TEXT");
+        Map<Long, String> keys = new HashMap<>();
+        try (ResultSet rows = statement.executeQuery("SELECT seq, truck_number FROM sub_slips")) {
+            while (rows.next()) keys.put(rows.getLong(1), TruckIndex.normalize(rows.getString(2)));
+        }
+        try (PreparedStatement update = statement.getConnection().prepareStatement(
+                "UPDATE sub_slips SET truck_key = ? WHERE seq = ?")) {
+            for (Map.Entry<Long, String> entry : keys.entrySet()) {
+                update.setString(1, entry.getValue());
+                update.setLong(2, entry.getKey());
+                update.addBatch();
+            }
+            update.executeBatch();
+        }
+    }
+
+    /**
+     * Copies everything from another backend in one transaction, then closes
+     * it. Dates are read and written one at a time, totals included, so only
+     * one day of slips is held in memory.
+     */
+    private void importFrom(StorageBackend source) throws Exception {
+        try {
+            List<Party> parties = source.loadParties();
+            List<Shortcut> shortcuts = source.loadShortcuts();
+            List<LocalDate> dates = new ArrayList<>(source.getDates());
+            Collections.sort(dates);
+
+            inTransaction(() -> {
+                writeParties(parties);
+                writeShortcuts(shortcuts);
+                for (LocalDate date : dates) importDate(source, date);
+            });
+            System.out.println("Imported " + dates.size() + " dates and " + parties.size() + " parties into SQLite");
+        } finally {
+            source.close();
+        }
+    }
+
+    private void importDate(StorageBackend source, LocalDate date) throws Exception {
+        String dateKey = date.toString();
+        for (Map.Entry<String, List<SubSlip>> party : source.getSubSlipsByParty(date).entrySet()) {
+            for (SubSlip slip : party.getValue()) {
+                insertSubSlip(dateKey, party.getKey(), slip.getId(), slip.getTruckNumber(),
+                        slip.getFinalAmount(), writer.writeValueAsString(slip));
+            }
+            refreshDayTotals(dateKey, party.getKey());
+        }
+        for (MainSlip mainSlip : source.getMainSlips(date).values()) {
+            upsertMainSlip(dateKey, mainSlip.getPartyName(), writer.writeValueAsString(mainSlip),
+                    DaySummary.operationTotalsOf(mainSlip));
+        }
+    }
+
+    // ---------- Plumbing ----------
+
+    /**
+     * Runs a read on the read connection, in one transaction so every
+     * statement in it sees the same commit. WAL lets it run while the storage
+     * thread is writing.
+     */
+    private <T> T query(StorageExecutor.StorageQuery<T> query) {
+        synchronized (reader) {
+            try {
+                reader.setAutoCommit(false);
+                try {
+                    return query.run();
+                } finally {
+                    reader.commit();
+                    reader.setAutoCommit(true);
+                }
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    private void inTransaction(StorageExecutor.StorageTask task) throws Exception {
+        connection.setAutoCommit(false);
+        try {
+            task.run();
+            connection.commit();
+        } catch (Exception e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    private CompletableFuture<Void> write(StorageExecutor.StorageTask task) {
+        return storageExecutor.submit(() -> {
+            inTransaction(task);
+            version++;
+        });
+    }
+
+    private List<SubSlip> readSubSlips(PreparedStatement statement) throws Exception {
+        List<SubSlip> slips = new ArrayList<>();
+        try (ResultSet rows = statement.executeQuery()) {
+            while (rows.next()) slips.add(readSubSlip(rows));
+        }
+        return slips;
+    }
+
+    /** The row's slip_id wins over the body, which has none for rows from before IDs. */
+    private SubSlip readSubSlip(ResultSet row) throws Exception {
+        SubSlip slip = subSlipReader.readValue(row.getString("body"));
+        slip.setId(row.getString("slip_id"));
+        return slip;
+    }
+
+    // ---------- Day totals ----------
+
+    /** Recomputes one party's totals for a date from its rows. Call inside a write. */
+    private void refreshDayTotals(String dateKey, String partyKey) throws Exception {
+        List<SubSlip> slips;
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT slip_id, body FROM sub_slips WHERE slip_date = ? AND party_key = ? ORDER BY seq")) {
+            statement.setString(1, dateKey);
+            statement.setString(2, partyKey);
+            slips = readSubSlips(statement);
+        }
+        if (slips.isEmpty()) {
+            deleteDayTotals(dateKey, partyKey);
+        } else {
+            writeDayTotals(dateKey, partyKey, DaySummary.totalsOf(slips));
+        }
+    }
+
+    private void writeDayTotals(String dateKey, String partyKey, SlipTotals totals) throws SQLException {
+        try (PreparedStatement upsert = connection.prepareStatement("INSERT OR REPLACE INTO day_totals "
+                + "(slip_date, party_key, truck_count, main_weight, sub_weight, total_before_gst, gst, final_amount) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?, ?)")) {
+            upsert.setString(1, dateKey);
+            upsert.setString(2, partyKey);
+            upsert.setInt(3, totals.getTruckCount());
+            upsert.setDouble(4, totals.getMainWeight());
+            upsert.setDouble(5, totals.getSubWeight());
+            upsert.setDouble(6, totals.getTotalBeforeGst());
+            upsert.setDouble(7, totals.getGst());
+            upsert.setDouble(8, totals.getFinalAmount());
+            upsert.executeUpdate();
+        }
+    }
+
+    private void deleteDayTotals(String dateKey, String partyKey) throws SQLException {
+        try (PreparedStatement delete = connection.prepareStatement(
+                "DELETE FROM day_totals WHERE slip_date = ? AND party_key = ?")) {
+            delete.setString(1, dateKey);
+            delete.setString(2, partyKey);
+            delete.executeUpdate();
+        }
+    }
+
+    private void writeOperationTotals(String dateKey, String partyName, Map<String, Double> amounts)
+            throws SQLException {
+        try (PreparedStatement delete = connection.prepareStatement(
+                "DELETE FROM day_operation_totals WHERE slip_date = ? AND party_name = ?")) {
+            delete.setString(1, dateKey);
+            delete.setString(2, partyName);
+            delete.executeUpdate();
+        }
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO day_operation_totals "
+                + "(slip_date, party_name, shortcut_id, amount) VALUES (?, ?, ?, ?)")) {
+            for (Map.Entry<String, Double> amount : amounts.entrySet()) {
+                insert.setString(1, dateKey);
+                insert.setString(2, partyName);
+                insert.setString(3, amount.getKey());
+                insert.setDouble(4, amount.getValue());
+                insert.executeUpdate();
+            }
+        }
+    }
+
+    private static SlipTotals readTotals(ResultSet row) throws SQLException {
+        SlipTotals totals = new SlipTotals();
+        totals.setTruckCount(row.getInt("truck_count"));
+        totals.setMainWeight(row.getDouble("main_weight"));
+        totals.setSubWeight(row.getDouble("sub_weight"));
+        totals.setTotalBeforeGst(row.getDouble("total_before_gst"));
+        totals.setGst(row.getDouble("gst"));
+        totals.setFinalAmount(row.getDouble("final_amount"));
+        return totals;
+    }
+
+    private static void readOperationTotals(PreparedStatement statement, DaySummary summary) throws SQLException {
+        try (ResultSet rows = statement.executeQuery()) {
+            while (rows.next()) {
+                summary.getOperations().computeIfAbsent(rows.getString("party_name"), k -> new HashMap<>())
+                        .put(rows.getString("shortcut_id"), rows.getDouble("amount"));
+            }
+        }
+    }
+
+    /** Recomputes every total from the slip rows. Call inside a write. */
+    private void rebuildTotals() throws Exception {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DELETE FROM day_totals");
+            statement.execute("DELETE FROM day_operation_totals");
+        }
+        Map<String, Map<String, List<SubSlip>>> subSlips = new TreeMap<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery(
+                     "SELECT slip_date, party_key, slip_id, body FROM sub_slips ORDER BY seq")) {
+            while (rows.next()) {
+                subSlips.computeIfAbsent(rows.getString("slip_date"), k -> new HashMap<>())
+                        .computeIfAbsent(rows.getString("party_key"), k -> new ArrayList<>())
+                        .add(readSubSlip(rows));
+            }
+        }
+        for (Map.Entry<String, Map<String, List<SubSlip>>> day : subSlips.entrySet()) {
+            for (Map.Entry<String, List<SubSlip>> party : day.getValue().entrySet()) {
+                writeDayTotals(day.getKey(), party.getKey(), DaySummary.totalsOf(party.getValue()));
+            }
+        }
+        try (Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery("SELECT slip_date, party_name, body FROM main_slips")) {
+            while (rows.next()) {
+                MainSlip mainSlip = mainSlipReader.readValue(rows.getString("body"));
+                writeOperationTotals(rows.getString("slip_date"), rows.getString("party_name"),
+                        DaySummary.operationTotalsOf(mainSlip));
+            }
+        }
+    }
+
+    // ---------- Parties and shortcuts ----------
+
+    @Override
+    public List<Party> loadParties() {
+        try {
+            return query(() -> {
+                List<Party> parties = new ArrayList<>();
+                try (Statement statement = reader.createStatement();
+                     ResultSet rows = statement.executeQuery("SELECT id, name FROM parties ORDER BY position")) {
+                    while (rows.next()) parties.add(new Party(rows.getInt("id"), rows.getString("name")));
+                }
+                return parties;
+            });
+        } catch (Exception e) {
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> saveParties(List<Party> parties) {
+        return storageExecutor.submitWrite(PARTY_WRITE_KEY, () -> inTransaction(() -> writeParties(parties)));
+    }
+
+    private void writeParties(List<Party> parties) throws SQLException {
+        try (Statement clear = connection.createStatement();
+             PreparedStatement insert = connection.prepareStatement(
+                     "INSERT INTO parties (position, id, name) VALUES (?, ?, ?)")) {
+            clear.execute("DELETE FROM parties");
+            for (int i = 0; i < parties.size(); i++) {
+                insert.setInt(1, i);
+                insert.setInt(2, parties.get(i).getId());
+                insert.setString(3, parties.get(i).getName());
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+    }
+
+    @Override
+    public List<Shortcut> loadShortcuts() {
+        try {
+            return query(() -> {
+                List<Shortcut> shortcuts = new ArrayList<>();
+                try (Statement statement = reader.createStatement();
+                     ResultSet rows = statement.executeQuery("SELECT alphabet, description, operation, "
+                             + "show_in_purchase_book FROM shortcuts ORDER BY position")) {
+                    while (rows.next()) {
+                        shortcuts.add(new Shortcut(rows.getString("alphabet"), rows.getString("description"),
+                                rows.getString("operation"), rows.getInt("show_in_purchase_book") != 0));
+                    }
+                }
+                return shortcuts;
+            });
+        } catch (Exception e) {
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> saveShortcuts(List<Shortcut> shortcuts) {
+        return storageExecutor.submitWrite(SHORTCUT_WRITE_KEY, () -> inTransaction(() -> writeShortcuts(shortcuts)));
+    }
+
+    private void writeShortcuts(List<Shortcut> shortcuts) throws SQLException {
+        try (Statement clear = connection.createStatement();
+             PreparedStatement insert = connection.prepareStatement("INSERT INTO shortcuts "
+                     + "(position, alphabet, description, operation, show_in_purchase_book) VALUES (?, ?, ?, ?, ?)")) {
+            clear.execute("DELETE FROM shortcuts");
+            for (int i = 0; i < shortcuts.size(); i++) {
+                Shortcut shortcut = shortcuts.get(i);
+                insert.setInt(1, i);
+                insert.setString(2, shortcut.getAlphabet());
+                insert.setString(3, shortcut.getDescription());
+                insert.setString(4, shortcut.getOperation());
+                insert.setInt(5, shortcut.isShowInPurchaseBook() ? 1 : 0);
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+    }
+
+    // ---------- Sub-slips ----------
+
+    @Override
+    public List<LocalDate> getDates() {
+        return query(() -> {
+            List<LocalDate> dates = new ArrayList<>();
+            try (Statement statement = reader.createStatement();
+                 ResultSet rows = statement.executeQuery("SELECT DISTINCT slip_date FROM sub_slips")) {
+                while (rows.next()) dates.add(LocalDate.parse(rows.getString(1)));
+            }
+            return dates;
+        });
+    }
+
+    @Override
+    public List<String> getPartyKeys(LocalDate date) {
+        return query(() -> {
+            List<String> partyKeys = new ArrayList<>();
+            try (PreparedStatement statement = reader.prepareStatement(
+                    "SELECT DISTINCT party_key FROM sub_slips WHERE slip_date = ?")) {
+                statement.setString(1, date.toString());
+                try (ResultSet rows = statement.executeQuery()) {
+                    while (rows.next()) partyKeys.add(rows.getString(1));
+                }
+            }
+            return partyKeys;
+        });
+    }
+
+    @Override
+    public List<SubSlip> getSubSlips(LocalDate date, String partyKey) {
+        return query(() -> {
+            try (PreparedStatement statement = reader.prepareStatement(
+                    "SELECT slip_id, body FROM sub_slips WHERE slip_date = ? AND party_key = ? ORDER BY seq")) {
+                statement.setString(1, date.toString());
+                statement.setString(2, partyKey);
+                return readSubSlips(statement);
+            }
+        });
+    }
+
+    @Override
+    public Map<String, List<SubSlip>> getSubSlipsByParty(LocalDate date) {
+        return query(() -> {
+            Map<String, List<SubSlip>> byParty = new HashMap<>();
+            try (PreparedStatement statement = reader.prepareStatement(
+                    "SELECT party_key, slip_id, body FROM sub_slips WHERE slip_date = ? ORDER BY seq")) {
+                statement.setString(1, date.toString());
+                try (ResultSet rows = statement.executeQuery()) {
+                    while (rows.next()) {
+                        byParty.computeIfAbsent(rows.getString("party_key"), k -> new ArrayList<>())
+                                .add(readSubSlip(rows));
+                    }
+                }
+            }
+            return byParty;
+        });
+    }
+
+    @Override
+    public boolean hasSubSlipsForParty(String partyKey) {
+        return query(() -> {
+            try (PreparedStatement statement = reader.prepareStatement(
+                    "SELECT 1 FROM sub_slips WHERE party_key = ? LIMIT 1")) {
+                statement.setString(1, partyKey);
+                try (ResultSet rows = statement.executeQuery()) {
+                    return rows.next();
+                }
+            }
+        });
+    }
+
+    @Override
+    public SortedMap<LocalDate, List<SubSlip>> getSubSlipHistory(String partyKey) {
+        return query(() -> {
+            SortedMap<LocalDate, List<SubSlip>> history = new TreeMap<>();
+            // Served by the (party_key, slip_date) index
+            try (PreparedStatement statement = reader.prepareStatement(
+                    "SELECT slip_date, slip_id, body FROM sub_slips WHERE party_key = ? ORDER BY slip_date, seq")) {
+                statement.setString(1, partyKey);
+                try (ResultSet rows = statement.executeQuery()) {
+                    while (rows.next()) {
+                        history.computeIfAbsent(LocalDate.parse(rows.getString("slip_date")), k -> new ArrayList<>())
+                                .add(readSubSlip(rows));
+                    }
+                }
+            }
+            return history;
+        });
+    }
+
+    /**
+     * Dates come from one query on the (slip_date, party_key) index; each
+     * date's rows are then queried when the stream reaches it, so no cursor
+     * is held open between elements.
+     */
+    @Override
+    public Stream<DatedSubSlip> streamSubSlips(LocalDate from, LocalDate to, Set<String> partyKeys) {
+        if (partyKeys != null && partyKeys.isEmpty()) return Stream.empty();
+        String partyClause = partyKeys == null ? ""
+                : " AND party_key IN (" + String.join(",", Collections.nCopies(partyKeys.size(), "?")) + ")";
+        List<String> partyArgs = partyKeys == null ? List.of() : new ArrayList<>(partyKeys);
+
+        List<String> dateKeys = query(() -> {
+            List<String> keys = new ArrayList<>();
+            try (PreparedStatement statement = reader.prepareStatement(
+                    "SELECT DISTINCT slip_date FROM sub_slips WHERE slip_date BETWEEN ? AND ?" + partyClause
+                            + " ORDER BY slip_date")) {
+                statement.setString(1, from.toString());
+                statement.setString(2, to.toString());
+                for (int i = 0; i < partyArgs.size(); i++) statement.setString(3 + i, partyArgs.get(i));
+                try (ResultSet rows = statement.executeQuery()) {
+                    while (rows.next()) keys.add(rows.getString(1));
+                }
+            }
+            return keys;
+        });
+        return dateKeys.stream().flatMap(dateKey -> query(() -> {
+            List<DatedSubSlip> dated = new ArrayList<>();
+            LocalDate date = LocalDate.parse(dateKey);
+            try (PreparedStatement statement = reader.prepareStatement(
+                    "SELECT party_key, slip_id, body FROM sub_slips WHERE slip_date = ?" + partyClause
+                            + " ORDER BY party_key, seq")) {
+                statement.setString(1, dateKey);
+                for (int i = 0; i < partyArgs.size(); i++) statement.setString(2 + i, partyArgs.get(i));
+                try (ResultSet rows = statement.executeQuery()) {
+                    while (rows.next()) dated.add(new DatedSubSlip(date, rows.getString("party_key"), readSubSlip(rows)));
+                }
+            }
+            return dated;
+        }).stream());
+    }
+
+    @Override
+    public List<TruckSighting> findTruck(String truckNumber, LocalDate from) {
+        String truckKey = TruckIndex.normalize(truckNumber);
+        if (truckKey == null) return new ArrayList<>();
+        return query(() -> {
+            List<TruckSighting> sightings = new ArrayList<>();
+            try (PreparedStatement statement = reader.prepareStatement(
+                    "SELECT slip_date, party_key, slip_id FROM sub_slips WHERE truck_key = ? AND slip_date >= ? "
+                            + "ORDER BY slip_date, seq")) {
+                statement.setString(1, truckKey);
+                statement.setString(2, from.toString());
+                try (ResultSet rows = statement.executeQuery()) {
+                    while (rows.next()) {
+                        sightings.add(TruckIndex.sighting(rows.getString("slip_date"), rows.getString("party_key"),
+                                rows.getString("slip_id")));
+                    }
+                }
+            }
+            return sightings;
+        });
+    }
+
+    @Override
+    public DaySummary getDaySummary(LocalDate date) {
+        return query(() -> {
+            DaySummary summary = new DaySummary();
+            try (PreparedStatement statement = reader.prepareStatement(
+                    "SELECT * FROM day_totals WHERE slip_date = ?")) {
+                statement.setString(1, date.toString());
+                try (ResultSet rows = statement.executeQuery()) {
+                    while (rows.next()) summary.getSubSlips().put(rows.getString("party_key"), readTotals(rows));
+                }
+            }
+            try (PreparedStatement statement = reader.prepareStatement(
+                    "SELECT party_name, shortcut_id, amount FROM day_operation_totals WHERE slip_date = ?")) {
+                statement.setString(1, date.toString());
+                readOperationTotals(statement, summary);
+            }
+            return summary;
+        });
+    }
+
+    /**
+     * Summed from the day totals with a range scan of their primary key; a
+     * month is at most a few hundred rows, so there are no month tables.
+     */
+    @Override
+    public DaySummary getRangeSummary(LocalDate from, LocalDate to) {
+        return query(() -> {
+            DaySummary summary = new DaySummary();
+            try (PreparedStatement statement = reader.prepareStatement("SELECT party_key, "
+                    + "SUM(truck_count) AS truck_count, SUM(main_weight) AS main_weight, "
+                    + "SUM(sub_weight) AS sub_weight, SUM(total_before_gst) AS total_before_gst, SUM(gst) AS gst, "
+                    + "SUM(final_amount) AS final_amount FROM day_totals WHERE slip_date BETWEEN ? AND ? "
+                    + "GROUP BY party_key")) {
+                statement.setString(1, from.toString());
+                statement.setString(2, to.toString());
+                try (ResultSet rows = statement.executeQuery()) {
+                    while (rows.next()) summary.getSubSlips().put(rows.getString("party_key"), readTotals(rows));
+                }
+            }
+            try (PreparedStatement statement = reader.prepareStatement("SELECT party_name, shortcut_id, "
+                    + "SUM(amount) AS amount FROM day_operation_totals WHERE slip_date BETWEEN ? AND ? "
+                    + "GROUP BY party_name, shortcut_id")) {
+                statement.setString(1, from.toString());
+                statement.setString(2, to.toString());
+                readOperationTotals(statement, summary);
+            }
+            return summary;
+        });
+    }
+
+    /**
+     * Read in one transaction, so every table is seen as of the same commit.
+     * The version is taken first, so the rows are at least that new. The rows
+     * are copied out, so the snapshot holds nothing of the connection.
+     */
+    @Override
+    public SlipSnapshot snapshot(LocalDate from, LocalDate to) {
+        return query(() -> {
+            long seenVersion = version;
+            TreeMap<String, DayShard> days = new TreeMap<>();
+            try (PreparedStatement statement = reader.prepareStatement(
+                    "SELECT slip_date, party_key, slip_id, body FROM sub_slips WHERE slip_date BETWEEN ? AND ? "
+                            + "ORDER BY seq")) {
+                statement.setString(1, from.toString());
+                statement.setString(2, to.toString());
+                try (ResultSet rows = statement.executeQuery()) {
+                    while (rows.next()) {
+                        snapshotDay(days, rows).getSubSlips()
+                                .computeIfAbsent(rows.getString("party_key"), k -> new ArrayList<>())
+                                .add(readSubSlip(rows));
+                    }
+                }
+            }
+            try (PreparedStatement statement = reader.prepareStatement(
+                    "SELECT slip_date, party_name, body FROM main_slips WHERE slip_date BETWEEN ? AND ?")) {
+                statement.setString(1, from.toString());
+                statement.setString(2, to.toString());
+                try (ResultSet rows = statement.executeQuery()) {
+                    while (rows.next()) {
+                        snapshotDay(days, rows).getMainSlips().put(rows.getString("party_name"),
+                                mainSlipReader.readValue(rows.getString("body")));
+                    }
+                }
+            }
+            try (PreparedStatement statement = reader.prepareStatement(
+                    "SELECT * FROM day_totals WHERE slip_date BETWEEN ? AND ?")) {
+                statement.setString(1, from.toString());
+                statement.setString(2, to.toString());
+                try (ResultSet rows = statement.executeQuery()) {
+                    while (rows.next()) {
+                        snapshotDay(days, rows).getTotals().getSubSlips()
+                                .put(rows.getString("party_key"), readTotals(rows));
+                    }
+                }
+            }
+            try (PreparedStatement statement = reader.prepareStatement(
+                    "SELECT slip_date, party_name, shortcut_id, amount FROM day_operation_totals "
+                            + "WHERE slip_date BETWEEN ? AND ?")) {
+                statement.setString(1, from.toString());
+                statement.setString(2, to.toString());
+                try (ResultSet rows = statement.executeQuery()) {
+                    while (rows.next()) {
+                        snapshotDay(days, rows).getTotals().getOperations()
+                                .computeIfAbsent(rows.getString("party_name"), k -> new HashMap<>())
+                                .put(rows.getString("shortcut_id"), rows.getDouble("amount"));
+                    }
+                }
+            }
+            return new SlipSnapshot(seenVersion, days);
+        });
+    }
+
+    private static DayShard snapshotDay(Map<String, DayShard> days, ResultSet row) throws SQLException {
+        return days.computeIfAbsent(row.getString("slip_date"), k -> {
+            DayShard shard = new DayShard();
+            shard.setTotals(new DaySummary());
+            return shard;
+        });
+    }
+
+    @Override
+    public Map<String, Map<String, List<SubSlip>>> copySubSlips() {
+        return query(() -> {
+            Map<String, Map<String, List<SubSlip>>> copy = new TreeMap<>();
+            try (Statement statement = reader.createStatement();
+                 ResultSet rows = statement.executeQuery(
+                         "SELECT slip_date, party_key, slip_id, body FROM sub_slips ORDER BY seq")) {
+                while (rows.next()) {
+                    copy.computeIfAbsent(rows.getString("slip_date"), k -> new HashMap<>())
+                            .computeIfAbsent(rows.getString("party_key"), k -> new ArrayList<>())
+                            .add(readSubSlip(rows));
+                }
+            }
+            return copy;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> addSubSlip(LocalDate date, String partyKey, SubSlip slip) {
+        try {
+            // Serialized now; the caller may go on editing the object
+            String body = writer.writeValueAsString(slip);
+            String id = slip.getId();
+            String truckNumber = slip.getTruckNumber();
+            double finalAmount = slip.getFinalAmount();
+            return write(() -> {
+                insertSubSlip(date.toString(), partyKey, id, truckNumber, finalAmount, body);
+                refreshDayTotals(date.toString(), partyKey);
+            });
+        } catch (Exception e) {
+            e.printStackTrace();
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /** A slip whose ID is already stored is left alone, as the JSON backend does. */
+    private void insertSubSlip(String dateKey, String partyKey, String id, String truckNumber, double finalAmount,
+                               String body) throws SQLException {
+        try (PreparedStatement insert = connection.prepareStatement("INSERT OR IGNORE INTO sub_slips "
+                + "(slip_date, party_key, slip_id, truck_number, truck_key, final_amount, body) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?)")) {
+            insert.setString(1, dateKey);
+            insert.setString(2, partyKey);
+            insert.setString(3, id);
+            insert.setString(4, truckNumber);
+            insert.setString(5, TruckIndex.normalize(truckNumber));
+            insert.setDouble(6, finalAmount);
+            insert.setString(7, body);
+            insert.executeUpdate();
+        }
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteSubSlips(LocalDate date, String partyKey, List<SubSlip> slips) {
+        // Same match as the JSON backend: truck number and final amount within a paisa
+        List<SubSlip> toDelete = new ArrayList<>(slips);
+        return write(() -> {
+            int removed = 0;
+            try (PreparedStatement delete = connection.prepareStatement("DELETE FROM sub_slips WHERE slip_date = ? "
+                    + "AND party_key = ? AND truck_number = ? AND ABS(final_amount - ?) < 0.01")) {
+                for (SubSlip slip : toDelete) {
+                    delete.setString(1, date.toString());
+                    delete.setString(2, partyKey);
+                    delete.setString(3, slip.getTruckNumber());
+                    delete.setDouble(4, slip.getFinalAmount());
+                    removed += delete.executeUpdate();
+                }
+            }
+            if (removed == 0) {
+                System.out.println("No slips found for party " + partyKey + " on " + date);
+            } else {
+                refreshDayTotals(date.toString(), partyKey);
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteSubSlipsById(LocalDate date, List<String> ids) {
+        List<String> toDelete = List.copyOf(ids);
+        return write(() -> {
+            // Parties whose totals change
+            Set<String> partyKeys = new HashSet<>();
+            try (PreparedStatement select = connection.prepareStatement(
+                    "SELECT party_key FROM sub_slips WHERE slip_id = ? AND slip_date = ?")) {
+                for (String id : toDelete) {
+                    select.setString(1, id);
+                    select.setString(2, date.toString());
+                    try (ResultSet rows = select.executeQuery()) {
+                        if (rows.next()) partyKeys.add(rows.getString("party_key"));
+                    }
+                }
+            }
+            int removed = 0;
+            try (PreparedStatement delete = connection.prepareStatement(
+                    "DELETE FROM sub_slips WHERE slip_id = ? AND slip_date = ?")) {
+                for (String id : toDelete) {
+                    delete.setString(1, id);
+                    delete.setString(2, date.toString());
+                    removed += delete.executeUpdate();
+                }
+            }
+            if (removed == 0) System.out.println("No slips found with the given IDs on " + date);
+            for (String partyKey : partyKeys) refreshDayTotals(date.toString(), partyKey);
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteParty(LocalDate date, String partyKey) {
+        return write(() -> {
+            try (PreparedStatement delete = connection.prepareStatement(
+                    "DELETE FROM sub_slips WHERE slip_date = ? AND party_key = ?")) {
+                delete.setString(1, date.toString());
+                delete.setString(2, partyKey);
+                if (delete.executeUpdate() == 0) {
+                    System.out.println("No slips found for party " + partyKey + " on " + date);
+                }
+            }
+            deleteDayTotals(date.toString(), partyKey);
+        });
+    }
+
+    // ---------- Main slips ----------
+
+    @Override
+    public MainSlip getMainSlip(LocalDate date, String partyName) {
+        return query(() -> {
+            try (PreparedStatement statement = reader.prepareStatement(
+                    "SELECT body FROM main_slips WHERE slip_date = ? AND party_name = ?")) {
+                statement.setString(1, date.toString());
+                statement.setString(2, partyName);
+                try (ResultSet rows = statement.executeQuery()) {
+                    return rows.next() ? mainSlipReader.<MainSlip>readValue(rows.getString("body")) : null;
+                }
+            }
+        });
+    }
+
+    @Override
+    public Map<String, MainSlip> getMainSlips(LocalDate date) {
+        return query(() -> {
+            Map<String, MainSlip> mainSlips = new HashMap<>();
+            try (PreparedStatement statement = reader.prepareStatement(
+                    "SELECT party_name, body FROM main_slips WHERE slip_date = ?")) {
+                statement.setString(1, date.toString());
+                try (ResultSet rows = statement.executeQuery()) {
+                    while (rows.next()) {
+                        mainSlips.put(rows.getString("party_name"), mainSlipReader.readValue(rows.getString("body")));
+                    }
+                }
+            }
+            return mainSlips;
+        });
+    }
+
+    @Override
+    public Map<String, Map<String, MainSlip>> copyMainSlips() {
+        return query(() -> {
+            Map<String, Map<String, MainSlip>> copy = new TreeMap<>();
+            try (Statement statement = reader.createStatement();
+                 ResultSet rows = statement.executeQuery("SELECT slip_date, party_name, body FROM main_slips")) {
+                while (rows.next()) {
+                    copy.computeIfAbsent(rows.getString("slip_date"), k -> new HashMap<>())
+                            .put(rows.getString("party_name"), mainSlipReader.readValue(rows.getString("body")));
+                }
+            }
+            return copy;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> putMainSlip(MainSlip mainSlip) {
+        try {
+            String dateKey = mainSlip.getDate().toString();
+            String partyName = mainSlip.getPartyName();
+            String body = writer.writeValueAsString(mainSlip);
+            Map<String, Double> operationTotals = DaySummary.operationTotalsOf(mainSlip);
+            return write(() -> upsertMainSlip(dateKey, partyName, body, operationTotals));
+        } catch (Exception e) {
+            e.printStackTrace();
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private void upsertMainSlip(String dateKey, String partyName, String body, Map<String, Double> operationTotals)
+            throws SQLException {
+        try (PreparedStatement upsert = connection.prepareStatement(
+                "INSERT OR REPLACE INTO main_slips (slip_date, party_name, body) VALUES (?, ?, ?)")) {
+            upsert.setString(1, dateKey);
+            upsert.setString(2, partyName);
+            upsert.setString(3, body);
+            upsert.executeUpdate();
+        }
+        writeOperationTotals(dateKey, partyName, operationTotals);
+    }
+
+    // ---------- Reset ----------
+
+    @Override
+    public void deleteAllSlips() {
+        write(() -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("DELETE FROM sub_slips");
+                statement.execute("DELETE FROM main_slips");
+                statement.execute("DELETE FROM day_totals");
+                statement.execute("DELETE FROM day_operation_totals");
+            }
+        }).join();
+        System.out.println("Deleted: slip tables in slipplus.db");
+    }
+
+    @Override
+    public void close() {
+        storageExecutor.close();
+        try {
+            synchronized (reader) {
+                reader.close();
+            }
+            connection.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.slipplus.core;
+
+import com.slipplus.models.DatedSubSlip;
+import com.slipplus.models.MainSlip;
+import com.slipplus.models.Party;
+import com.slipplus.models.Shortcut;
+import com.slipplus.models.SubSlip;
+import com.slipplus.models.TruckSighting;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+/**
+ * Where StorageManager keeps its data.
+ *
+ * Sub-slips are keyed by the party key they were saved under (the party ID
+ * as a string) and main slips by party name, as the screens expect. Reads
+ * always reflect every mutation issued before them; mutations may finish on
+ * disk later, and the returned future completes once they have.
+ */
+interface StorageBackend {
+
+    // ---------- Parties and shortcuts ----------
+
+    List<Party> loadParties();
+
+    CompletableFuture<Void> saveParties(List<Party> parties);
+
+    List<Shortcut> loadShortcuts();
+
+    CompletableFuture<Void> saveShortcuts(List<Shortcut> shortcuts);
+
+    // ---------- Sub-slips ----------
+
+    /** Dates with at least one sub-slip, in no particular order. */
+    List<LocalDate> getDates();
+
+    List<String> getPartyKeys(LocalDate date);
+
+    List<SubSlip> getSubSlips(LocalDate date, String partyKey);
+
+    Map<String, List<SubSlip>> getSubSlipsByParty(LocalDate date);
+
+    boolean hasSubSlipsForParty(String partyKey);
+
+    /** All of a party's sub-slips, by date, oldest first. */
+    SortedMap<LocalDate, List<SubSlip>> getSubSlipHistory(String partyKey);
+
+    /**
+     * Sub-slips from..to, both ends included, in date order and by party key
+     * within a date, fetched a date at a time as the stream is consumed.
+     * Null partyKeys means every party.
+     */
+    Stream<DatedSubSlip> streamSubSlips(LocalDate from, LocalDate to, Set<String> partyKeys);
+
+    /**
+     * Sub-slips the truck number was entered on, on or after a date, oldest
+     * first. Truck numbers match regardless of case, spaces and punctuation.
+     */
+    List<TruckSighting> findTruck(String truckNumber, LocalDate from);
+
+    /** Precomputed totals of a date; a copy the caller may modify. */
+    DaySummary getDaySummary(LocalDate date);
+
+    /** Totals over a date range, both ends included, without reading slips. */
+    DaySummary getRangeSummary(LocalDate from, LocalDate to);
+
+    /**
+     * Slips, main slips and totals of the dates from..to, both ends
+     * included, as they are now. Later writes neither show up in it nor
+     * wait for it.
+     */
+    SlipSnapshot snapshot(LocalDate from, LocalDate to);
+
+    /** Everything, in the legacy sub_slips.json shape: date → party key → slips. */
+    Map<String, Map<String, List<SubSlip>>> copySubSlips();
+
+    /** Saves the slip; it must already carry its ID. */
+    CompletableFuture<Void> addSubSlip(LocalDate date, String partyKey, SubSlip slip);
+
+    /**
+     * Deletes the party's slips on that date that match any of the given
+     * ones by truck number and final amount.
+     */
+    CompletableFuture<Void> deleteSubSlips(LocalDate date, String partyKey, List<SubSlip> slips);
+
+    /** Deletes the slips with these IDs from that date, whichever party they are under. */
+    CompletableFuture<Void> deleteSubSlipsById(LocalDate date, List<String> ids);
+
+    /** Deletes all of a party's slips on that date. */
+    CompletableFuture<Void> deleteParty(LocalDate date, String partyKey);
+
+    // ---------- Main slips ----------
+
+    MainSlip getMainSlip(LocalDate date, String partyName);
+
+    Map<String, MainSlip> getMainSlips(LocalDate date);
+
+    /** Everything, in the legacy main_slips.json shape: date → party name → main slip. */
+    Map<String, Map<String, MainSlip>> copyMainSlips();
+
+    CompletableFuture<Void> putMainSlip(MainSlip mainSlip);
+
+    // ---------- Reset ----------
+
+    /** Deletes all slip data, keeping parties and shortcuts; blocks until done. */
+    void deleteAllSlips() throws Exception;
+
+    /**
+     * Finishes the writes queued so far and stops the backend's threads. The
+     * app keeps its backend until the JVM exits; this is for one opened for
+     * a while, such as the source of an import. It must not be used afterwards.
+     */
+    void close();
+}
@@ -0,0 +1,135 @@
+package com.slipplus.core;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single writer thread for everything StorageManager puts on disk.
+ *
+ * Tasks run one at a time in submission order, so journal records land in
+ * the order the mutations were applied in memory and two saves can never
+ * interleave a read-modify-write. Whole-file writes submitted under the same
+ * key are merged while they wait: only the latest content is written and all
+ * callers share one future.
+ */
+class StorageExecutor {
+
+    interface StorageTask {
+        void run() throws Exception;
+    }
+
+    interface StorageQuery<T> {
+        T run() throws Exception;
+    }
+
+    private static class PendingWrite {
+        private StorageTask task;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        PendingWrite(StorageTask task) {
+            this.task = task;
+        }
+    }
+
+    private final ExecutorService executor;
+    private final Thread shutdownHook;
+    private final Map<String, PendingWrite> pendingWrites = new HashMap<>();
+
+    StorageExecutor() {
+        this("slipplus-storage");
+    }
+
+    StorageExecutor(String threadName) {
+        executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, threadName);
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Daemon thread, so drain the queue explicitly when the JVM goes down
+        shutdownHook = new Thread(this::shutdown, threadName + "-flush");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    CompletableFuture<Void> submit(StorageTask task) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> run(task, future));
+        } catch (RejectedExecutionException e) {
+            // Only once the JVM is going down; whatever the task would have written is still in the journal
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /** Queues a whole-file write, replacing a not-yet-started write with the same key. */
+    synchronized CompletableFuture<Void> submitWrite(String key, StorageTask task) {
+        PendingWrite pending = pendingWrites.get(key);
+        if (pending != null) {
+            pending.task = task;
+            return pending.future;
+        }
+
+        PendingWrite write = new PendingWrite(task);
+        pendingWrites.put(key, write);
+        executor.execute(() -> {
+            StorageTask latest;
+            synchronized (this) {
+                pendingWrites.remove(key);
+                latest = write.task;
+            }
+            run(latest, write.future);
+        });
+        return write.future;
+    }
+
+    /** Blocks until a queued write for the key (if any) is on disk. */
+    void awaitWrite(String key) {
+        PendingWrite pending;
+        synchronized (this) {
+            pending = pendingWrites.get(key);
+        }
+        if (pending != null) {
+            try {
+                pending.future.join();
+            } catch (Exception e) {
+                // Already reported by the writer thread
+            }
+        }
+    }
+
+    private void run(StorageTask task, CompletableFuture<Void> future) {
+        try {
+            task.run();
+            future.complete(null);
+        } catch (Exception e) {
+            e.printStackTrace();
+            future.completeExceptionally(e);
+        }
+    }
+
+    /** Runs what is queued, then stops the thread; nothing may be submitted afterwards. */
+    void close() {
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e) {
+            // The JVM is already going down and the hook is draining the queue
+        }
+        shutdown();
+    }
+
+    private void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                System.err.println("Storage writes still pending at exit");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
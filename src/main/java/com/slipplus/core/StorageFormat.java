@@ -0,0 +1,143 @@
+package com.slipplus.core;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+
+import java.io.File;
+import java.util.Locale;
+import java.util.TreeMap;
+
+/**
+ * Encoding of the day shard files.
+ *
+ * JSON stays the default so the data can be read and fixed by hand. Smile
+ * is Jackson's binary JSON: the same object model, but doubles are stored
+ * as raw bytes and field names are back-referenced, so shards are smaller
+ * and parse faster. Pick it with -Dslipplus.storage.format=smile; shards
+ * already on disk in the other format keep loading and are rewritten in
+ * the configured one at the next checkpoint that touches them.
+ *
+ * Also the one place mappers are set up. Readers and writers are built once
+ * per type and kept, so no call resolves a type again, and Blackbird
+ * replaces reflective getter and setter calls with generated lambdas.
+ * Files are written compact; -Dslipplus.storage.pretty=true indents the
+ * JSON ones for reading by hand.
+ */
+enum StorageFormat {
+
+    JSON("json", new JsonFactory()),
+    SMILE("smile", new SmileFactory());
+
+    static final String PROPERTY = "slipplus.storage.format";
+    static final String PRETTY_PROPERTY = "slipplus.storage.pretty";
+    private static final boolean PRETTY = Boolean.getBoolean(PRETTY_PROPERTY);
+
+    private final String extension;
+    private final ObjectMapper mapper;
+    private final ObjectReader shardReader;
+    private final ObjectWriter shardWriter;
+    private final ObjectReader totalsReader;
+    // Month archives: date → shard
+    private final ObjectReader archiveReader;
+    private final ObjectWriter archiveWriter;
+
+    StorageFormat(String extension, JsonFactory factory) {
+        this.extension = extension;
+        this.mapper = configure(new ObjectMapper(factory));
+        this.shardReader = mapper.readerFor(DayShard.class);
+        this.shardWriter = writerFor(mapper, DayShard.class);
+        this.totalsReader = mapper.readerFor(DaySummary.class);
+        TypeReference<TreeMap<String, DayShard>> archiveType = new TypeReference<>() {};
+        this.archiveReader = mapper.readerFor(archiveType);
+        // Compressed anyway, so never indented
+        this.archiveWriter = mapper.writerFor(archiveType);
+    }
+
+    private static ObjectMapper configure(ObjectMapper mapper) {
+        mapper.registerModule(new JavaTimeModule());
+        mapper.registerModule(new SlipJsonModule());
+        mapper.registerModule(new BlackbirdModule());
+        mapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        return mapper;
+    }
+
+    /** Writer for a file of the given type: compact unless pretty output is asked for. */
+    static ObjectWriter writerFor(ObjectMapper mapper, Class<?> type) {
+        return pretty(mapper.writerFor(type));
+    }
+
+    static ObjectWriter writerFor(ObjectMapper mapper, TypeReference<?> type) {
+        return pretty(mapper.writerFor(type));
+    }
+
+    private static ObjectWriter pretty(ObjectWriter writer) {
+        // Only text formats can be indented
+        return PRETTY && !writer.getFactory().canHandleBinaryNatively() ? writer.withDefaultPrettyPrinter() : writer;
+    }
+
+    static StorageFormat configured() {
+        String value = System.getProperty(PROPERTY, JSON.extension);
+        StorageFormat format = forExtension(value);
+        if (format != null) return format;
+        System.err.println("Unknown " + PROPERTY + " '" + value + "', using json");
+        return JSON;
+    }
+
+    /** Format named by its extension, such as "smile", or null if there is none. */
+    static StorageFormat forExtension(String value) {
+        for (StorageFormat format : values()) {
+            if (format.extension.equalsIgnoreCase(value.trim())) return format;
+        }
+        return null;
+    }
+
+    /** Format of a file going by its extension, or null if it is neither. */
+    static StorageFormat of(File file) {
+        String name = file.getName().toLowerCase(Locale.ROOT);
+        for (StorageFormat format : values()) {
+            if (name.endsWith(format.suffix())) return format;
+        }
+        return null;
+    }
+
+    String extension() {
+        return extension;
+    }
+
+    /** File name suffix including the dot. */
+    String suffix() {
+        return "." + extension;
+    }
+
+    ObjectMapper mapper() {
+        return mapper;
+    }
+
+    ObjectReader shardReader() {
+        return shardReader;
+    }
+
+    ObjectWriter shardWriter() {
+        return shardWriter;
+    }
+
+    /** For the totals at the head of a shard, read on their own. */
+    ObjectReader totalsReader() {
+        return totalsReader;
+    }
+
+    ObjectReader archiveReader() {
+        return archiveReader;
+    }
+
+    ObjectWriter archiveWriter() {
+        return archiveWriter;
+    }
+}
@@ -0,0 +1,118 @@
+package com.slipplus.core;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Rewrites the day shards and month archives from one storage format to
+ * the other.
+ *
+ * Usage, with the application closed:
+ *   StorageFormatConverter smile [dataDir]   all shards and archives to Smile
+ *   StorageFormatConverter json [dataDir]    all shards and archives back to JSON
+ *   StorageFormatConverter dump <shard>      print one shard as JSON
+ *
+ * Converting is optional: the application reads shards and archives in
+ * either format and moves a date to the configured format the next time it
+ * is written.
+ */
+public class StorageFormatConverter {
+
+    private static final String DEFAULT_DATA_DIR = "src/main/resources/data";
+
+    private static final String USAGE = "Usage: StorageFormatConverter <json|smile> [dataDir] | dump <shardFile>";
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0 || (args[0].equals("dump") && args.length < 2)) {
+            System.out.println(USAGE);
+            return;
+        }
+        if (args[0].equals("dump")) {
+            File file = new File(args[1]);
+            StorageFormat format = StorageFormat.of(file);
+            if (format == null) {
+                System.err.println("Not a shard file: " + file + " (expected a .json or .smile file)");
+                System.out.println(USAGE);
+                return;
+            }
+            DayShard shard = format.shardReader().readValue(file);
+            System.out.println(StorageFormat.JSON.mapper().writerWithDefaultPrettyPrinter().writeValueAsString(shard));
+            return;
+        }
+
+        StorageFormat target = StorageFormat.forExtension(args[0]);
+        if (target == null) {
+            System.err.println("Unknown format '" + args[0] + "'");
+            System.out.println(USAGE);
+            return;
+        }
+        File dataDir = new File(args.length > 1 ? args[1] : DEFAULT_DATA_DIR);
+        int converted = convertShards(new File(dataDir, "days"), target);
+        int archives = convertArchives(new File(dataDir, "archive"), target);
+        System.out.println("Converted " + converted + " shards and " + archives + " archives to " + target.extension());
+    }
+
+    /** Converts every shard not already in the target format; returns how many were converted. */
+    static int convertShards(File daysDir, StorageFormat target) throws IOException {
+        File[] shardFiles = daysDir.listFiles(file -> {
+            StorageFormat format = StorageFormat.of(file);
+            return format != null && format != target;
+        });
+        if (shardFiles == null) return 0;
+
+        int converted = 0;
+        for (File source : shardFiles) {
+            StorageFormat format = StorageFormat.of(source);
+            DayShard shard = AtomicFiles.read(source, format.shardReader()::readValue);
+            if (shard == null) continue;
+
+            String name = source.getName();
+            String dateKey = name.substring(0, name.length() - format.suffix().length());
+            AtomicFiles.replace(new File(daysDir, dateKey + target.suffix()),
+                    out -> target.shardWriter().writeValue(out, shard));
+            // Only once the converted copy is durable
+            Files.delete(source.toPath());
+            Files.deleteIfExists(AtomicFiles.backupOf(source).toPath());
+            converted++;
+        }
+        return converted;
+    }
+
+    /** Converts every month archive not already in the target format; returns how many were converted. */
+    static int convertArchives(File archiveDir, StorageFormat target) throws IOException {
+        File[] archiveFiles = archiveDir.listFiles(file -> {
+            StorageFormat format = SlipFileStore.archiveFormatOf(file);
+            return format != null && format != target;
+        });
+        if (archiveFiles == null) return 0;
+
+        int converted = 0;
+        for (File source : archiveFiles) {
+            StorageFormat format = SlipFileStore.archiveFormatOf(source);
+            Map<String, DayShard> month = AtomicFiles.read(source, f -> {
+                try (InputStream in = new GZIPInputStream(new FileInputStream(f), 64 * 1024)) {
+                    return format.archiveReader().<TreeMap<String, DayShard>>readValue(in);
+                }
+            });
+            if (month == null) continue;
+
+            String name = source.getName();
+            String monthKey = name.substring(0, name.length()
+                    - format.suffix().length() - SlipFileStore.ARCHIVE_SUFFIX.length());
+            AtomicFiles.replace(new File(archiveDir, monthKey + target.suffix() + SlipFileStore.ARCHIVE_SUFFIX),
+                    out -> target.archiveWriter().writeValue(new GZIPOutputStream(out), month));
+            // Only once the converted copy is durable
+            Files.delete(source.toPath());
+            Files.deleteIfExists(AtomicFiles.backupOf(source).toPath());
+            converted++;
+        }
+        return converted;
+    }
+}
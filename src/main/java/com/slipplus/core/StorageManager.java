@@ -1,8 +1,6 @@
 package com.slipplus.core;
 
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.slipplus.models.Party;
 import java.io.File;
 import java.util.ArrayList;
@@ -11,78 +9,164 @@ import com.slipplus.models.SubSlip;
 import java.time.LocalDate;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
 import com.slipplus.models.Shortcut;
 import com.slipplus.models.MainSlip;
+import com.slipplus.models.SlipTotals;
+import com.slipplus.models.DatedSubSlip;
+import com.slipplus.models.TruckSighting;
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
 
 public class StorageManager {
 
-    private static final String PARTY_PATH = "src/main/resources/data/parties.json";
-    private static final String SUB_SLIP_PATH = "src/main/resources/data/sub_slips.json";
-    private static final String MAIN_SLIP_PATH = "src/main/resources/data/main_slips.json";
-    private static final ObjectMapper mapper = createObjectMapper();
+    // The same mapper as the JSON shard format, so they share Jackson's caches
+    private static final ObjectMapper mapper = StorageFormat.JSON.mapper();
     private static final String DATA_DIR = "src/main/resources/data";
+    // Day shard encoding; JSON unless -Dslipplus.storage.format=smile
+    private static final StorageFormat SHARD_FORMAT = StorageFormat.configured();
+    // json (default) or sqlite, from -Dslipplus.storage.backend
+    private static final String BACKEND_PROPERTY = "slipplus.storage.backend";
 
-    private static ObjectMapper createObjectMapper() {
-        ObjectMapper mapper = new ObjectMapper();
-        mapper.registerModule(new JavaTimeModule());
-        mapper.disable(com.fasterxml.jackson.databind.SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
-        return mapper;
+    private static final StorageBackend backend = createBackend();
+    // How long deleted sub-slips can be brought back, from -Dslipplus.undo.minutes
+    private static final long UNDO_MINUTES = Long.getLong("slipplus.undo.minutes", 30);
+    private static final SlipTrash trash = new SlipTrash(new File(DATA_DIR, "deleted_slips.json"), mapper,
+            TimeUnit.MINUTES.toMillis(UNDO_MINUTES));
+    private static final Object partyLock = new Object();
+    private static volatile PartyRegistry partyRegistry = null;
+    // Built on the first search and kept in step with every save; guarded by partyLock
+    private static PartySearchIndex partySearch = null;
+    // How far back slips count towards ranking parties in searches
+    private static final int SEARCH_RECENT_DATES = 60;
+    private static final Object shortcutLock = new Object();
+    private static volatile ShortcutRegistry shortcutRegistry = null;
+
+    private static StorageBackend createBackend() {
+        String name = System.getProperty(BACKEND_PROPERTY, "json");
+        if (name.equalsIgnoreCase("sqlite")) {
+            try {
+                return new SqliteStorageBackend(DATA_DIR, mapper,
+                        () -> new JsonStorageBackend(DATA_DIR, mapper, SHARD_FORMAT));
+            } catch (Exception e) {
+                // Never leave the app without storage; the JSON files are still there
+                System.err.println("SQLite backend unavailable, using JSON files: " + e.getMessage());
+                e.printStackTrace();
+            }
+        } else if (!name.equalsIgnoreCase("json")) {
+            System.err.println("Unknown " + BACKEND_PROPERTY + " '" + name + "', using json");
+        }
+        return new JsonStorageBackend(DATA_DIR, mapper, SHARD_FORMAT);
     }
 
     public static List<Party> loadParties() {
-        try {
-            File file = new File(PARTY_PATH);
-            if (!file.exists()) return new ArrayList<>();
-            return mapper.readValue(file, new TypeReference<>() {});
-        } catch (Exception e) {
-            e.printStackTrace();
-            return new ArrayList<>();
+        return partyRegistry().copyParties();
+    }
+
+    /** Current party lookup tables, read from the backend on first use. */
+    private static PartyRegistry partyRegistry() {
+        PartyRegistry registry = partyRegistry;
+        if (registry != null) return registry;
+        synchronized (partyLock) {
+            if (partyRegistry == null) partyRegistry = new PartyRegistry(backend.loadParties());
+            return partyRegistry;
         }
     }
 
-    public static void saveParties(List<Party> list) {
-        try {
-            ensureDataDirExists();
-            mapper.writerWithDefaultPrettyPrinter().writeValue(new File(PARTY_PATH), list);
-        } catch (Exception e) {
-            e.printStackTrace();
+    public static CompletableFuture<Void> saveParties(List<Party> list) {
+        // Copy now; the caller keeps editing its list on the FX thread
+        List<Party> snapshot = list.stream()
+                .map(p -> new Party(p.getId(), p.getName()))
+                .toList();
+        synchronized (partyLock) {
+            // Lookups see the new list straight away, before it reaches the disk
+            partyRegistry = new PartyRegistry(snapshot);
+            if (partySearch != null) partySearch.sync(snapshot);
         }
+        return backend.saveParties(snapshot);
     }
 
-    public static Map<String, Map<String, List<SubSlip>>> loadSubSlips() {
+    /**
+     * Parties whose names match what has been typed so far, best match first
+     * and, among equally good matches, the most recently used first. Prefixes
+     * of any word match, and so do names a typo or two away. An empty query
+     * lists all parties.
+     */
+    public static List<Party> searchParties(String query, int limit) {
+        return searchParties(query, limit, null);
+    }
+
+    /** As above, but only among the parties with these IDs; null means all. */
+    public static List<Party> searchParties(String query, int limit, Collection<String> partyIds) {
+        Set<Integer> allowed = null;
+        if (partyIds != null) {
+            allowed = new HashSet<>();
+            for (String partyId : partyIds) {
+                try {
+                    allowed.add(Integer.parseInt(partyId));
+                } catch (NumberFormatException e) {
+                    // Slips saved under a name rather than an ID have no party to find
+                }
+            }
+        }
+        synchronized (partyLock) {
+            return partySearch().search(query, limit, allowed);
+        }
+    }
+
+    /** Must be called with partyLock held. */
+    private static PartySearchIndex partySearch() {
+        if (partySearch != null) return partySearch;
+        PartySearchIndex index = new PartySearchIndex();
+        index.sync(partyRegistry().copyParties());
         try {
-            File file = new File(SUB_SLIP_PATH);
-            if (!file.exists()) return new HashMap<>();
-            return mapper.readValue(file, new TypeReference<>() {});
+            // Rank by the parties seen on the latest dates; only their party keys are read
+            List<LocalDate> dates = new ArrayList<>(backend.getDates());
+            dates.sort(null);
+            for (LocalDate date : dates.subList(Math.max(0, dates.size() - SEARCH_RECENT_DATES), dates.size())) {
+                for (String partyKey : backend.getPartyKeys(date)) recordUse(index, partyKey, date);
+            }
         } catch (Exception e) {
             e.printStackTrace();
-            return new HashMap<>();
+        }
+        partySearch = index;
+        return index;
+    }
+
+    private static void recordPartyUse(String partyKey, LocalDate date) {
+        synchronized (partyLock) {
+            if (partySearch != null) recordUse(partySearch, partyKey, date);
         }
     }
 
-    public static void saveSubSlip(LocalDate date, String partyKey, SubSlip slip) {
+    private static void recordUse(PartySearchIndex index, String partyKey, LocalDate date) {
         try {
-            ensureDataDirExists();
-            Map<String, Map<String, List<SubSlip>>> data = loadSubSlips();
-            String dateKey = date.toString();
-            data.putIfAbsent(dateKey, new HashMap<>());
-            Map<String, List<SubSlip>> byParty = data.get(dateKey);
+            index.recordUse(Integer.parseInt(partyKey), date.toEpochDay());
+        } catch (NumberFormatException e) {
+            // Keyed by name, from before parties had IDs
+        }
+    }
 
-            byParty.putIfAbsent(partyKey, new ArrayList<>());
-            byParty.get(partyKey).add(slip);
+    public static Map<String, Map<String, List<SubSlip>>> loadSubSlips() {
+        return backend.copySubSlips();
+    }
 
-            mapper.writerWithDefaultPrettyPrinter().writeValue(new File(SUB_SLIP_PATH), data);
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+    /** Saves a sub-slip, giving it a stable ID first if it has none. */
+    public static CompletableFuture<Void> saveSubSlip(LocalDate date, String partyKey, SubSlip slip) {
+        if (slip.getId() == null) slip.setId(SlipIds.next());
+        recordPartyUse(partyKey, date);
+        return backend.addSubSlip(date, partyKey, slip);
     }
 
     public static List<LocalDate> getAvailableDates() {
         try {
-            Map<String, Map<String, List<SubSlip>>> data = loadSubSlips();
-            return data.keySet().stream()
-                    .map(LocalDate::parse)
-                    .distinct()
+            return backend.getDates().stream()
                     .sorted((d1, d2) -> d2.compareTo(d1)) // Latest first
                     .toList();
         } catch (Exception e) {
@@ -93,13 +177,7 @@ public class StorageManager {
 
     public static List<String> getPartyIdsForDate(LocalDate date) {
         try {
-            Map<String, Map<String, List<SubSlip>>> data = loadSubSlips();
-            String dateKey = date.toString();
-            Map<String, List<SubSlip>> byParty = data.get(dateKey);
-            
-            if (byParty == null) return new ArrayList<>();
-            
-            return byParty.keySet().stream()
+            return backend.getPartyKeys(date).stream()
                     .sorted()
                     .toList();
         } catch (Exception e) {
@@ -110,100 +188,101 @@ public class StorageManager {
 
     public static List<SubSlip> getSubSlipsForDateAndParty(LocalDate date, String partyName) {
         try {
-            Map<String, Map<String, List<SubSlip>>> data = loadSubSlips();
-            String dateKey = date.toString();
-            Map<String, List<SubSlip>> byParty = data.get(dateKey);
-            
-            if (byParty == null) return new ArrayList<>();
-            
             // Convert party name to ID for lookup
             String partyId = getPartyIdByName(partyName);
-            
-            List<SubSlip> slips = byParty.get(partyId);
-            
-            return slips != null ? new ArrayList<>(slips) : new ArrayList<>();
+            return backend.getSubSlips(date, partyId);
         } catch (Exception e) {
             e.printStackTrace();
             return new ArrayList<>();
         }
     }
 
-    public static void deleteSubSlips(LocalDate date, String partyKey, List<SubSlip> slipsToDelete) {
-        try {        
-            Map<String, Map<String, List<SubSlip>>> data = loadSubSlips();
-            String dateKey = date.toString();
-            
-            Map<String, List<SubSlip>> byParty = data.get(dateKey);
-            
-            if (byParty != null) {
-                List<SubSlip> slips = byParty.get(partyKey);
-                if (slips != null) {
-                    // Remove the specific slips by comparing truck numbers and amounts
-                    slips.removeIf(slip -> slipsToDelete.stream().anyMatch(toDelete -> 
-                        slip.getTruckNumber().equals(toDelete.getTruckNumber()) && 
-                        Math.abs(slip.getFinalAmount() - toDelete.getFinalAmount()) < 0.01));
-                    
-                    // Remove empty party entry
-                    if (slips.isEmpty()) {
-                        byParty.remove(partyKey);
-                    }
-                    
-                    // Remove empty date entry
-                    if (byParty.isEmpty()) {
-                        data.remove(dateKey);
-                    }
-                    
-                    // Save the updated data back to JSON
-                    File file = new File(SUB_SLIP_PATH);
-                    mapper.writerWithDefaultPrettyPrinter().writeValue(file, data);
-                } else {
-                    System.out.println("Party not found: " + partyKey);
-                }
-            } else {
-                System.out.println("Date not found: " + dateKey);
-            }
-        } catch (Exception e) {
-            System.out.println("Error deleting slips: " + e.getMessage());
-            e.printStackTrace();
-        }
+    public static CompletableFuture<Void> deleteSubSlips(LocalDate date, String partyKey, List<SubSlip> slipsToDelete) {
+        return backend.deleteSubSlips(date, partyKey, slipsToDelete);
     }
 
-    public static void deleteAllSubSlipsForParty(LocalDate date, String partyKey) {
-        try {
-            
-            Map<String, Map<String, List<SubSlip>>> data = loadSubSlips();
-            String dateKey = date.toString();
-            Map<String, List<SubSlip>> byParty = data.get(dateKey);
-            
-            if (byParty != null) {
-                byParty.remove(partyKey);
-                
-                // Remove empty date entry
-                if (byParty.isEmpty()) {
-                    data.remove(dateKey);
-                }
-                
-                // Save the updated data back to JSON
-                File file = new File(SUB_SLIP_PATH);
-                mapper.writerWithDefaultPrettyPrinter().writeValue(file, data);
-            } else {
-                System.out.println("Date not found: " + dateKey);
+    /**
+     * Deletes slips by their IDs; unlike deleteSubSlips it never hits a
+     * look-alike record. The slips are kept as a tombstone for the undo
+     * window. Completes with its ID for undoDelete once the delete is
+     * written, or with null if none of the IDs were there.
+     */
+    public static CompletableFuture<String> deleteSubSlipsById(LocalDate date, List<String> ids) {
+        Set<String> wanted = new HashSet<>(ids);
+        Map<String, List<SubSlip>> deleted = new HashMap<>();
+        backend.getSubSlipsByParty(date).forEach((partyKey, slips) -> {
+            for (SubSlip slip : slips) {
+                if (wanted.contains(slip.getId())) deleted.computeIfAbsent(partyKey, k -> new ArrayList<>()).add(slip);
             }
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+        });
+        if (deleted.isEmpty()) return CompletableFuture.completedFuture(null);
+        return buryAndDelete(date, deleted, ids);
+    }
+
+    /**
+     * Deletes all of a party's slips on that date, keeping them as a
+     * tombstone like deleteSubSlipsById. They go by ID, so a slip saved
+     * meanwhile is not taken without its tombstone.
+     */
+    public static CompletableFuture<String> deleteAllSubSlipsForParty(LocalDate date, String partyKey) {
+        List<SubSlip> slips = backend.getSubSlips(date, partyKey);
+        if (slips.isEmpty()) return CompletableFuture.completedFuture(null);
+        return buryAndDelete(date, Map.of(partyKey, slips), slips.stream().map(SubSlip::getId).toList());
+    }
+
+    /**
+     * Writes the tombstone first and only then deletes, so a delete that
+     * reached the disk can always be undone. If either write fails the
+     * future fails. A tombstone that could not be written is dropped and
+     * nothing is deleted; one whose delete failed stays, as undoing it puts
+     * back at most what is missing.
+     */
+    private static CompletableFuture<String> buryAndDelete(LocalDate date, Map<String, List<SubSlip>> slips,
+                                                           List<String> ids) {
+        String tombstoneId = SlipIds.next();
+        SlipTrash.Tombstone tombstone = new SlipTrash.Tombstone(tombstoneId, date.toString(),
+                System.currentTimeMillis(), slips);
+        return trash.add(tombstone)
+                .whenComplete((ignored, error) -> {
+                    if (error != null) trash.take(tombstoneId);
+                })
+                .thenCompose(ignored -> backend.deleteSubSlipsById(date, ids))
+                .thenApply(ignored -> tombstoneId);
+    }
+
+    /**
+     * Puts back the slips of a delete that is still inside the undo window,
+     * under their old IDs and at the end of their party's list. A tombstone
+     * can be undone once; completes with false if it is gone or too old.
+     * The tombstone is only dropped once every slip is written back, so a
+     * failed undo leaves it to be tried again.
+     */
+    public static CompletableFuture<Boolean> undoDelete(String tombstoneId) {
+        if (tombstoneId == null) return CompletableFuture.completedFuture(false);
+        SlipTrash.Tombstone tombstone = trash.get(tombstoneId);
+        if (tombstone == null) return CompletableFuture.completedFuture(false);
+        LocalDate date = LocalDate.parse(tombstone.date());
+        List<CompletableFuture<Void>> restores = new ArrayList<>();
+        tombstone.slips().forEach((partyKey, slips) -> {
+            for (SubSlip slip : slips) restores.add(saveSubSlip(date, partyKey, slip));
+        });
+        return CompletableFuture.allOf(restores.toArray(new CompletableFuture[0]))
+                .thenApply(ignored -> {
+                    trash.take(tombstoneId);
+                    return true;
+                });
+    }
+
+    /** Minutes a delete can be undone for. */
+    public static long getUndoMinutes() {
+        return UNDO_MINUTES;
     }
 
     public static String getPartyNameById(String partyKey) {
         try {
             // First try to parse as ID
-            int partyId = Integer.parseInt(partyKey);
-            List<Party> parties = loadParties();
-            return parties.stream()
-                    .filter(p -> p.getId() == partyId)
-                    .map(Party::getName)
-                    .findFirst()
-                    .orElse(partyKey); // Return key if not found
+            Party party = partyRegistry().getById(Integer.parseInt(partyKey));
+            return party != null ? party.getName() : partyKey; // Return key if not found
         } catch (NumberFormatException e) {
             // If not a number, return as is (it's already a name)
             return partyKey;
@@ -211,40 +290,36 @@ public class StorageManager {
     }
 
     public static String getPartyIdByName(String partyName) {
+        Party party = partyRegistry().getByName(partyName);
+        return party != null ? String.valueOf(party.getId()) : partyName;
+    }
+
+    /** Party stored under a sub-slip party key, or null if the key is not a known ID. */
+    public static Party findPartyById(String partyKey) {
         try {
-            List<Party> parties = loadParties();
-            String result = parties.stream()
-                    .filter(p -> p.getName().equals(partyName))
-                    .map(p -> String.valueOf(p.getId()))
-                    .findFirst()
-                    .orElse(partyName);
-            
-            return result;
-        } catch (Exception e) {
-            e.printStackTrace();
-            return partyName;
+            return partyRegistry().getById(Integer.parseInt(partyKey));
+        } catch (NumberFormatException e) {
+            return null;
         }
     }
 
+    /** Case-insensitive name lookup, or null if no party has that name. */
+    public static Party findPartyByName(String partyName) {
+        return partyRegistry().findByName(partyName);
+    }
+
     public static List<String> getPartiesForDate(LocalDate date) {
         try {
-            Map<String, Map<String, List<SubSlip>>> data = loadSubSlips();
-            String dateKey = date.toString();
-            Map<String, List<SubSlip>> byParty = data.get(dateKey);
-            
-            if (byParty == null) return new ArrayList<>();
+            List<String> partyIds = backend.getPartyKeys(date);
+            if (partyIds.isEmpty()) return new ArrayList<>();
             
             // Convert party IDs to party names
-            List<Party> allParties = loadParties();
-            return byParty.keySet().stream()
+            PartyRegistry parties = partyRegistry();
+            return partyIds.stream()
                     .map(partyId -> {
                         try {
-                            int id = Integer.parseInt(partyId);
-                            return allParties.stream()
-                                    .filter(p -> p.getId() == id)
-                                    .map(Party::getName)
-                                    .findFirst()
-                                    .orElse("Unknown Party");
+                            Party party = parties.getById(Integer.parseInt(partyId));
+                            return party != null ? party.getName() : "Unknown Party";
                         } catch (NumberFormatException e) {
                             return partyId; // Already a name
                         }
@@ -259,128 +334,233 @@ public class StorageManager {
 
     public static boolean hasSubSlipRecordsForParty(String partyId) {
         try {
-            Map<String, Map<String, List<SubSlip>>> data = loadSubSlips();
-            
-            // Check all dates for this party ID
-            for (Map<String, List<SubSlip>> byParty : data.values()) {
-                if (byParty.containsKey(partyId)) {
-                    List<SubSlip> slips = byParty.get(partyId);
-                    if (slips != null && !slips.isEmpty()) {
-                        return true; // Found records for this party
-                    }
-                }
-            }
-            return false; // No records found
+            return backend.hasSubSlipsForParty(partyId);
         } catch (Exception e) {
             e.printStackTrace();
             return true; // Err on the side of caution
         }
     }
 
-    public static List<Shortcut> loadShortcuts() {
+    // Get every sub-slip a party has, by date, oldest first
+    public static SortedMap<LocalDate, List<SubSlip>> getSubSlipHistoryForParty(String partyId) {
         try {
-            File file = new File(DATA_DIR, "shortcuts.json");
-            if (!file.exists()) {
-                return new ArrayList<>();
-            }
-
-            return mapper.readValue(file, new TypeReference<List<Shortcut>>() {});
+            return backend.getSubSlipHistory(partyId);
         } catch (Exception e) {
             e.printStackTrace();
-            return new ArrayList<>();
+            return new TreeMap<>();
         }
     }
 
-    public static void saveShortcuts(List<Shortcut> shortcuts) {
+    /**
+     * Every sub-slip from one date to another, both included, oldest date
+     * first and by party ID within a date. Slips are fetched a date at a time
+     * as the stream is consumed, so a report over months holds one day in
+     * memory; pass null partyIds for every party. Problems reading a date
+     * surface while iterating, not here.
+     */
+    public static Stream<DatedSubSlip> streamSubSlips(LocalDate from, LocalDate to, Set<String> partyIds) {
         try {
-            ensureDataDirExists();
-            File file = new File(DATA_DIR, "shortcuts.json");
-            mapper.writerWithDefaultPrettyPrinter().writeValue(file, shortcuts);
+            return backend.streamSubSlips(from, to, partyIds);
         } catch (Exception e) {
             e.printStackTrace();
+            return Stream.empty();
         }
     }
 
-    private static void ensureDataDirExists() {
-        File dataDir = new File(DATA_DIR);
-        if (!dataDir.exists()) {
-            if (!dataDir.mkdirs()) {
-                throw new RuntimeException("Failed to create data directory: " + DATA_DIR);
+    public static Stream<DatedSubSlip> streamSubSlips(LocalDate from, LocalDate to) {
+        return streamSubSlips(from, to, null);
+    }
+
+    /**
+     * Earlier sub-slips for the same truck that look like a double entry:
+     * any on the given date, plus any saved in the last withinHours hours
+     * (which catches a truck weighed just before midnight). Truck numbers
+     * match regardless of case, spaces and punctuation. Only the truck index
+     * is consulted, never the slips themselves.
+     */
+    public static List<TruckSighting> findRecentTruckEntries(String truckNumber, LocalDate date, int withinHours) {
+        if (truckNumber == null || truckNumber.isBlank()) return new ArrayList<>();
+        LocalDateTime since = LocalDateTime.now().minusHours(withinHours);
+        LocalDate from = since.toLocalDate().isBefore(date) ? since.toLocalDate() : date;
+        try {
+            List<TruckSighting> recent = new ArrayList<>();
+            for (TruckSighting sighting : backend.findTruck(truckNumber, from)) {
+                boolean sameDay = sighting.getDate().equals(date);
+                boolean withinWindow = sighting.getSavedAt() != null && !sighting.getSavedAt().isBefore(since);
+                if (sameDay || withinWindow) recent.add(sighting);
             }
+            return recent;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
+
+    /** The shortcuts as copies to edit; read from memory, not the file. */
+    public static List<Shortcut> loadShortcuts() {
+        return getShortcutRegistry().copyShortcuts();
+    }
+
+    /**
+     * The current version of the shortcuts, read from the backend on first
+     * use. Hold on to it for one screen or report so every part of it sees
+     * the same columns.
+     */
+    public static ShortcutRegistry getShortcutRegistry() {
+        ShortcutRegistry registry = shortcutRegistry;
+        if (registry != null) return registry;
+        synchronized (shortcutLock) {
+            if (shortcutRegistry == null) shortcutRegistry = new ShortcutRegistry(1, backend.loadShortcuts());
+            return shortcutRegistry;
+        }
+    }
+
+    public static CompletableFuture<Void> saveShortcuts(List<Shortcut> shortcuts) {
+        // Copy now; the overlay keeps editing these objects on the FX thread
+        List<Shortcut> snapshot = shortcuts.stream()
+                .map(ShortcutRegistry::copy)
+                .toList();
+        synchronized (shortcutLock) {
+            // Readers see the new version straight away, before it reaches the disk
+            shortcutRegistry = new ShortcutRegistry(getShortcutRegistry().getVersion() + 1, snapshot);
         }
+        return backend.saveShortcuts(snapshot);
     }
 
-    public static void saveMainSlip(MainSlip mainSlip) {
+    public static CompletableFuture<Void> saveMainSlip(MainSlip mainSlip) {
+        return backend.putMainSlip(mainSlip);
+    }
+
+    public static Map<String, Map<String, MainSlip>> loadMainSlips() {
+        return backend.copyMainSlips();
+    }
+
+    public static MainSlip getMainSlip(LocalDate date, String partyName) {
         try {
-            ensureDataDirExists();
-            Map<String, Map<String, MainSlip>> data = loadMainSlips();
-            String dateKey = mainSlip.getDate().toString();
-            data.putIfAbsent(dateKey, new HashMap<>());
-            data.get(dateKey).put(mainSlip.getPartyName(), mainSlip);
-            
-            mapper.writerWithDefaultPrettyPrinter().writeValue(new File(MAIN_SLIP_PATH), data);
+            return backend.getMainSlip(date, partyName);
         } catch (Exception e) {
             e.printStackTrace();
+            return null;
         }
     }
 
-    public static Map<String, Map<String, MainSlip>> loadMainSlips() {
+    public static Map<String, MainSlip> getMainSlipsForDate(LocalDate date) {
         try {
-            File file = new File(MAIN_SLIP_PATH);
-            if (!file.exists()) return new HashMap<>();
-            return mapper.readValue(file, new TypeReference<>() {});
+            return backend.getMainSlips(date);
         } catch (Exception e) {
             e.printStackTrace();
             return new HashMap<>();
         }
     }
 
-    public static MainSlip getMainSlip(LocalDate date, String partyName) {
+    /**
+     * One consistent view of the dates from..to, both ends included, for
+     * screens and reports that read them more than once. Saving goes on
+     * while it is held; it just does not show up in it.
+     */
+    public static SlipSnapshot snapshot(LocalDate from, LocalDate to) {
         try {
-            Map<String, Map<String, MainSlip>> data = loadMainSlips();
-            String dateKey = date.toString();
-            Map<String, MainSlip> byParty = data.get(dateKey);
-            
-            if (byParty != null) {
-                return byParty.get(partyName);
-            }
-            return null;
+            return backend.snapshot(from, to);
         } catch (Exception e) {
             e.printStackTrace();
-            return null;
+            return new SlipSnapshot(0, new TreeMap<>());
         }
     }
 
+    public static SlipSnapshot snapshot(LocalDate date) {
+        return snapshot(date, date);
+    }
+
     public static Map<String, List<SubSlip>> getSubSlipsGroupedByParty(LocalDate date) {
         try {
-            Map<String, Map<String, List<SubSlip>>> data = loadSubSlips();
-            String dateKey = date.toString();
-            Map<String, List<SubSlip>> byParty = data.get(dateKey);
-            
-            if (byParty == null) return new HashMap<>();
-            
-            return new HashMap<>(byParty);
+            return backend.getSubSlipsByParty(date);
         } catch (Exception e) {
             e.printStackTrace();
             return new HashMap<>();
         }
     }
 
+    /**
+     * Precomputed totals of a date by party ID, each with its main slip's
+     * operation amounts filled in. Parties without sub-slips are left out.
+     */
+    public static Map<String, SlipTotals> getDayTotals(LocalDate date) {
+        try {
+            return totalsByPartyId(backend.getDaySummary(date));
+        } catch (Exception e) {
+            e.printStackTrace();
+            return new HashMap<>();
+        }
+    }
+
+    /** Precomputed totals of one party on a date; all zero if it has no slips. */
+    public static SlipTotals getPartyDayTotals(LocalDate date, String partyName) {
+        try {
+            return totalsForParty(backend.getDaySummary(date), partyName);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return new SlipTotals();
+        }
+    }
+
+    /**
+     * Totals by party ID over a date range, both ends included. Built from
+     * the month and year rollups, so the cost follows the number of months
+     * in the range rather than the number of slips.
+     */
+    public static Map<String, SlipTotals> getTotalsForRange(LocalDate from, LocalDate to) {
+        try {
+            return totalsByPartyId(backend.getRangeSummary(from, to));
+        } catch (Exception e) {
+            e.printStackTrace();
+            return new HashMap<>();
+        }
+    }
+
+    public static SlipTotals getPartyTotalsForRange(LocalDate from, LocalDate to, String partyName) {
+        try {
+            return totalsForParty(backend.getRangeSummary(from, to), partyName);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return new SlipTotals();
+        }
+    }
+
+    // From the 1st of the date's month up to and including the date
+    public static Map<String, SlipTotals> getMonthToDateTotals(LocalDate date) {
+        return getTotalsForRange(date.withDayOfMonth(1), date);
+    }
+
+    // From 1 April, the start of the financial year GST returns are filed for
+    public static Map<String, SlipTotals> getFinancialYearToDateTotals(LocalDate date) {
+        LocalDate start = LocalDate.of(date.getMonthValue() >= 4 ? date.getYear() : date.getYear() - 1, 4, 1);
+        return getTotalsForRange(start, date);
+    }
+
+    static Map<String, SlipTotals> totalsByPartyId(DaySummary summary) {
+        Map<String, SlipTotals> totals = new HashMap<>();
+        summary.getSubSlips().forEach((partyKey, partyTotals) -> {
+            Map<String, Double> operations = summary.getOperations().get(getPartyNameById(partyKey));
+            if (operations != null) partyTotals.setOperationTotals(operations);
+            totals.put(partyKey, partyTotals);
+        });
+        return totals;
+    }
+
+    private static SlipTotals totalsForParty(DaySummary summary, String partyName) {
+        SlipTotals totals = summary.getSubSlips().get(getPartyIdByName(partyName));
+        if (totals == null) totals = new SlipTotals();
+        Map<String, Double> operations = summary.getOperations().get(partyName);
+        if (operations != null) totals.setOperationTotals(operations);
+        return totals;
+    }
+
     public static void deleteAllData() {
         try {
-            // Delete sub-slip data
-            File subSlipFile = new File(SUB_SLIP_PATH);
-            if (subSlipFile.exists()) {
-                subSlipFile.delete();
-                System.out.println("Deleted: " + SUB_SLIP_PATH);
-            }
-            
-            // Delete main slip data
-            File mainSlipFile = new File(MAIN_SLIP_PATH);
-            if (mainSlipFile.exists()) {
-                mainSlipFile.delete();
-                System.out.println("Deleted: " + MAIN_SLIP_PATH);
-            }
+            // Delete sub-slip and main slip data
+            backend.deleteAllSlips();
+            // Undoing a delete now would bring back a slip of the old data
+            trash.clear();
             
             // Delete purchase book data (if exists)
             File purchaseBookFile = new File("purchase_book.json");
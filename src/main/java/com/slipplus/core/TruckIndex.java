@@ -0,0 +1,140 @@
+package com.slipplus.core;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import com.slipplus.models.TruckSighting;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Truck number → every sub-slip it was entered on, over all dates whether
+ * their shards are loaded or not.
+ *
+ * Truck numbers are compared normalized (upper case, letters and digits
+ * only), so "gj 01 ab-1234" and "GJ01AB1234" are the same truck. Each
+ * truck's entries are kept in date order, so the recent ones are found by
+ * a hash lookup and a walk back from the newest.
+ */
+class TruckIndex {
+
+    private final Map<String, List<Entry>> entries = new HashMap<>();
+
+    /** The key a truck number is indexed under; null when it has no letters or digits. */
+    static String normalize(String truckNumber) {
+        if (truckNumber == null) return null;
+        StringBuilder key = new StringBuilder(truckNumber.length());
+        for (int i = 0; i < truckNumber.length(); i++) {
+            char c = truckNumber.charAt(i);
+            if (Character.isLetterOrDigit(c)) key.append(Character.toUpperCase(c));
+        }
+        return key.length() == 0 ? null : key.toString();
+    }
+
+    /** What callers outside the storage layer get to see of an entry. */
+    static TruckSighting sighting(String dateKey, String partyKey, String slipId) {
+        long millis = SlipIds.timestampOf(slipId);
+        LocalDateTime savedAt = millis < 0 ? null
+                : LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+        return new TruckSighting(LocalDate.parse(dateKey), partyKey, slipId, savedAt);
+    }
+
+    /** Replaces everything with a stored index. */
+    void load(Map<String, List<Entry>> stored) {
+        clear();
+        stored.forEach((truckKey, list) -> {
+            if (list.isEmpty()) return;
+            List<Entry> sorted = new ArrayList<>(list);
+            sorted.sort((a, b) -> a.date.compareTo(b.date));
+            entries.put(truckKey, sorted);
+        });
+    }
+
+    /** Adding a slip ID that is already listed for the truck does nothing. */
+    void add(String truckNumber, String dateKey, String partyKey, String slipId) {
+        String truckKey = normalize(truckNumber);
+        if (truckKey == null) return;
+        List<Entry> list = entries.computeIfAbsent(truckKey, k -> new ArrayList<>());
+        for (Entry entry : list) {
+            if (entry.id.equals(slipId)) return;
+        }
+        // New slips are almost always for the newest date, so look from the end
+        int at = list.size();
+        while (at > 0 && list.get(at - 1).date.compareTo(dateKey) > 0) at--;
+        list.add(at, new Entry(dateKey, partyKey, slipId));
+    }
+
+    void remove(String truckNumber, String slipId) {
+        String truckKey = normalize(truckNumber);
+        if (truckKey == null) return;
+        List<Entry> list = entries.get(truckKey);
+        if (list == null) return;
+        list.removeIf(entry -> entry.id.equals(slipId));
+        if (list.isEmpty()) entries.remove(truckKey);
+    }
+
+    /** The truck's entries on or after a date, oldest first. */
+    List<Entry> since(String truckNumber, String fromDateKey) {
+        List<Entry> list = entries.get(normalize(truckNumber));
+        if (list == null) return Collections.emptyList();
+        int from = list.size();
+        while (from > 0 && list.get(from - 1).date.compareTo(fromDateKey) >= 0) from--;
+        return new ArrayList<>(list.subList(from, list.size()));
+    }
+
+    Map<String, List<Entry>> copy() {
+        Map<String, List<Entry>> copy = new TreeMap<>();
+        entries.forEach((truckKey, list) -> copy.put(truckKey, new ArrayList<>(list)));
+        return copy;
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    void clear() {
+        entries.clear();
+    }
+
+    /** Where one sub-slip with the truck lives; stored as a three-element array to keep the file small. */
+    @JsonFormat(shape = JsonFormat.Shape.ARRAY)
+    @JsonPropertyOrder({"date", "party", "id"})
+    static final class Entry {
+        private final String date;
+        private final String party;
+        private final String id;
+
+        @JsonCreator
+        Entry(@JsonProperty("date") String date, @JsonProperty("party") String party,
+              @JsonProperty("id") String id) {
+            this.date = date;
+            this.party = party;
+            this.id = id;
+        }
+
+        @JsonProperty("date")
+        String date() {
+            return date;
+        }
+
+        @JsonProperty("party")
+        String party() {
+            return party;
+        }
+
+        @JsonProperty("id")
+        String id() {
+            return id;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.slipplus.models;
+
+import java.time.LocalDate;
+
+// A sub-slip together with the date and party ID it is stored under, as yielded by range queries
+public class DatedSubSlip {
+    private final LocalDate date;
+    private final String partyId;
+    private final SubSlip slip;
+
+    public DatedSubSlip(LocalDate date, String partyId, SubSlip slip) {
+        this.date = date;
+        this.partyId = partyId;
+        this.slip = slip;
+    }
+
+    public LocalDate getDate() { return date; }
+
+    public String getPartyId() { return partyId; }
+
+    public SubSlip getSlip() { return slip; }
+}
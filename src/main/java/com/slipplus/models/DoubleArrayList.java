@@ -0,0 +1,42 @@
+package com.slipplus.models;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/** Read-only List view over a double array; values are boxed only as they are read. */
+final class DoubleArrayList extends AbstractList<Double> implements RandomAccess {
+
+    private final double[] values;
+
+    private DoubleArrayList(double[] values) {
+        this.values = values;
+    }
+
+    /** View of the array, or null for a null array, as the list fields used to be. */
+    static List<Double> of(double[] values) {
+        return values != null ? new DoubleArrayList(values) : null;
+    }
+
+    /** Copies a list into a new array; null elements become 0. */
+    static double[] toArray(List<Double> list) {
+        if (list == null) return null;
+        if (list instanceof DoubleArrayList view) return view.values.clone();
+        double[] values = new double[list.size()];
+        for (int i = 0; i < values.length; i++) {
+            Double value = list.get(i);
+            values[i] = value != null ? value : 0.0;
+        }
+        return values;
+    }
+
+    @Override
+    public Double get(int index) {
+        return values[index];
+    }
+
+    @Override
+    public int size() {
+        return values.length;
+    }
+}
@@ -0,0 +1,39 @@
+package com.slipplus.models;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class SlipTotals {
+    private int truckCount;
+    private double mainWeight;
+    private double subWeight;
+    private double totalBeforeGst;
+    private double gst;
+    private double finalAmount;
+    private Map<String, Double> operationTotals = new HashMap<>(); // Shortcut ID -> amount
+
+    public SlipTotals() {}
+
+    public int getTruckCount() { return truckCount; }
+    public void setTruckCount(int truckCount) { this.truckCount = truckCount; }
+
+    public double getMainWeight() { return mainWeight; }
+    public void setMainWeight(double mainWeight) { this.mainWeight = mainWeight; }
+
+    public double getSubWeight() { return subWeight; }
+    public void setSubWeight(double subWeight) { this.subWeight = subWeight; }
+
+    public double getTotalBeforeGst() { return totalBeforeGst; }
+    public void setTotalBeforeGst(double totalBeforeGst) { this.totalBeforeGst = totalBeforeGst; }
+
+    public double getGst() { return gst; }
+    public void setGst(double gst) { this.gst = gst; }
+
+    public double getFinalAmount() { return finalAmount; }
+    public void setFinalAmount(double finalAmount) { this.finalAmount = finalAmount; }
+
+    public Map<String, Double> getOperationTotals() { return operationTotals; }
+    public void setOperationTotals(Map<String, Double> operationTotals) {
+        this.operationTotals = operationTotals != null ? operationTotals : new HashMap<>();
+    }
+}
@@ -2,15 +2,22 @@ package com.slipplus.models;
 
 import java.util.List;
 
+/**
+ * One truck's slip. The per-sub-weight values are held as double arrays,
+ * which is what a year of slips in memory mostly consists of; the list
+ * accessors are read-only views over them for existing callers, and the
+ * array accessors are for loops that should not unbox.
+ */
 public class SubSlip {
+    private String id;
     private String partyName;
     private String truckNumber;
     private double mainWeight;
-    private List<Double> subWeights;
+    private double[] subWeights;
     private double price1;
     private double price2;
-    private List<Double> qualityValues;
-    private List<Double> calculatedPrices;
+    private double[] qualityValues;
+    private double[] calculatedPrices;
     private String dustDiscount;
     private double totalBeforeGst;
     private double gst;
@@ -30,6 +37,23 @@ public class SubSlip {
                    double totalBeforeGst,
                    double gst,
                    double finalAmount) {
+        this(partyName, truckNumber, mainWeight, DoubleArrayList.toArray(subWeights), price1, price2,
+                DoubleArrayList.toArray(qualityValues), DoubleArrayList.toArray(calculatedPrices),
+                dustDiscount, totalBeforeGst, gst, finalAmount);
+    }
+
+    public SubSlip(String partyName,
+                   String truckNumber,
+                   double mainWeight,
+                   double[] subWeights,
+                   double price1,
+                   double price2,
+                   double[] qualityValues,
+                   double[] calculatedPrices,
+                   String dustDiscount,
+                   double totalBeforeGst,
+                   double gst,
+                   double finalAmount) {
         this.partyName = partyName;
         this.truckNumber = truckNumber;
         this.mainWeight = mainWeight;
@@ -44,6 +68,9 @@ public class SubSlip {
         this.finalAmount = finalAmount;
     }
 
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
     public String getPartyName() { return partyName; }
     public void setPartyName(String partyName) { this.partyName = partyName; }
 
@@ -53,8 +80,8 @@ public class SubSlip {
     public double getMainWeight() { return mainWeight; }
     public void setMainWeight(double mainWeight) { this.mainWeight = mainWeight; }
 
-    public List<Double> getSubWeights() { return subWeights; }
-    public void setSubWeights(List<Double> subWeights) { this.subWeights = subWeights; }
+    public List<Double> getSubWeights() { return DoubleArrayList.of(subWeights); }
+    public void setSubWeights(List<Double> subWeights) { this.subWeights = DoubleArrayList.toArray(subWeights); }
 
     public double getPrice1() { return price1; }
     public void setPrice1(double price1) { this.price1 = price1; }
@@ -62,11 +89,24 @@ public class SubSlip {
     public double getPrice2() { return price2; }
     public void setPrice2(double price2) { this.price2 = price2; }
 
-    public List<Double> getQualityValues() { return qualityValues; }
-    public void setQualityValues(List<Double> qualityValues) { this.qualityValues = qualityValues; }
+    public List<Double> getQualityValues() { return DoubleArrayList.of(qualityValues); }
+    public void setQualityValues(List<Double> qualityValues) { this.qualityValues = DoubleArrayList.toArray(qualityValues); }
+
+    public List<Double> getCalculatedPrices() { return DoubleArrayList.of(calculatedPrices); }
+    public void setCalculatedPrices(List<Double> calculatedPrices) {
+        this.calculatedPrices = DoubleArrayList.toArray(calculatedPrices);
+    }
+
+    // The arrays themselves, or null when not set; callers must not modify them
+
+    public double[] subWeightArray() { return subWeights; }
+    public void subWeightArray(double[] subWeights) { this.subWeights = subWeights; }
+
+    public double[] qualityValueArray() { return qualityValues; }
+    public void qualityValueArray(double[] qualityValues) { this.qualityValues = qualityValues; }
 
-    public List<Double> getCalculatedPrices() { return calculatedPrices; }
-    public void setCalculatedPrices(List<Double> calculatedPrices) { this.calculatedPrices = calculatedPrices; }
+    public double[] calculatedPriceArray() { return calculatedPrices; }
+    public void calculatedPriceArray(double[] calculatedPrices) { this.calculatedPrices = calculatedPrices; }
 
     public String getDustDiscount() { return dustDiscount; }
     public void setDustDiscount(String dustDiscount) { this.dustDiscount = dustDiscount; }
@@ -0,0 +1,28 @@
+package com.slipplus.models;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// A sub-slip a truck number was entered on, as found by the truck index
+public class TruckSighting {
+    private final LocalDate date;
+    private final String partyId;
+    private final String slipId;
+    // When the slip was saved; null for slips saved before IDs carried the time
+    private final LocalDateTime savedAt;
+
+    public TruckSighting(LocalDate date, String partyId, String slipId, LocalDateTime savedAt) {
+        this.date = date;
+        this.partyId = partyId;
+        this.slipId = slipId;
+        this.savedAt = savedAt;
+    }
+
+    public LocalDate getDate() { return date; }
+
+    public String getPartyId() { return partyId; }
+
+    public String getSlipId() { return slipId; }
+
+    public LocalDateTime getSavedAt() { return savedAt; }
+}
@@ -1,6 +1,7 @@
 package com.slipplus.screens.generalData;
 
 import com.slipplus.core.AppNavigator;
+import com.slipplus.core.SlipSnapshot;
 import com.slipplus.core.StorageManager;
 import com.slipplus.models.MainSlip;
 
@@ -27,6 +28,8 @@ import org.apache.pdfbox.printing.PDFPrintable;
 public class GeneralDataView {
 
     private final LocalDate date;
+    // Shown, printed and saved as one version of the day
+    private SlipSnapshot data;
 
     public GeneralDataView(LocalDate date) {
         this.date = date;
@@ -37,6 +40,8 @@ public class GeneralDataView {
     // =========================================================
     public void start(Stage stage) {
 
+        data = StorageManager.snapshot(date);
+
         VBox page = new VBox(40);
         page.setPadding(new Insets(40, 120, 40, 120));
         page.setAlignment(Pos.TOP_CENTER);
@@ -55,7 +60,7 @@ public class GeneralDataView {
         page.getChildren().add(actions);
 
         Map<String, MainSlip> slips =
-                StorageManager.loadMainSlips().get(date.toString());
+                data.getMainSlipsForDate(date);
 
         if (slips != null) {
             slips.values().forEach(slip -> page.getChildren().add(buildPartyBlock(slip)));
@@ -284,7 +289,7 @@ public class GeneralDataView {
         float y = PAGE_HEIGHT - TOP_MARGIN;
 
         Map<String, MainSlip> slips =
-                StorageManager.loadMainSlips().get(date.toString());
+                data.getMainSlipsForDate(date);
 
         for (MainSlip slip : slips.values()) {
 
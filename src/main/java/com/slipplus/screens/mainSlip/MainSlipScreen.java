@@ -1,6 +1,7 @@
 package com.slipplus.screens.mainSlip;
 
 import com.slipplus.core.AppNavigator;
+import com.slipplus.core.ShortcutRegistry;
 import com.slipplus.core.StorageManager;
 import com.slipplus.models.MainSlip;
 import com.slipplus.models.Shortcut;
@@ -21,6 +22,7 @@ import java.text.DecimalFormat;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletionException;
 
 public class MainSlipScreen {
     
@@ -28,7 +30,7 @@ public class MainSlipScreen {
     private LocalDate selectedDate;
     private String selectedParty;
     private List<SubSlip> subSlips;
-    private List<Shortcut> shortcuts;
+    private ShortcutRegistry shortcuts;
     private DecimalFormat moneyFmt = new DecimalFormat("#,##0");
     
     private VBox contentArea;
@@ -46,7 +48,7 @@ public class MainSlipScreen {
         this.selectedDate = date;
         this.selectedParty = party;
         this.subSlips = StorageManager.getSubSlipsForDateAndParty(date, party);
-        this.shortcuts = StorageManager.loadShortcuts();
+        this.shortcuts = StorageManager.getShortcutRegistry();
         
         // Check if main slip already exists
         MainSlip existingMainSlip = StorageManager.getMainSlip(date, party);
@@ -63,7 +65,11 @@ public class MainSlipScreen {
             // Update the stored main slip with new totals
             MainSlip updatedMainSlip = new MainSlip(date, party, 
                 totalBeforeOperations, new ArrayList<>(operations), totalAfterOperations);
-            StorageManager.saveMainSlip(updatedMainSlip);
+            StorageManager.saveMainSlip(updatedMainSlip).whenComplete((ignored, error) -> {
+                if (error == null) return;
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                Platform.runLater(() -> showError("Failed to update main slip totals: " + cause.getMessage()));
+            });
         } else {
             // New main slip
             this.operations = new ArrayList<>();
@@ -243,10 +249,7 @@ public class MainSlipScreen {
             }
             
             // Find shortcut
-            Shortcut shortcut = shortcuts.stream()
-                    .filter(s -> s.getAlphabet().equals(shortcutKey))
-                    .findFirst()
-                    .orElse(null);
+            Shortcut shortcut = shortcuts.get(shortcutKey);
             
             if (shortcut == null) {
                 showError("Shortcut '" + shortcutKey + "' not found!");
@@ -291,9 +294,8 @@ public class MainSlipScreen {
     }
     
     private void calculateInitialTotal() {
-        totalBeforeOperations = subSlips.stream()
-                .mapToDouble(SubSlip::getFinalAmount)
-                .sum();
+        // Kept up to date by the store on every sub-slip save and delete
+        totalBeforeOperations = StorageManager.getPartyDayTotals(selectedDate, selectedParty).getFinalAmount();
         totalAfterOperations = totalBeforeOperations;
     }
     
@@ -329,11 +331,16 @@ public class MainSlipScreen {
         MainSlip mainSlip = new MainSlip(selectedDate, selectedParty, 
             totalBeforeOperations, new ArrayList<>(operations), totalAfterOperations);
         
-        StorageManager.saveMainSlip(mainSlip);
-        
-        // Open print preview instead of just showing success message
-        MainSlipPrintPreview printPreview = new MainSlipPrintPreview(this, selectedDate, selectedParty, mainSlip);
-        printPreview.start(stage);
+        StorageManager.saveMainSlip(mainSlip).whenComplete((ignored, error) -> Platform.runLater(() -> {
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                showError("Failed to save main slip: " + cause.getMessage());
+                return;
+            }
+            // Open print preview instead of just showing success message
+            MainSlipPrintPreview printPreview = new MainSlipPrintPreview(this, selectedDate, selectedParty, mainSlip);
+            printPreview.start(stage);
+        }));
     }
     
     
@@ -344,7 +351,8 @@ public class MainSlipScreen {
         alert.setContentText(message);
         alert.showAndWait();
         
-        Platform.runLater(() -> currentOperationField.requestFocus());
+        // May come from the constructor's save, before the screen is built
+        if (currentOperationField != null) Platform.runLater(() -> currentOperationField.requestFocus());
     }
 
     private void changeDate() {
@@ -422,7 +430,8 @@ public class MainSlipScreen {
         calculateInitialTotal();
         
         // Focus on operation field
-        Platform.runLater(() -> currentOperationField.requestFocus());
+        // May come from the constructor's save, before the screen is built
+        if (currentOperationField != null) Platform.runLater(() -> currentOperationField.requestFocus());
     }
 }
 
@@ -3,6 +3,7 @@ package com.slipplus.screens.menu;
 import com.slipplus.constants.Colors;
 import com.slipplus.core.StorageManager;
 import com.slipplus.models.Party;
+import javafx.application.Platform;
 import javafx.beans.property.SimpleIntegerProperty;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
@@ -16,8 +17,10 @@ import javafx.scene.paint.Color;
 import javafx.stage.Modality;
 import javafx.stage.Screen;
 import javafx.stage.Stage;
+import javafx.stage.Window;
 
 import java.util.List;
+import java.util.concurrent.CompletionException;
 
 public class PartyOverlay {
 
@@ -104,7 +107,7 @@ public class PartyOverlay {
             // Add new party
             int id = parties.isEmpty() ? 1 : parties.get(parties.size() - 1).getId() + 1;
             parties.add(new Party(id, trimmed));
-            StorageManager.saveParties(parties);
+            saveParties();
 
             table.refresh();
             table.getSelectionModel().selectLast();
@@ -129,7 +132,7 @@ public class PartyOverlay {
             String trimmed = newName.trim();
             if (trimmed.isEmpty()) return;
             selected.setName(trimmed);
-            StorageManager.saveParties(parties);
+            saveParties();
             table.refresh();
             table.requestFocus();
         });
@@ -164,13 +167,30 @@ public class PartyOverlay {
         confirm.showAndWait().ifPresent(response -> {
             if (response == ButtonType.OK) {
                 parties.remove(selected);
-                StorageManager.saveParties(parties);
+                saveParties();
                 table.refresh();
                 table.requestFocus();
             }
         });
     }
 
+    /** The list on screen is kept either way; a failure only means it did not reach the disk. */
+    private void saveParties() {
+        Window owner = table.getScene().getWindow();
+        StorageManager.saveParties(parties).whenComplete((ignored, error) -> {
+            if (error == null) return;
+            Platform.runLater(() -> {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                Alert alert = new Alert(Alert.AlertType.ERROR);
+                alert.setTitle("Error");
+                alert.setHeaderText("Parties were not saved");
+                alert.setContentText("Failed to save parties: " + cause.getMessage());
+                if (owner.isShowing()) alert.initOwner(owner);
+                alert.showAndWait();
+            });
+        });
+    }
+
     private boolean hasSubSlipRecords(int partyId) {
         try {
             // Check if this party ID exists in any sub-slip records
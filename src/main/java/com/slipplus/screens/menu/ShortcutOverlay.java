@@ -19,8 +19,10 @@ import javafx.scene.layout.HBox;
 import javafx.stage.Modality;
 import javafx.stage.Screen;
 import javafx.stage.Stage;
+import javafx.stage.Window;
 
 import java.util.List;
+import java.util.concurrent.CompletionException;
 
 public class ShortcutOverlay {
 
@@ -115,7 +117,7 @@ public class ShortcutOverlay {
             }
             
             shortcuts.add(newShortcut);
-            StorageManager.saveShortcuts(shortcuts);
+            saveShortcuts();
             table.refresh();
             table.requestFocus();
         });
@@ -148,7 +150,7 @@ public class ShortcutOverlay {
             selected.setOperation(editedShortcut.getOperation());
             selected.setShowInPurchaseBook(editedShortcut.isShowInPurchaseBook());
 
-            StorageManager.saveShortcuts(shortcuts);
+            saveShortcuts();
             table.refresh();
             table.requestFocus();
         });
@@ -169,13 +171,30 @@ public class ShortcutOverlay {
         confirm.showAndWait().ifPresent(response -> {
             if (response == ButtonType.OK) {
                 shortcuts.remove(selected);
-                StorageManager.saveShortcuts(shortcuts);
+                saveShortcuts();
                 table.refresh();
                 table.requestFocus();
             }
         });
     }
 
+    /** The list on screen is kept either way; a failure only means it did not reach the disk. */
+    private void saveShortcuts() {
+        Window owner = table.getScene().getWindow();
+        StorageManager.saveShortcuts(shortcuts).whenComplete((ignored, error) -> {
+            if (error == null) return;
+            Platform.runLater(() -> {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                Alert alert = new Alert(Alert.AlertType.ERROR);
+                alert.setTitle("Error");
+                alert.setHeaderText("Shortcuts were not saved");
+                alert.setContentText("Failed to save shortcuts: " + cause.getMessage());
+                if (owner.isShowing()) alert.initOwner(owner);
+                alert.showAndWait();
+            });
+        });
+    }
+
     private Dialog<Shortcut> createShortcutDialog(String title, Shortcut existing) {
         Dialog<Shortcut> dialog = new Dialog<>();
         dialog.setTitle(title);
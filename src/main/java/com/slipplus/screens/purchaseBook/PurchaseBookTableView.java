@@ -1,9 +1,11 @@
 package com.slipplus.screens.purchaseBook;
 
 import com.slipplus.core.AppNavigator;
+import com.slipplus.core.ShortcutRegistry;
+import com.slipplus.core.SlipSnapshot;
 import com.slipplus.core.StorageManager;
-import com.slipplus.models.MainSlip;
 import com.slipplus.models.Shortcut;
+import com.slipplus.models.SlipTotals;
 import com.slipplus.models.SubSlip;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
@@ -27,7 +29,6 @@ import java.text.DecimalFormat;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.stream.Collectors;
 
 import javax.print.PrintService;
 import javax.print.PrintServiceLookup;
@@ -43,6 +44,10 @@ public class PurchaseBookTableView {
     
     private Stage stage;
     private LocalDate selectedDate;
+    // The table, print and PDF all read this, so they agree while slips keep being saved
+    private SlipSnapshot data;
+    // Likewise one version of the shortcut columns
+    private ShortcutRegistry shortcuts;
     private TableView<PurchaseBookRow> table;
     private ObservableList<PurchaseBookRow> tableData;
     private DecimalFormat moneyFormat = new DecimalFormat("#,##0");
@@ -57,6 +62,8 @@ public class PurchaseBookTableView {
     
     public void start(Stage stage) {
         this.stage = stage;
+        this.data = StorageManager.snapshot(selectedDate);
+        this.shortcuts = StorageManager.getShortcutRegistry();
         
         double screenWidth = Screen.getPrimary().getBounds().getWidth();
         double screenHeight = Screen.getPrimary().getBounds().getHeight();
@@ -155,9 +162,7 @@ public class PurchaseBookTableView {
         grid.setStyle("-fx-border-color: transparent;");
         
         // Get shortcuts that should be shown in purchase book
-        List<Shortcut> purchaseBookShortcuts = StorageManager.loadShortcuts().stream()
-                .filter(Shortcut::isShowInPurchaseBook)
-                .collect(Collectors.toList());
+        List<Shortcut> purchaseBookShortcuts = shortcuts.getPurchaseBookShortcuts();
         
         // Calculate total columns: 6 fixed + dynamic shortcuts
         int totalColumns = 6 + purchaseBookShortcuts.size();
@@ -204,17 +209,12 @@ public class PurchaseBookTableView {
 
     private void loadSimpleDataRows(VBox container) {
 
-        double grandTotalMainWeight = 0;
-        double grandTotalAmount = 0;
-        double grandTotalGst = 0;
-        Map<String, Double> grandOperationTotals = new HashMap<>();
-
-        Map<String, List<SubSlip>> partiesData = StorageManager.getSubSlipsGroupedByParty(selectedDate);
+        Map<String, List<SubSlip>> partiesData = data.getSubSlipsGroupedByParty(selectedDate);
+        Map<String, SlipTotals> dayTotals = data.getDayTotals(selectedDate);
+        SlipTotals grandTotals = calculateGrandTotals(dayTotals);
         
         // Get shortcuts for column calculation
-        List<Shortcut> purchaseBookShortcuts = StorageManager.loadShortcuts().stream()
-                .filter(Shortcut::isShowInPurchaseBook)
-                .collect(Collectors.toList());
+        List<Shortcut> purchaseBookShortcuts = shortcuts.getPurchaseBookShortcuts();
         
         double screenWidth = javafx.stage.Screen.getPrimary().getBounds().getWidth();
         double tableWidth = screenWidth * 0.9;
@@ -225,29 +225,23 @@ public class PurchaseBookTableView {
             List<SubSlip> subSlips = entry.getValue();
             String partyName = StorageManager.getPartyNameById(partyId);
             
-            MainSlip mainSlip = StorageManager.getMainSlip(selectedDate, partyName);
-            Map<String, Double> operationAmounts = calculateOperationAmounts(mainSlip);
-
-            for (Map.Entry<String, Double> op : operationAmounts.entrySet()) {
-                grandOperationTotals.merge(op.getKey(), op.getValue(), Double::sum);
-            }
+            Map<String, Double> operationAmounts = calculateOperationAmounts(dayTotals.get(partyId));
             
             for (SubSlip subSlip : subSlips) {
                 List<GridPane> subWeightRows = new ArrayList<>();
-                grandTotalMainWeight += subSlip.getMainWeight();
-                grandTotalAmount += subSlip.getTotalBeforeGst();
-                grandTotalGst += subSlip.getGst();
 
                 boolean isFirstSubSlipOfParty = (subSlip == subSlips.get(0));
+                double[] subWeights = subSlip.subWeightArray();
+                double[] calculatedPrices = subSlip.calculatedPriceArray();
                 
-                for (int i = 0; i < subSlip.getSubWeights().size(); i++) {
+                for (int i = 0; i < subWeights.length; i++) {
                     boolean isFirstRowOfSlip = (i == 0);
                     
                     GridPane dataRow = createDataRowGrid(
                         isFirstRowOfSlip ? partyName : "",
                         isFirstRowOfSlip ? subSlip.getMainWeight() : 0,
-                        subSlip.getSubWeights().get(i),
-                        subSlip.getCalculatedPrices().get(i),
+                        subWeights[i],
+                        calculatedPrices[i],
                         0, 0, 
                         subSlip.getTruckNumber(), // Don't show totals initially
                         columnWidth,
@@ -279,14 +273,14 @@ public class PurchaseBookTableView {
         // ===== GRAND TOTAL ROW =====
         GridPane totalRow = createDataRowGrid(
             "TOTAL",
-            grandTotalMainWeight,
+            grandTotals.getMainWeight(),
             0,      // no sub weight
             0,      // no rate
-            grandTotalAmount,
-            grandTotalGst,
+            grandTotals.getTotalBeforeGst(),
+            grandTotals.getGst(),
             "",     // no truck number
             columnWidth,
-            grandOperationTotals
+            grandTotals.getOperationTotals()
         );
 
         // Make it bold
@@ -308,9 +302,7 @@ public class PurchaseBookTableView {
         GridPane grid = new GridPane();
         
         // Get shortcuts for dynamic columns
-        List<Shortcut> purchaseBookShortcuts = StorageManager.loadShortcuts().stream()
-                .filter(Shortcut::isShowInPurchaseBook)
-                .collect(Collectors.toList());
+        List<Shortcut> purchaseBookShortcuts = shortcuts.getPurchaseBookShortcuts();
         
         int columnIndex = 0;
         
@@ -382,9 +374,7 @@ public class PurchaseBookTableView {
     }
 
     private void updateGridRowWithTotals(GridPane grid, double totalBeforeGst, double gst, String truckNumber, Map<String, Double> dividedAmounts) {
-        List<Shortcut> purchaseBookShortcuts = StorageManager.loadShortcuts().stream()
-                .filter(Shortcut::isShowInPurchaseBook)
-                .collect(Collectors.toList());
+        List<Shortcut> purchaseBookShortcuts = shortcuts.getPurchaseBookShortcuts();
         
         // Calculate column positions
         int shortcutStartIndex = 3; // After Party Name, Main Wt, sub Wt
@@ -416,21 +406,22 @@ public class PurchaseBookTableView {
         
     }
     
-    private Map<String, Double> calculateOperationAmounts(MainSlip mainSlip) {
-        Map<String, Double> amounts = new HashMap<>();
-        
-        if (mainSlip == null || mainSlip.getOperations() == null) {
-            return amounts;
-        }
-        
-        // Divide each operation amount by number of sub slips
-        for (MainSlip.Operation operation : mainSlip.getOperations()) {
-            String alphabet = operation.getShortcutId();
-            double totalAmount = operation.getAmount();
-            amounts.put(alphabet, totalAmount);
+    private Map<String, Double> calculateOperationAmounts(SlipTotals partyTotals) {
+        // Summed per shortcut by the store whenever the main slip is saved
+        return partyTotals != null ? new HashMap<>(partyTotals.getOperationTotals()) : new HashMap<>();
+    }
+
+    private SlipTotals calculateGrandTotals(Map<String, SlipTotals> dayTotals) {
+        SlipTotals grandTotals = new SlipTotals();
+        for (SlipTotals partyTotals : dayTotals.values()) {
+            grandTotals.setMainWeight(grandTotals.getMainWeight() + partyTotals.getMainWeight());
+            grandTotals.setTotalBeforeGst(grandTotals.getTotalBeforeGst() + partyTotals.getTotalBeforeGst());
+            grandTotals.setGst(grandTotals.getGst() + partyTotals.getGst());
+            for (Map.Entry<String, Double> op : partyTotals.getOperationTotals().entrySet()) {
+                grandTotals.getOperationTotals().merge(op.getKey(), op.getValue(), Double::sum);
+            }
         }
-        
-        return amounts;
+        return grandTotals;
     }
     
 
@@ -530,19 +521,14 @@ public class PurchaseBookTableView {
     }
 
     private PDDocument createPurchaseBookPDF() throws Exception {
-        double grandTotalMainWeight = 0;
-        double grandTotalAmount = 0;
-        double grandTotalGst = 0;
-        Map<String, Double> grandOperationTotals = new HashMap<>();
-
         PDDocument doc = new PDDocument();
         PDType1Font font = PDType1Font.HELVETICA;
         
         // Get data
-        Map<String, List<SubSlip>> partiesData = StorageManager.getSubSlipsGroupedByParty(selectedDate);
-        List<Shortcut> purchaseBookShortcuts = StorageManager.loadShortcuts().stream()
-                .filter(Shortcut::isShowInPurchaseBook)
-                .collect(Collectors.toList());
+        Map<String, List<SubSlip>> partiesData = data.getSubSlipsGroupedByParty(selectedDate);
+        Map<String, SlipTotals> dayTotals = data.getDayTotals(selectedDate);
+        SlipTotals grandTotals = calculateGrandTotals(dayTotals);
+        List<Shortcut> purchaseBookShortcuts = shortcuts.getPurchaseBookShortcuts();
         
         // Calculate dynamic column widths
         float pageWidth = PDRectangle.A4.getWidth();
@@ -583,20 +569,14 @@ public class PurchaseBookTableView {
             List<SubSlip> subSlips = entry.getValue();
             String partyName = StorageManager.getPartyNameById(partyId);
             
-            MainSlip mainSlip = StorageManager.getMainSlip(selectedDate, partyName);
-            Map<String, Double> operationAmounts = calculateOperationAmounts(mainSlip);
-            for (Map.Entry<String, Double> op : operationAmounts.entrySet()) {
-                grandOperationTotals.merge(op.getKey(), op.getValue(), Double::sum);
-            }
+            Map<String, Double> operationAmounts = calculateOperationAmounts(dayTotals.get(partyId));
             
             for (SubSlip subSlip : subSlips) {
-                grandTotalMainWeight += subSlip.getMainWeight();
-                grandTotalAmount += subSlip.getTotalBeforeGst();
-                grandTotalGst += subSlip.getGst();
-
                 // Check if we need a new page for this sub-slip
                 boolean isFirstSubSlipOfParty = (subSlip == subSlips.get(0));
-                float neededHeight = subSlip.getSubWeights().size() * 16f + 20f; // Reduced row height
+                double[] subWeights = subSlip.subWeightArray();
+                double[] calculatedPrices = subSlip.calculatedPriceArray();
+                float neededHeight = subWeights.length * 16f + 20f; // Reduced row height
                 if (currentY < neededHeight + 40f) {
                     cs.close();
                     currentPage = new PDPage(PDRectangle.A4);
@@ -610,14 +590,14 @@ public class PurchaseBookTableView {
                 }
                 
                 // Add sub-slip rows
-                for (int i = 0; i < subSlip.getSubWeights().size(); i++) {
+                for (int i = 0; i < subWeights.length; i++) {
                     boolean isFirstRowOfSlip = (i == 0);
                     
                     currentY = addPurchaseBookDataRow(cs, font, margin, currentY, columnWidths,
                         isFirstRowOfSlip ? partyName : "",
                         isFirstRowOfSlip ? subSlip.getMainWeight() : 0,
-                        subSlip.getSubWeights().get(i),
-                        subSlip.getCalculatedPrices().get(i),
+                        subWeights[i],
+                        calculatedPrices[i],
                         isFirstRowOfSlip ? subSlip.getTotalBeforeGst() : 0,
                         isFirstRowOfSlip ? subSlip.getGst() : 0,
                         isFirstRowOfSlip ? subSlip.getTruckNumber() : "",
@@ -650,13 +630,13 @@ public class PurchaseBookTableView {
         currentY = addPurchaseBookDataRow(
             cs, font, margin, currentY, columnWidths,
             "TOTAL",
-            grandTotalMainWeight,
+            grandTotals.getMainWeight(),
             0,
             0,
-            grandTotalAmount,
-            grandTotalGst,
+            grandTotals.getTotalBeforeGst(),
+            grandTotals.getGst(),
             "",
-            grandOperationTotals,
+            grandTotals.getOperationTotals(),
             purchaseBookShortcuts
         );
 
@@ -10,10 +10,14 @@ import javafx.scene.input.KeyCode;
 import javafx.scene.layout.VBox;
 
 import java.util.List;
+import java.util.concurrent.CompletionException;
 import java.util.stream.Collectors;
 
 class PartySelector {
 
+    // Matches shown while typing; the best ones come first anyway
+    private static final int SEARCH_LIMIT = 50;
+
     private final SlipContext ctx;
 
     PartySelector(SlipContext ctx) {
@@ -33,8 +37,9 @@ class PartySelector {
     }
 
     private void showPartySelectionDialog() {
-        List<Party> parties = StorageManager.loadParties();
-        
+        // Every party, most recently used first
+        List<String> partyNames = names(StorageManager.searchParties("", Integer.MAX_VALUE));
+
         // Create dialog
         Dialog<String> dialog = new Dialog<>();
         dialog.setTitle("Select Party");
@@ -51,10 +56,6 @@ class PartySelector {
         partyList.setPrefHeight(250);
         partyList.setPrefWidth(400);
         
-        List<String> partyNames = parties.stream()
-                .map(Party::getName)
-                .collect(Collectors.toList());
-        
         ObservableList<String> items = FXCollections.observableArrayList(partyNames);
         partyList.setItems(items);
         
@@ -84,10 +85,9 @@ class PartySelector {
             if (newText.trim().isEmpty()) {
                 partyList.setItems(FXCollections.observableArrayList(partyNames));
             } else {
-                List<String> filtered = partyNames.stream()
-                        .filter(name -> name.toLowerCase().contains(newText.toLowerCase()))
-                        .collect(Collectors.toList());
-                partyList.setItems(FXCollections.observableArrayList(filtered));
+                // Indexed search: prefixes, mid-word matches and near misses, best first
+                List<String> matches = names(StorageManager.searchParties(newText, SEARCH_LIMIT));
+                partyList.setItems(FXCollections.observableArrayList(matches));
             }
             // Auto-select first item after filtering
             if (!partyList.getItems().isEmpty()) {
@@ -176,29 +176,45 @@ class PartySelector {
         }
     }
 
+    private static List<String> names(List<Party> parties) {
+        return parties.stream()
+                .map(Party::getName)
+                .collect(Collectors.toList());
+    }
+
     private void handlePartySelection(String partyName) {
         ctx.partyField.setText(partyName);
         
-        List<Party> parties = StorageManager.loadParties();
-        Party match = parties.stream()
-                .filter(p -> p.getName().equalsIgnoreCase(partyName))
-                .findFirst()
-                .orElse(null);
+        Party match = StorageManager.findPartyByName(partyName);
         
         if (match != null) {
             ctx.selectedParty = match;
         } else {
             // Auto-add new party
+            List<Party> parties = StorageManager.loadParties();
             int newId = parties.isEmpty() ? 1 : parties.get(parties.size() - 1).getId() + 1;
             Party newParty = new Party(newId, partyName);
             parties.add(newParty);
-            StorageManager.saveParties(parties);
+            StorageManager.saveParties(parties).whenComplete((ignored, error) -> {
+                if (error != null) Platform.runLater(() -> showPartySaveFailed(error));
+            });
             ctx.selectedParty = newParty;
         }
         
         Platform.runLater(() -> ctx.truckField.requestFocus());
     }
 
+    /** The party stays selected for this slip; only the party list on disk is behind. */
+    private void showPartySaveFailed(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        Alert alert = new Alert(Alert.AlertType.ERROR);
+        alert.setTitle("Error");
+        alert.setHeaderText("Party was not saved");
+        alert.setContentText("Failed to save parties: " + cause.getMessage());
+        alert.initOwner(ctx.overlay.getScene().getWindow());
+        alert.showAndWait();
+    }
+
     void handlePartyEnter() {
         // If party field is empty, show dialog
         if (ctx.partyField.getText().trim().isEmpty()) {
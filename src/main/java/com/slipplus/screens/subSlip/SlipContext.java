@@ -24,6 +24,7 @@ public class SlipContext {
     // Top fields
     TextField partyField;
     TextField truckField;
+    Label truckWarning;
 
     // Left-side fields
     TextField price1Field;
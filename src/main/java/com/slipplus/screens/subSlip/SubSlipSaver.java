@@ -8,6 +8,7 @@ import javafx.scene.control.TextField;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 class SubSlipSaver {
 
@@ -19,7 +20,8 @@ class SubSlipSaver {
         this.priceEngine = priceEngine;
     }
 
-    void saveSlip() {
+    /** Reads the form on the FX thread and queues the save; completes once it is on disk. */
+    CompletableFuture<Void> saveSlip() {
         try {
             String partyName = ctx.partyField.getText().trim();
             String truck = ctx.truckField.getText().trim();
@@ -31,7 +33,7 @@ class SubSlipSaver {
             double finalAmount = totalBeforeGst + gst;
 
             if (partyName.isEmpty() || mainWeight <= 0 || totalBeforeGst <= 0) {
-                return;
+                return CompletableFuture.completedFuture(null);
             }
 
             List<Double> subWeights = new ArrayList<>();
@@ -85,10 +87,11 @@ class SubSlipSaver {
                     ? String.valueOf(ctx.selectedParty.getId())
                     : partyName;
 
-            StorageManager.saveSubSlip(LocalDate.now(), partyKey, slip);
+            return StorageManager.saveSubSlip(LocalDate.now(), partyKey, slip);
 
         } catch (Exception e) {
             e.printStackTrace();
+            return CompletableFuture.failedFuture(e);
         }
     }
 
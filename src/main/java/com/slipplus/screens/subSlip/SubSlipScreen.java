@@ -14,6 +14,8 @@ import javafx.scene.layout.*;
 import javafx.scene.text.Font;
 import javafx.stage.Stage;
 
+import java.util.concurrent.CompletionException;
+
 public class SubSlipScreen {
 
     private final SlipContext ctx = new SlipContext();
@@ -21,6 +23,7 @@ public class SubSlipScreen {
     private SwBreakdownManager swManager;
     private PriceCalculationEngine priceEngine;
     private SubSlipSaver saver;
+    private TruckDuplicateChecker truckChecker;
 
     public void start(Stage stage) {
 
@@ -39,6 +42,7 @@ public class SubSlipScreen {
         priceEngine   = new PriceCalculationEngine(ctx);
         swManager     = new SwBreakdownManager(ctx, priceEngine);
         saver         = new SubSlipSaver(ctx, priceEngine);
+        truckChecker  = new TruckDuplicateChecker(ctx);
         buildRightFields();
         buildBottomButtons();
         buildLoader();
@@ -88,7 +92,16 @@ public class SubSlipScreen {
         ctx.truckField = makeField("", 260);
         ctx.truckField.setPromptText("Truck Number");
 
-        HBox right = new HBox(ctx.truckField);
+        // Duplicate-entry warning under the truck number; hidden until there is one
+        ctx.truckWarning = new Label();
+        ctx.truckWarning.setStyle("-fx-font-size: 14px; -fx-text-fill: #b00020; -fx-font-weight: bold; -fx-background-color: #fff3cd; -fx-padding: 6px; -fx-background-radius: 5px;");
+        ctx.truckWarning.setWrapText(true);
+        ctx.truckWarning.setMaxWidth(260);
+        ctx.truckWarning.setVisible(false);
+
+        VBox truckBox = new VBox(6, ctx.truckField, ctx.truckWarning);
+        truckBox.setAlignment(Pos.TOP_RIGHT);
+        HBox right = new HBox(truckBox);
         right.setAlignment(Pos.TOP_RIGHT);
         right.setPadding(new Insets(20, 24, 0, 0));
 
@@ -375,14 +388,23 @@ public class SubSlipScreen {
         ctx.loaderOverlay.setVisible(true);
         ctx.loaderOverlay.setManaged(true);
 
-        new Thread(() -> {
-            saver.saveSlip();
-            Platform.runLater(() -> {
-                ctx.loaderOverlay.setVisible(false);
-                ctx.loaderOverlay.setManaged(false);
+        saver.saveSlip().whenComplete((ignored, error) -> Platform.runLater(() -> {
+            ctx.loaderOverlay.setVisible(false);
+            ctx.loaderOverlay.setManaged(false);
+            if (error == null) {
                 resetAll();
-            });
-        }).start();
+                return;
+            }
+            // Keep what was typed so the slip can be saved again
+            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause() : error;
+            Alert alert = new Alert(Alert.AlertType.ERROR);
+            alert.setTitle("Error");
+            alert.setHeaderText("Slip was not saved");
+            alert.setContentText("Failed to save slip: " + cause.getMessage());
+            alert.initOwner(ctx.overlay.getScene().getWindow());
+            alert.showAndWait();
+        }));
     }
 
     private void resetAll() {
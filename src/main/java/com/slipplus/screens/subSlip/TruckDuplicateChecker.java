@@ -0,0 +1,60 @@
+package com.slipplus.screens.subSlip;
+
+import com.slipplus.core.StorageManager;
+import com.slipplus.models.TruckSighting;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+/**
+ * Warns when the truck number just typed was already entered today or in
+ * the last few hours, which is usually the same weighment saved twice.
+ * The warning does not block saving; a truck may genuinely come back.
+ */
+class TruckDuplicateChecker {
+
+    // Also catches a truck entered shortly before midnight and again after
+    private static final int WINDOW_HOURS = 12;
+    private static final DateTimeFormatter TIME_FMT = DateTimeFormatter.ofPattern("HH:mm");
+    private static final DateTimeFormatter DATE_FMT = DateTimeFormatter.ofPattern("dd-MM-yyyy");
+
+    private final SlipContext ctx;
+
+    TruckDuplicateChecker(SlipContext ctx) {
+        this.ctx = ctx;
+        ctx.truckField.focusedProperty().addListener((obs, wasFocused, focused) -> {
+            if (!focused) check();
+        });
+        // Stale once the number is edited
+        ctx.truckField.textProperty().addListener((obs, oldText, newText) -> clear());
+    }
+
+    void check() {
+        String truck = ctx.truckField.getText().trim();
+        if (truck.isEmpty()) {
+            clear();
+            return;
+        }
+        LocalDate today = LocalDate.now();
+        List<TruckSighting> earlier = StorageManager.findRecentTruckEntries(truck, today, WINDOW_HOURS);
+        if (earlier.isEmpty()) {
+            clear();
+            return;
+        }
+        // Newest one is the most likely duplicate
+        TruckSighting last = earlier.get(earlier.size() - 1);
+        String party = StorageManager.getPartyNameById(last.getPartyId());
+        String when = last.getDate().equals(today) ? "today" : "on " + last.getDate().format(DATE_FMT);
+        if (last.getSavedAt() != null) when += " at " + last.getSavedAt().format(TIME_FMT);
+        String text = "Already entered " + when + " for " + party;
+        if (earlier.size() > 1) text += " (+" + (earlier.size() - 1) + " more)";
+        ctx.truckWarning.setText(text);
+        ctx.truckWarning.setVisible(true);
+    }
+
+    void clear() {
+        ctx.truckWarning.setText("");
+        ctx.truckWarning.setVisible(false);
+    }
+}
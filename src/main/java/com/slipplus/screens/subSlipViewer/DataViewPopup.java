@@ -22,6 +22,7 @@ import javafx.stage.Stage;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
+import java.util.concurrent.CompletionException;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
@@ -34,6 +35,8 @@ public class DataViewPopup implements BasePopup {
     private String selectedParty;
     private BiConsumer<LocalDate, String> onDataAction;
     private Consumer<LocalDate> onBackToParty;
+    // Tombstone of the latest delete in this view, for CTRL+Z
+    private String lastDeletion;
     
     public DataViewPopup(Stage parentStage, LocalDate selectedDate, String selectedParty,
                         BiConsumer<LocalDate, String> onDataAction, Consumer<LocalDate> onBackToParty) {
@@ -114,7 +117,7 @@ public class DataViewPopup implements BasePopup {
         root.setTop(header);
         
         // Footer with keyboard shortcuts
-        Label footer = new Label("ENTER = Select/Unselect   DELETE = Delete Selected   F2 = Delete All   ESC = Back   F4 = Main Screen");
+        Label footer = new Label("ENTER = Select/Unselect   DELETE = Delete Selected   F2 = Delete All   CTRL+Z = Undo Delete   ESC = Back   F4 = Main Screen");
         footer.setStyle("-fx-font-size: 12px; -fx-text-fill: black;");
         footer.setAlignment(Pos.CENTER);
         root.setBottom(footer);
@@ -136,6 +139,12 @@ public class DataViewPopup implements BasePopup {
                     deleteAllWithConfirmation();
                     e.consume();
                 }
+                case Z -> {
+                    if (e.isShortcutDown()) {
+                        undoLastDelete();
+                        e.consume();
+                    }
+                }
                 case ESCAPE -> {
                     close();
                     onBackToParty.accept(selectedDate);
@@ -181,27 +190,32 @@ public class DataViewPopup implements BasePopup {
         
         confirm.showAndWait().ifPresent(response -> {
             if (response == ButtonType.OK) {
-                // Extract SubSlip objects from selected rows
-                List<SubSlip> slipsToDelete = selectedRows.stream()
-                        .map(SubSlipRow::getSubSlip)
+                // Delete by slip ID so a look-alike truck on the same day is never touched
+                List<String> idsToDelete = selectedRows.stream()
+                        .map(row -> row.getSubSlip().getId())
                         .toList();
                 
-                // Convert party name to ID for storage operations
-                String partyId = StorageManager.getPartyIdByName(selectedParty);
-                
-                // Delete from storage
-                StorageManager.deleteSubSlips(selectedDate, partyId, slipsToDelete);
+                List<SubSlipRow> deletedRows = List.copyOf(selectedRows);
                 
-                // Remove selected rows from table
-                tableData.removeAll(selectedRows);
-                
-                // Check if table is now empty
-                if (tableData.isEmpty()) {
-                    showAlert("All Data Deleted", "All sub-slips for this party have been deleted.");
-                    close();
-                    // Go back to party selection to refresh the list
-                    onBackToParty.accept(selectedDate);
-                }
+                // Delete from storage, kept for a while so it can be undone
+                StorageManager.deleteSubSlipsById(selectedDate, idsToDelete)
+                        .whenComplete((tombstoneId, error) -> Platform.runLater(() -> {
+                            if (error != null) {
+                                showDeleteFailed(error);
+                                return;
+                            }
+                            lastDeletion = tombstoneId;
+                            
+                            // Remove selected rows from table
+                            tableData.removeAll(deletedRows);
+                            
+                            // Check if table is now empty
+                            if (tableData.isEmpty() && confirmAllDeleted()) {
+                                close();
+                                // Go back to party selection to refresh the list
+                                onBackToParty.accept(selectedDate);
+                            }
+                        }));
             }
         });
     }
@@ -218,17 +232,84 @@ public class DataViewPopup implements BasePopup {
                 // Convert party name to ID for storage operations
                 String partyId = StorageManager.getPartyIdByName(selectedParty);
                 
-                // Delete all from storage
-                StorageManager.deleteAllSubSlipsForParty(selectedDate, partyId);
-                
-                tableData.clear();
-                showAlert("All Data Deleted", "All sub-slips for this party have been deleted.");
-                close();
-                // Go back to party selection to refresh the list
-                onBackToParty.accept(selectedDate);
+                // Delete all from storage, kept for a while so it can be undone
+                StorageManager.deleteAllSubSlipsForParty(selectedDate, partyId)
+                        .whenComplete((tombstoneId, error) -> Platform.runLater(() -> {
+                            if (error != null) {
+                                showDeleteFailed(error);
+                                return;
+                            }
+                            lastDeletion = tombstoneId;
+                            
+                            tableData.clear();
+                            if (confirmAllDeleted()) {
+                                close();
+                                // Go back to party selection to refresh the list
+                                onBackToParty.accept(selectedDate);
+                            }
+                        }));
             }
         });
     }
+
+    /** The rows stay as they were; what the store holds is reloaded in case part of it went through. */
+    private void showDeleteFailed(Throwable error) {
+        showStorageError("Sub-slips were not deleted", "Failed to delete sub-slips: ", error);
+        reloadRows();
+    }
+
+    /** Says everything is gone, offering an undo; returns false if the delete was undone. */
+    private boolean confirmAllDeleted() {
+        ButtonType undo = new ButtonType("Undo", ButtonBar.ButtonData.OTHER);
+        Alert alert = new Alert(Alert.AlertType.INFORMATION);
+        alert.setTitle("All Data Deleted");
+        alert.setHeaderText(null);
+        alert.setContentText("All sub-slips for this party have been deleted.");
+        alert.getButtonTypes().setAll(ButtonType.OK, undo);
+        alert.initOwner(popup);
+        if (alert.showAndWait().orElse(ButtonType.OK) != undo) return true;
+        undoLastDelete();
+        return false;
+    }
+
+    private void undoLastDelete() {
+        if (lastDeletion == null) {
+            showAlert("Nothing to Undo", "No delete to undo in this view.");
+            return;
+        }
+        String tombstoneId = lastDeletion;
+        StorageManager.undoDelete(tombstoneId).whenComplete((undone, error) -> Platform.runLater(() -> {
+            if (error != null) {
+                // The delete stays in the trash, so Undo can be tried again
+                showStorageError("Delete was not undone", "Failed to restore sub-slips: ", error);
+            } else {
+                if (!undone) {
+                    showAlert("Cannot Undo", "Deletes can only be undone for "
+                            + StorageManager.getUndoMinutes() + " minutes.");
+                }
+                if (tombstoneId.equals(lastDeletion)) lastDeletion = null;
+            }
+            // Restored slips come back at the end of the list
+            reloadRows();
+        }));
+    }
+
+    private void reloadRows() {
+        tableData.clear();
+        for (SubSlip slip : StorageManager.getSubSlipsForDateAndParty(selectedDate, selectedParty)) {
+            tableData.add(new SubSlipRow(slip));
+        }
+    }
+
+    private void showStorageError(String header, String message, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        Alert alert = new Alert(Alert.AlertType.ERROR);
+        alert.setTitle("Error");
+        alert.setHeaderText(header);
+        alert.setContentText(message + cause.getMessage());
+        alert.initOwner(popup);
+        alert.showAndWait();
+    }
     
     private void showNoDataMessage(Stage parentStage) {
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd-MM-yyyy");
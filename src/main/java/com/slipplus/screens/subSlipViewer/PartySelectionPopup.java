@@ -11,6 +11,7 @@ import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.input.KeyCode;
 import javafx.scene.layout.BorderPane;
+import javafx.scene.layout.VBox;
 import javafx.stage.Modality;
 import javafx.stage.Screen;
 import javafx.stage.Stage;
@@ -18,13 +19,16 @@ import javafx.stage.Stage;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.function.BiConsumer;
 
 public class PartySelectionPopup implements BasePopup {
     
     private Stage popup;
     private ListView<PartyItem> partyList;
+    private TextField searchField;
     private List<PartyItem> availableParties;
     private LocalDate selectedDate;
     private BiConsumer<LocalDate, String> onPartySelected;
@@ -64,14 +68,10 @@ public class PartySelectionPopup implements BasePopup {
         
         // Convert to PartyItem objects with names
         availableParties = new ArrayList<>();
-        List<Party> allParties = StorageManager.loadParties();
         
         for (String partyId : partyIds) {
-            String partyName = allParties.stream()
-                    .filter(p -> String.valueOf(p.getId()).equals(partyId))
-                    .map(Party::getName)
-                    .findFirst()
-                    .orElse("Unknown Party");
+            Party party = StorageManager.findPartyById(partyId);
+            String partyName = party != null ? party.getName() : "Unknown Party";
             availableParties.add(new PartyItem(partyId, partyName));
         }
         
@@ -116,9 +116,17 @@ public class PartySelectionPopup implements BasePopup {
         Label header = new Label("Select Party for Date: " + selectedDate.format(formatter));
         header.setStyle("-fx-font-size: 16px; -fx-text-fill: black; -fx-font-weight: bold;");
         header.setAlignment(Pos.CENTER);
-        root.setTop(header);
+
+        // Narrows the list as the operator types, through the shared party search index
+        searchField = new TextField();
+        searchField.setPromptText("Type to search...");
+        searchField.textProperty().addListener((obs, oldText, newText) -> filterParties(newText));
+
+        VBox top = new VBox(6, header, searchField);
+        top.setAlignment(Pos.CENTER);
+        root.setTop(top);
         
-        Label footer = new Label("ENTER = Select   ESC = Back to Date   F4 = Main Screen");
+        Label footer = new Label("ENTER = Select   UP/DOWN = Move   ESC = Back to Date   F4 = Main Screen");
         footer.setStyle("-fx-font-size: 14px; -fx-text-fill: black;");
         footer.setAlignment(Pos.CENTER);
         root.setBottom(footer);
@@ -142,13 +150,38 @@ public class PartySelectionPopup implements BasePopup {
                     com.slipplus.core.AppNavigator.startApp((Stage) popup.getOwner());
                     e.consume();
                 }
+                case UP, DOWN -> {
+                    // Keep typing in the search field while moving through the list
+                    if (searchField.isFocused()) {
+                        if (e.getCode() == KeyCode.UP) partyList.getSelectionModel().selectPrevious();
+                        else partyList.getSelectionModel().selectNext();
+                        partyList.scrollTo(partyList.getSelectionModel().getSelectedIndex());
+                        e.consume();
+                    }
+                }
             }
         });
         
         popup.setScene(scene);
         popup.centerOnScreen();
         
-        Platform.runLater(() -> partyList.requestFocus());
+        Platform.runLater(() -> searchField.requestFocus());
+    }
+
+    private void filterParties(String query) {
+        if (query == null || query.isBlank()) {
+            partyList.setItems(FXCollections.observableArrayList(availableParties));
+        } else {
+            Map<String, PartyItem> byId = new LinkedHashMap<>();
+            for (PartyItem item : availableParties) byId.put(item.getId(), item);
+            List<PartyItem> matches = new ArrayList<>();
+            for (Party party : StorageManager.searchParties(query, Integer.MAX_VALUE, byId.keySet())) {
+                PartyItem item = byId.get(String.valueOf(party.getId()));
+                if (item != null) matches.add(item);
+            }
+            partyList.setItems(FXCollections.observableArrayList(matches));
+        }
+        partyList.getSelectionModel().selectFirst();
     }
     
     private void selectParty() {
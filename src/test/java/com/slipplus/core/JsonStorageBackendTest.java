@@ -0,0 +1,261 @@
+package com.slipplus.core;
+
+import com.slipplus.models.SubSlip;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JsonStorageBackendTest extends StorageBackendContractTest {
+
+    @Override
+    StorageBackend open(File dataDir) {
+        return new JsonStorageBackend(dataDir.getPath(), MAPPER, StorageFormat.JSON);
+    }
+
+    File shardFile(LocalDate date) {
+        return new File(new File(dataDir, "days"), date + ".json");
+    }
+
+    /** Enough saves to start a checkpoint; close() waits for it to be written. */
+    void saveUntilCheckpoint(LocalDate date, LocalDate otherDate) {
+        CompletableFuture<Void> last = null;
+        for (int i = 0; i < JsonStorageBackend.CHECKPOINT_THRESHOLD; i++) {
+            last = backend.addSubSlip(i % 2 == 0 ? date : otherDate, "1", slip("T" + i, 10));
+        }
+        last.join();
+    }
+
+    // ---------- Journal ----------
+
+    @Test
+    void aSaveOnlyAppendsToTheJournal() throws Exception {
+        SubSlip first = save(DAY, "1", "T1", 100);
+        SubSlip second = save(DAY, "1", "T2", 200);
+
+        List<String> lines = Files.readAllLines(new File(dataDir, "slips.journal").toPath());
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0).contains(first.getId()));
+        assertTrue(lines.get(1).contains(second.getId()));
+        // No snapshot of the day is rewritten for a save
+        assertFalse(shardFile(DAY).exists());
+    }
+
+    // ---------- Day shards ----------
+
+    @Test
+    void aCheckpointWritesOneShardPerDate() throws Exception {
+        saveUntilCheckpoint(DAY, NEXT_DAY);
+        backend.close();
+
+        assertTrue(shardFile(DAY).exists());
+        assertTrue(shardFile(NEXT_DAY).exists());
+        assertFalse(new File(dataDir, "sub_slips.json").exists());
+        DayShard day = StorageFormat.JSON.shardReader().readValue(shardFile(DAY));
+        assertEquals(JsonStorageBackend.CHECKPOINT_THRESHOLD / 2, day.getSubSlips().get("1").size());
+
+        backend = open(dataDir);
+        assertEquals(List.of(DAY, NEXT_DAY), backend.getDates());
+        assertEquals(JsonStorageBackend.CHECKPOINT_THRESHOLD / 2, backend.getSubSlips(NEXT_DAY, "1").size());
+    }
+
+    @Test
+    void aDateIsOnlyReadFromItsShardWhenFirstAskedFor() throws Exception {
+        saveUntilCheckpoint(DAY, NEXT_DAY);
+        backend.close();
+
+        backend = open(dataDir);
+        assertEquals(List.of(DAY, NEXT_DAY), backend.getDates());
+        backend.getSubSlips(DAY, "1");
+        // Changed on disk after startup; only seen if the date was not loaded yet
+        DayShard next = StorageFormat.JSON.shardReader().readValue(shardFile(NEXT_DAY));
+        next.getSubSlips().get("1").remove(0);
+        StorageFormat.JSON.shardWriter().writeValue(shardFile(NEXT_DAY), next);
+
+        assertEquals(JsonStorageBackend.CHECKPOINT_THRESHOLD / 2 - 1, backend.getSubSlips(NEXT_DAY, "1").size());
+    }
+
+    // ---------- Checkpoints ----------
+
+    int slipCount() {
+        return backend.getSubSlips(DAY, "1").size() + backend.getSubSlips(NEXT_DAY, "1").size();
+    }
+
+    @Test
+    void aCheckpointFoldsTheJournalIntoTheShards() throws Exception {
+        saveUntilCheckpoint(DAY, NEXT_DAY);
+        backend.close();
+
+        File journal = new File(dataDir, "slips.journal");
+        assertTrue(!journal.exists() || journal.length() == 0);
+        assertFalse(new File(dataDir, "slips.journal.checkpoint").exists());
+
+        backend = open(dataDir);
+        assertEquals(JsonStorageBackend.CHECKPOINT_THRESHOLD, slipCount());
+    }
+
+    @Test
+    void savesMadeWhileACheckpointRunsAreKept() throws Exception {
+        saveUntilCheckpoint(DAY, NEXT_DAY);
+        for (int i = 0; i < 20; i++) save(DAY, "1", "L" + i, 10);
+        backend.close();
+
+        backend = open(dataDir);
+        assertEquals(JsonStorageBackend.CHECKPOINT_THRESHOLD + 20, slipCount());
+    }
+
+    @Test
+    void aCheckpointThatNeverCommittedIsReplayedFromItsSegment() throws Exception {
+        save(DAY, "1", "T1", 100);
+        save(DAY, "1", "T2", 200);
+        backend.close();
+        // A crash after the rotation, with an empty shard half-written for the date
+        SlipJournal journal = new SlipJournal(new File(dataDir, "slips.journal"), MAPPER);
+        journal.replay(entry -> {});
+        journal.rotate();
+        new SlipFileStore(dataDir.getPath(), MAPPER, StorageFormat.JSON).prepareShard(DAY.toString(), new DayShard());
+
+        backend = open(dataDir);
+        assertEquals(List.of("T1", "T2"), trucks(backend.getSubSlips(DAY, "1")));
+        assertFalse(new File(shardFile(DAY).getPath() + ".next").exists());
+    }
+
+    @Test
+    void aCommittedCheckpointIsFinishedOnStartup() throws Exception {
+        saveUntilCheckpoint(DAY, NEXT_DAY);
+        backend.close();
+        // A crash after the commit, before the shard files were moved into place
+        SlipFileStore fileStore = new SlipFileStore(dataDir.getPath(), MAPPER, StorageFormat.JSON);
+        fileStore.prepareShard(NEXT_DAY.toString(), null);
+        fileStore.commitCheckpoint();
+
+        backend = open(dataDir);
+        assertTrue(backend.getSubSlips(NEXT_DAY, "1").isEmpty());
+        assertFalse(shardFile(NEXT_DAY).exists());
+        assertFalse(fileStore.hasCommittedCheckpoint());
+    }
+
+    // ---------- Another window on the same directory ----------
+
+    @Test
+    void anotherInstancesSavesAreSeenBeforeThisOneWrites() throws Exception {
+        StorageBackend other = open(dataDir);
+        try {
+            other.getDates();
+            SubSlip theirs = save(DAY, "1", "T1", 100);
+
+            other.addSubSlip(DAY, "2", slip("T2", 200)).join();
+
+            assertEquals(List.of(theirs.getId()), other.getSubSlips(DAY, "1").stream().map(SubSlip::getId).toList());
+            // The watcher may already have picked it up; the next write does for sure
+            save(DAY, "1", "T3", 300);
+            assertEquals(List.of("T2"), trucks(backend.getSubSlips(DAY, "2")));
+        } finally {
+            other.close();
+        }
+    }
+
+    @Test
+    void anotherInstancesCheckpointIsFollowed() throws Exception {
+        StorageBackend other = open(dataDir);
+        try {
+            other.getDates();
+            save(DAY, "1", "T0", 10);
+            other.addSubSlip(NEXT_DAY, "2", slip("X", 10)).join();
+
+            // The other instance has not read these when the journal is rotated and folded away
+            saveUntilCheckpoint(DAY, NEXT_DAY);
+            backend.close();
+            other.addSubSlip(NEXT_DAY, "2", slip("Y", 10)).join();
+
+            assertEquals(JsonStorageBackend.CHECKPOINT_THRESHOLD / 2 + 1, other.getSubSlips(DAY, "1").size());
+            assertEquals(List.of("X", "Y"), trucks(other.getSubSlips(NEXT_DAY, "2")));
+        } finally {
+            other.close();
+        }
+    }
+
+    // ---------- Month archives ----------
+
+    static final LocalDate OLD_DAY = LocalDate.of(2020, 1, 5);
+    static final LocalDate OLD_NEXT_DAY = OLD_DAY.plusDays(1);
+
+    File archiveFile(StorageFormat format) {
+        return new File(new File(dataDir, "archive"), "2020-01" + format.suffix() + ".gz");
+    }
+
+    /** Old dates in shard files, then a start with archiving on, which archives them before close returns. */
+    void archiveOldDates() throws Exception {
+        saveUntilCheckpoint(OLD_DAY, OLD_NEXT_DAY);
+        backend.close();
+        System.setProperty("slipplus.storage.archiveAfterDays", "30");
+        try {
+            backend = open(dataDir);
+            backend.getDates();
+            backend.close();
+        } finally {
+            System.clearProperty("slipplus.storage.archiveAfterDays");
+        }
+    }
+
+    @Test
+    void archivingIsOffByDefault() throws Exception {
+        saveUntilCheckpoint(OLD_DAY, OLD_NEXT_DAY);
+        backend.close();
+
+        backend = open(dataDir);
+        backend.getDates();
+        backend.close();
+
+        assertTrue(shardFile(OLD_DAY).exists());
+        assertFalse(new File(dataDir, "archive").exists());
+    }
+
+    @Test
+    void oldMonthsMoveIntoAnArchiveAndStayReadable() throws Exception {
+        archiveOldDates();
+
+        assertTrue(archiveFile(StorageFormat.JSON).exists());
+        assertFalse(shardFile(OLD_DAY).exists());
+        assertFalse(shardFile(OLD_NEXT_DAY).exists());
+
+        backend = open(dataDir);
+        assertEquals(List.of(OLD_DAY, OLD_NEXT_DAY), backend.getDates());
+        assertEquals(JsonStorageBackend.CHECKPOINT_THRESHOLD / 2, backend.getSubSlips(OLD_DAY, "1").size());
+    }
+
+    @Test
+    void editingAnArchivedDateOverridesTheArchivedCopy() throws Exception {
+        archiveOldDates();
+
+        backend = open(dataDir);
+        SubSlip gone = backend.getSubSlips(OLD_DAY, "1").get(0);
+        backend.deleteSubSlipsById(OLD_DAY, List.of(gone.getId())).join();
+        backend.deleteParty(OLD_NEXT_DAY, "1").join();
+        backend.close();
+
+        backend = open(dataDir);
+        assertEquals(List.of(OLD_DAY), backend.getDates());
+        assertEquals(JsonStorageBackend.CHECKPOINT_THRESHOLD / 2 - 1, backend.getSubSlips(OLD_DAY, "1").size());
+        assertTrue(backend.getSubSlips(OLD_NEXT_DAY, "1").isEmpty());
+    }
+
+    @Test
+    void theConverterRewritesArchivesToo() throws Exception {
+        archiveOldDates();
+
+        assertEquals(1, StorageFormatConverter.convertArchives(new File(dataDir, "archive"), StorageFormat.SMILE));
+
+        assertTrue(archiveFile(StorageFormat.SMILE).exists());
+        assertFalse(archiveFile(StorageFormat.JSON).exists());
+        backend = open(dataDir);
+        assertEquals(JsonStorageBackend.CHECKPOINT_THRESHOLD / 2, backend.getSubSlips(OLD_NEXT_DAY, "1").size());
+    }
+}
@@ -0,0 +1,184 @@
+package com.slipplus.core;
+
+import com.slipplus.models.MainSlip;
+import com.slipplus.models.SubSlip;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SlipJournalTest {
+
+    @TempDir
+    File dataDir;
+
+    SlipJournal open() {
+        return new SlipJournal(new File(dataDir, "slips.journal"), StorageFormat.JSON.mapper());
+    }
+
+    static SlipJournal.Entry delete(String id) {
+        return SlipJournal.Entry.deleteSubSlipsById("2024-05-01", List.of(id));
+    }
+
+    static List<String> replayIds(SlipJournal journal) {
+        List<String> ids = new ArrayList<>();
+        journal.replay(entry -> ids.addAll(entry.getIds()));
+        return ids;
+    }
+
+    @Test
+    void recordsReplayInTheOrderTheyWereAppended() throws Exception {
+        SubSlip slip = StorageBackendContractTest.slip("T1", 100);
+        SlipJournal journal = open();
+        journal.append(List.of(SlipJournal.Entry.addSubSlip("2024-05-01", "1", slip), delete("a")));
+        journal.append(List.of(SlipJournal.Entry.putMainSlip("2024-05-01",
+                new MainSlip(LocalDate.of(2024, 5, 1), "Party", 100, List.of(), 100))));
+
+        SlipJournal reopened = open();
+        List<SlipJournal.Entry> entries = new ArrayList<>();
+        reopened.replay(entries::add);
+
+        assertEquals(List.of(SlipJournal.ADD_SUB_SLIP, SlipJournal.DELETE_SUB_SLIPS_BY_ID, SlipJournal.PUT_MAIN_SLIP),
+                entries.stream().map(SlipJournal.Entry::getOp).toList());
+        assertEquals(slip.getId(), entries.get(0).getSlip().getId());
+        assertEquals("1", entries.get(0).getParty());
+        assertEquals("Party", entries.get(2).getMainSlip().getPartyName());
+        assertEquals(3, reopened.size());
+    }
+
+    @Test
+    void aTornLastRecordIsSkippedOnReplay() throws Exception {
+        SlipJournal journal = open();
+        journal.append(List.of(delete("a"), delete("b")));
+        Files.writeString(new File(dataDir, "slips.journal").toPath(), "{\"op\":\"DELETE_SUB_SL",
+                StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        assertEquals(List.of("a", "b"), replayIds(open()));
+    }
+
+    @Test
+    void recordAppendedAfterATornLineSurvivesReplay() throws Exception {
+        SlipJournal journal = open();
+        journal.append(List.of(delete("a")));
+        // What a process that crashed mid-append leaves behind
+        Files.writeString(new File(dataDir, "slips.journal").toPath(), "{\"op\":\"DELETE_SUB_SL",
+                StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        SlipJournal reopened = open();
+        replayIds(reopened);
+        reopened.append(List.of(delete("b")));
+
+        assertEquals(List.of("a", "b"), replayIds(open()));
+    }
+
+    @Test
+    void aRotatedSegmentReplaysAheadOfTheJournalUntilItIsDropped() throws Exception {
+        SlipJournal journal = open();
+        journal.append(List.of(delete("a")));
+        journal.rotate();
+        journal.append(List.of(delete("b")));
+
+        assertEquals(List.of("a", "b"), replayIds(open()));
+        // Once the checkpoint holding the segment has committed
+        journal.deleteSegment();
+        assertEquals(List.of("b"), replayIds(open()));
+    }
+
+    @Test
+    void rotatingOntoATornSegmentKeepsTheJournalsRecords() throws Exception {
+        SlipJournal journal = open();
+        journal.append(List.of(delete("a")));
+        journal.rotate();
+        Files.writeString(new File(dataDir, "slips.journal.checkpoint").toPath(), "{\"op\":",
+                StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        journal.append(List.of(delete("b")));
+        // The earlier checkpoint never committed, so this appends onto its segment
+        journal.rotate();
+
+        assertEquals(List.of("a", "b"), replayIds(open()));
+    }
+
+    // ---------- Another process on the same journal ----------
+
+    static List<String> readNewIds(SlipJournal journal) throws Exception {
+        List<String> ids = new ArrayList<>();
+        journal.readNew(entry -> ids.addAll(entry.getIds()));
+        return ids;
+    }
+
+    @Test
+    void recordsAnotherWriterAppendedAreReadOnce() throws Exception {
+        SlipJournal mine = open();
+        SlipJournal theirs = open();
+        replayIds(mine);
+        replayIds(theirs);
+
+        theirs.append(List.of(delete("a")));
+        assertTrue(mine.hasUnread());
+        assertEquals(List.of("a"), readNewIds(mine));
+        assertFalse(mine.hasUnread());
+
+        mine.append(List.of(delete("b")));
+        assertEquals(List.of("b"), readNewIds(theirs));
+        assertEquals(List.of(), readNewIds(mine));
+    }
+
+    @Test
+    void aRecordStillBeingWrittenIsLeftForTheNextRead() throws Exception {
+        SlipJournal mine = open();
+        replayIds(mine);
+        String line = new String(StorageFormat.JSON.mapper().writeValueAsBytes(delete("a")), StandardCharsets.UTF_8);
+        Path file = new File(dataDir, "slips.journal").toPath();
+
+        Files.writeString(file, line.substring(0, 10), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        assertEquals(List.of(), readNewIds(mine));
+        Files.writeString(file, line.substring(10) + "\n", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        assertEquals(List.of("a"), readNewIds(mine));
+    }
+
+    @Test
+    void aRotationByAnotherWriterIsFollowedIntoTheSegment() throws Exception {
+        SlipJournal mine = open();
+        SlipJournal theirs = open();
+        replayIds(mine);
+        replayIds(theirs);
+        theirs.append(List.of(delete("a")));
+        readNewIds(mine);
+
+        theirs.append(List.of(delete("b"), delete("c")));
+        theirs.rotate();
+        theirs.append(List.of(delete("d")));
+
+        List<String> ids = new ArrayList<>();
+        assertEquals(2, mine.readRotated(entry -> ids.addAll(entry.getIds())));
+        assertEquals(List.of("b", "c"), ids);
+        assertEquals(List.of("d"), readNewIds(mine));
+    }
+
+    @Test
+    void aSegmentAlreadyCheckpointedCannotBeFollowed() throws Exception {
+        SlipJournal mine = open();
+        SlipJournal theirs = open();
+        replayIds(mine);
+        replayIds(theirs);
+
+        theirs.append(List.of(delete("a")));
+        theirs.rotate();
+        theirs.deleteSegment();
+
+        // The records are only in the shards now, so the caller has to reload
+        assertEquals(-1, mine.readRotated(entry -> {}));
+    }
+}
@@ -0,0 +1,75 @@
+package com.slipplus.core;
+
+import com.slipplus.models.SubSlip;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class SlipTrashTest {
+
+    static final long WINDOW = 60_000;
+
+    @TempDir
+    File dataDir;
+
+    final List<SlipTrash> opened = new ArrayList<>();
+
+    SlipTrash open() {
+        SlipTrash trash = new SlipTrash(new File(dataDir, "deleted_slips.json"), StorageFormat.JSON.mapper(), WINDOW);
+        opened.add(trash);
+        return trash;
+    }
+
+    @AfterEach
+    void closeAll() {
+        opened.forEach(SlipTrash::close);
+    }
+
+    static SlipTrash.Tombstone tombstone(String id, long deletedAt) {
+        SubSlip slip = StorageBackendContractTest.slip("T1", 100);
+        return new SlipTrash.Tombstone(id, "2024-05-01", deletedAt, Map.of("1", List.of(slip)));
+    }
+
+    @Test
+    void lookingATombstoneUpLeavesItForAnotherTry() {
+        SlipTrash trash = open();
+        trash.add(tombstone("t", System.currentTimeMillis())).join();
+
+        assertNotNull(trash.get("t"));
+        assertNotNull(trash.get("t"));
+        assertNotNull(trash.take("t"));
+        assertNull(trash.get("t"));
+        assertNull(trash.take("t"));
+    }
+
+    @Test
+    void aWrittenTombstoneSurvivesAReopen() {
+        SlipTrash.Tombstone tombstone = tombstone("t", System.currentTimeMillis());
+        open().add(tombstone).join();
+
+        SlipTrash.Tombstone reread = open().get("t");
+        assertEquals(tombstone.slips().get("1").get(0).getId(), reread.slips().get("1").get(0).getId());
+    }
+
+    @Test
+    void tombstonesPastTheWindowAreGone() {
+        SlipTrash trash = open();
+        long now = System.currentTimeMillis();
+        trash.add(tombstone("old", now - WINDOW - 1)).join();
+        trash.add(tombstone("new", now)).join();
+
+        assertNull(trash.get("old"));
+        trash.purge(now);
+        assertNull(trash.take("old"));
+        assertNotNull(trash.get("new"));
+    }
+}
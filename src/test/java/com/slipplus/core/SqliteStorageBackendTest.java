@@ -0,0 +1,42 @@
+package com.slipplus.core;
+
+import com.slipplus.models.MainSlip;
+import com.slipplus.models.SubSlip;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+class SqliteStorageBackendTest extends StorageBackendContractTest {
+
+    @Override
+    StorageBackend open(File dataDir) throws Exception {
+        return new SqliteStorageBackend(dataDir.getPath(), MAPPER,
+                () -> new JsonStorageBackend(dataDir.getPath(), MAPPER, StorageFormat.JSON));
+    }
+
+    @Test
+    void newDatabaseIsFilledFromTheJsonFiles(@TempDir File jsonDir) throws Exception {
+        JsonStorageBackend json = new JsonStorageBackend(jsonDir.getPath(), MAPPER, StorageFormat.JSON);
+        SubSlip slip = slip("MH12AB1234", 150);
+        json.addSubSlip(DAY, "1", slip).join();
+        json.addSubSlip(NEXT_DAY, "2", slip("T2", 50)).join();
+        json.putMainSlip(new MainSlip(DAY, "Party", 150, List.of(), 150)).join();
+        json.close();
+
+        StorageBackend imported = open(jsonDir);
+        try {
+            assertEquals(List.of(DAY, NEXT_DAY), imported.getDates().stream().sorted().toList());
+            assertEquals(slip.getId(), imported.getSubSlips(DAY, "1").get(0).getId());
+            assertEquals(150, imported.getDaySummary(DAY).getSubSlips().get("1").getFinalAmount(), 0.001);
+            assertNotNull(imported.getMainSlip(DAY, "Party"));
+            assertEquals(1, imported.findTruck("mh 12 ab 1234", DAY).size());
+        } finally {
+            imported.close();
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.slipplus.core;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.slipplus.models.MainSlip;
+import com.slipplus.models.SlipTotals;
+import com.slipplus.models.SubSlip;
+import com.slipplus.models.TruckSighting;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * What StorageManager relies on from a backend, run against each of them so
+ * the JSON files and SQLite answer the same way.
+ */
+abstract class StorageBackendContractTest {
+
+    static final ObjectMapper MAPPER = StorageFormat.JSON.mapper();
+    static final LocalDate DAY = LocalDate.of(2024, 5, 1);
+    static final LocalDate NEXT_DAY = DAY.plusDays(1);
+
+    @TempDir
+    File dataDir;
+
+    StorageBackend backend;
+
+    /** A backend on the directory, which may already hold data from an earlier one. */
+    abstract StorageBackend open(File dataDir) throws Exception;
+
+    @BeforeEach
+    void openBackend() throws Exception {
+        backend = open(dataDir);
+    }
+
+    @AfterEach
+    void closeBackend() {
+        backend.close();
+    }
+
+    static SubSlip slip(String truckNumber, double finalAmount) {
+        SubSlip slip = new SubSlip("Party", truckNumber, 1000, List.of(600.0, 400.0), 10, 0, List.of(0.0),
+                List.of(10.0), "", finalAmount, 0, finalAmount);
+        slip.setId(SlipIds.next());
+        return slip;
+    }
+
+    static List<String> trucks(List<SubSlip> slips) {
+        List<String> trucks = new ArrayList<>();
+        for (SubSlip slip : slips) trucks.add(slip.getTruckNumber());
+        return trucks;
+    }
+
+    SubSlip save(LocalDate date, String partyKey, String truckNumber, double finalAmount) {
+        SubSlip slip = slip(truckNumber, finalAmount);
+        backend.addSubSlip(date, partyKey, slip).join();
+        return slip;
+    }
+
+    SlipTotals totals(LocalDate date, String partyKey) {
+        return backend.getDaySummary(date).getSubSlips().get(partyKey);
+    }
+
+    @Test
+    void savedSlipsReadBackInSaveOrder() {
+        SubSlip first = save(DAY, "1", "T1", 100);
+        save(DAY, "1", "T2", 200);
+        save(DAY, "2", "T3", 300);
+
+        List<SubSlip> slips = backend.getSubSlips(DAY, "1");
+        assertEquals(List.of("T1", "T2"), trucks(slips));
+        assertEquals(first.getId(), slips.get(0).getId());
+        assertEquals(List.of("T3"), trucks(backend.getSubSlipsByParty(DAY).get("2")));
+        assertTrue(backend.hasSubSlipsForParty("2"));
+        assertFalse(backend.hasSubSlipsForParty("3"));
+    }
+
+    @Test
+    void savingTheSameSlipTwiceKeepsOne() {
+        SubSlip slip = save(DAY, "1", "T1", 100);
+        backend.addSubSlip(DAY, "1", slip).join();
+
+        assertEquals(1, backend.getSubSlips(DAY, "1").size());
+        assertEquals(1, totals(DAY, "1").getTruckCount());
+    }
+
+    @Test
+    void datesAndPartyKeysFollowTheSlips() {
+        save(DAY, "1", "T1", 100);
+        save(DAY, "2", "T2", 100);
+        save(NEXT_DAY, "2", "T3", 100);
+
+        assertEquals(List.of(DAY, NEXT_DAY), backend.getDates().stream().sorted().toList());
+        assertEquals(List.of("1", "2"), backend.getPartyKeys(DAY).stream().sorted().toList());
+        assertEquals(List.of("2"), backend.getPartyKeys(NEXT_DAY));
+
+        backend.deleteParty(NEXT_DAY, "2").join();
+        assertEquals(List.of(DAY), backend.getDates());
+        assertTrue(backend.getPartyKeys(NEXT_DAY).isEmpty());
+    }
+
+    @Test
+    void deleteRemovesMatchingSlips() {
+        SubSlip gone = save(DAY, "1", "T1", 100);
+        save(DAY, "1", "T2", 200);
+
+        backend.deleteSubSlips(DAY, "1", List.of(gone)).join();
+
+        assertEquals(List.of("T2"), trucks(backend.getSubSlips(DAY, "1")));
+        assertEquals(200, totals(DAY, "1").getFinalAmount(), 0.001);
+    }
+
+    @Test
+    void deleteByIdRemovesOnlyThoseSlips() {
+        SubSlip gone = save(DAY, "1", "T1", 100);
+        save(DAY, "1", "T2", 200);
+        SubSlip otherParty = save(DAY, "2", "T3", 300);
+
+        backend.deleteSubSlipsById(DAY, List.of(gone.getId(), otherParty.getId(), "no-such-id")).join();
+
+        assertEquals(List.of("T2"), trucks(backend.getSubSlips(DAY, "1")));
+        assertTrue(backend.getSubSlips(DAY, "2").isEmpty());
+        assertNull(totals(DAY, "2"));
+        assertEquals(List.of("1"), backend.getPartyKeys(DAY));
+    }
+
+    @Test
+    void undoingADeleteBringsTheSameSlipsBack() {
+        SubSlip first = save(DAY, "1", "T1", 100);
+        SubSlip second = save(DAY, "1", "T2", 200);
+        List<SubSlip> deleted = backend.getSubSlips(DAY, "1");
+
+        backend.deleteSubSlipsById(DAY, List.of(first.getId(), second.getId())).join();
+        assertTrue(backend.getSubSlips(DAY, "1").isEmpty());
+        // What StorageManager.undoDelete does with a tombstone
+        for (SubSlip slip : deleted) backend.addSubSlip(DAY, "1", slip).join();
+
+        List<SubSlip> restored = backend.getSubSlips(DAY, "1");
+        assertEquals(List.of(first.getId(), second.getId()), restored.stream().map(SubSlip::getId).toList());
+        assertEquals(2, totals(DAY, "1").getTruckCount());
+        assertEquals(1, backend.findTruck("T1", DAY).size());
+    }
+
+    @Test
+    void totalsAddUpPerDateAndRange() {
+        save(DAY, "1", "T1", 100);
+        save(DAY, "1", "T2", 250);
+        save(NEXT_DAY, "1", "T3", 50);
+
+        SlipTotals day = totals(DAY, "1");
+        assertEquals(2, day.getTruckCount());
+        assertEquals(350, day.getFinalAmount(), 0.001);
+        assertEquals(2000, day.getMainWeight(), 0.001);
+
+        SlipTotals range = backend.getRangeSummary(DAY, NEXT_DAY).getSubSlips().get("1");
+        assertEquals(3, range.getTruckCount());
+        assertEquals(400, range.getFinalAmount(), 0.001);
+        assertTrue(backend.getRangeSummary(NEXT_DAY.plusDays(1), NEXT_DAY.plusDays(9)).getSubSlips().isEmpty());
+    }
+
+    @Test
+    void trucksAreFoundWhateverTheSpelling() {
+        SubSlip early = save(DAY, "1", "MH 12 AB 1234", 100);
+        SubSlip late = save(NEXT_DAY, "2", "mh12-ab-1234", 100);
+        save(NEXT_DAY, "2", "MH12AB9999", 100);
+
+        List<TruckSighting> all = backend.findTruck("MH12AB1234", DAY);
+        assertEquals(List.of(early.getId(), late.getId()), all.stream().map(TruckSighting::getSlipId).toList());
+        assertEquals("2", all.get(1).getPartyId());
+
+        List<TruckSighting> fromNextDay = backend.findTruck("mh 12 ab 1234", NEXT_DAY);
+        assertEquals(List.of(late.getId()), fromNextDay.stream().map(TruckSighting::getSlipId).toList());
+
+        backend.deleteSubSlipsById(NEXT_DAY, List.of(late.getId())).join();
+        assertEquals(1, backend.findTruck("MH12AB1234", DAY).size());
+    }
+
+    @Test
+    void mainSlipsAreKeptPerDateAndParty() {
+        save(DAY, "1", "T1", 100);
+        backend.putMainSlip(new MainSlip(DAY, "Party", 100, List.of(), 100)).join();
+
+        assertEquals(100, backend.getMainSlip(DAY, "Party").getTotalAfterOperations(), 0.001);
+        assertNull(backend.getMainSlip(NEXT_DAY, "Party"));
+        assertEquals(List.of("Party"), List.copyOf(backend.getMainSlips(DAY).keySet()));
+    }
+
+    @Test
+    void everythingIsThereAfterReopening() throws Exception {
+        SubSlip kept = save(DAY, "1", "T1", 100);
+        SubSlip gone = save(DAY, "1", "T2", 200);
+        save(NEXT_DAY, "2", "T3", 300);
+        backend.deleteSubSlipsById(DAY, List.of(gone.getId())).join();
+        backend.close();
+
+        backend = open(dataDir);
+        assertEquals(List.of(kept.getId()), backend.getSubSlips(DAY, "1").stream().map(SubSlip::getId).toList());
+        assertEquals(List.of("T3"), trucks(backend.getSubSlips(NEXT_DAY, "2")));
+        Map<String, SlipTotals> day = backend.getDaySummary(DAY).getSubSlips();
+        assertEquals(100, day.get("1").getFinalAmount(), 0.001);
+        assertEquals(1, backend.findTruck("T3", DAY).size());
+    }
+}